@@ -1,24 +1,93 @@
 package elements;
 
+import java.util.Map;
+
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+
 public abstract class BlockElement implements Drawable {
 	private float					c_maxWidth;
 	private float					c_maxHeight;
-	private Border				c_border;
-	private Border				c_borderLeft;
-	private Border				c_borderRight;
-	private Border				c_borderBottom;
-	private Border				c_borderTop;
-	private float					c_paddingLeft;
-	private float					c_paddingRight;
-	private float					c_paddingTop;
-	private float					c_paddingBottom;
+	private BlockStyle		c_style	= BlockStyle.DEFAULT;
 	private BlockElement	c_parent;
 	private GrowDirection	c_growType;
+	private int						c_modCount;
 
 	public enum GrowDirection {
 		NONE, HORIZ, VERT, BOTH
 	}
 
+	/**
+	 * @return x position of the upper left corner of the element
+	 */
+	public abstract float getStartX();
+
+	public abstract void setStartX(float x);
+
+	/**
+	 * @return y position of the upper left corner of the element
+	 */
+	public abstract float getStartY();
+
+	public abstract void setStartY(float y);
+
+	/**
+	 * Record that a property affecting the layout of this element has changed:
+	 * containers measure again only the elements changed since the last measure
+	 * (see {@link ContainerBlock}). The position is not a property of this kind:
+	 * it's assigned by the container itself. Every setter of a subclass that
+	 * changes the layout must call this method.
+	 */
+	protected void changed() {
+		c_modCount++;
+		if (c_parent != null) {
+			// the layout of the container depends on the layout of its children
+			c_parent.changed();
+		}
+	}
+
+	/**
+	 * Collect the characters written by this element, without repetitions, by
+	 * the fonts that can write them: the {@link FragmentCache} and the
+	 * {@link PartitionedRenderer} use them to prepare the fonts of a document
+	 * before the element is written. By default nothing is collected.
+	 * 
+	 * @param fonts
+	 *          registry used to resolve the fonts
+	 * @param text
+	 *          receives the characters of every font
+	 */
+	void collectText(FontRegistry fonts, Map<BaseFont, StringBuilder> text) {
+	}
+
+	/**
+	 * Reset the drawing status of this element on a context, so the next call to
+	 * {@link #draw(DrawContext)} starts writing the element from the beginning.
+	 * 
+	 * @param context
+	 *          context of the drawing to reset
+	 */
+	public void resetDrawStatus(DrawContext context) {
+		context.removeDrawStatus(this);
+	}
+
+	/**
+	 * @return counter of the changes of the properties, increased by
+	 *         {@link #changed()} and by the changes of the borders
+	 */
+	long getModCount() {
+		// a new style increases the high part, whatever its borders
+		return ((long) c_modCount << 32) + c_style.getBorderModCount();
+	}
+
+	/**
+	 * @return true if the drawing removes the content of the element, so it can
+	 *         be drawn only once (see {@link TextBlock#setConsumeContent(boolean)})
+	 */
+	boolean isConsumingContent() {
+		return false;
+	}
+
 	/**
 	 * The maximum height this block of text. If the text doesn't fit the
 	 * width/height settings, the text is clipped.
@@ -34,6 +103,7 @@ public abstract class BlockElement implements Drawable {
 	@Override
 	public void setMaxHeight(float maxHeight) {
 		c_maxHeight = maxHeight;
+		changed();
 	}
 
 	@Override
@@ -44,6 +114,7 @@ public abstract class BlockElement implements Drawable {
 	@Override
 	public void setMaxWidth(float maxWidth) {
 		c_maxWidth = maxWidth;
+		changed();
 	}
 
 	public GrowDirection getGrowType() {
@@ -52,14 +123,54 @@ public abstract class BlockElement implements Drawable {
 
 	public void setGrowType(GrowDirection growType) {
 		c_growType = growType;
+		changed();
+	}
+
+	/**
+	 * @return borders, paddings and font of the element, shared with the
+	 *         elements with the same style
+	 */
+	public BlockStyle getStyle() {
+		BlockStyle style = c_style;
+		if (!style.isInterned()) {
+			// an equal style: the properties don't change
+			style = style.intern();
+			c_style = style;
+		}
+		return style;
+	}
+
+	/**
+	 * @return the style of the element, without interning it: the setters
+	 *         replace it with a new one and the style is interned only when
+	 *         it's used to lay out the element
+	 */
+	BlockStyle peekStyle() {
+		return c_style;
 	}
 
+	/**
+	 * Replace borders, paddings and font of the element. The setters of the
+	 * single properties replace the style too, so the other elements with the
+	 * same style are not changed.
+	 */
+	public void setStyle(BlockStyle style) {
+		if (style == null)
+			throw new IllegalArgumentException("style can't be null");
+		c_style = style;
+		changed();
+	}
+
+	/**
+	 * @return the border of the element, the same instance assigned: its
+	 *         changes are seen by the element
+	 */
 	public Border getBorder() {
-		return c_border;
+		return c_style.getBorder();
 	}
 
 	public void setBorder(Border border) {
-		c_border = border;
+		setStyle(c_style.withBorder(border));
 	}
 
 	public BlockElement getParent() {
@@ -71,95 +182,139 @@ public abstract class BlockElement implements Drawable {
 	}
 
 	public float getBorderSize() {
-		return c_border == null ? 0 : c_border.getSize();
+		Border b = c_style.getBorder();
+		return b == null ? 0 : b.getSize();
 	}
 
 	public Border getBorderLeft() {
-		return c_borderLeft;
+		return c_style.getBorderLeft();
 	}
 
 	public float getBorderLeftSize() {
-		return c_borderLeft == null ? getBorderSize() : c_borderLeft.getSize();
+		Border b = c_style.getBorderLeft();
+		return b == null ? getBorderSize() : b.getSize();
 	}
 
 	public float getBorderRightSize() {
-		return c_borderRight == null ? getBorderSize() : c_borderRight.getSize();
+		Border b = c_style.getBorderRight();
+		return b == null ? getBorderSize() : b.getSize();
 	}
 
 	public float getBorderTopSize() {
-		return c_borderTop == null ? getBorderSize() : c_borderTop.getSize();
+		Border b = c_style.getBorderTop();
+		return b == null ? getBorderSize() : b.getSize();
 	}
 
 	public float getBorderBottomSize() {
-		return c_borderBottom == null ? getBorderSize() : c_borderBottom.getSize();
+		Border b = c_style.getBorderBottom();
+		return b == null ? getBorderSize() : b.getSize();
 	}
 
 	public void setBorderLeft(Border borderLeft) {
-		c_borderLeft = borderLeft;
+		setStyle(c_style.withBorderLeft(borderLeft));
 	}
 
 	public Border getBorderRight() {
-		return c_borderRight;
+		return c_style.getBorderRight();
 	}
 
 	public void setBorderRight(Border borderRight) {
-		c_borderRight = borderRight;
+		setStyle(c_style.withBorderRight(borderRight));
 	}
 
 	public Border getBorderBottom() {
-		return c_borderBottom;
+		return c_style.getBorderBottom();
 	}
 
 	public void setBorderBottom(Border borderBottom) {
-		c_borderBottom = borderBottom;
+		setStyle(c_style.withBorderBottom(borderBottom));
 	}
 
 	public Border getBorderTop() {
-		return c_borderTop;
+		return c_style.getBorderTop();
 	}
 
 	public void setBorderTop(Border borderTop) {
-		c_borderTop = borderTop;
+		setStyle(c_style.withBorderTop(borderTop));
 	}
 
 	public void setPadding(float padding) {
-		c_paddingLeft = padding;
-		c_paddingRight = padding;
-		c_paddingTop = padding;
-		c_paddingBottom = padding;
+		setStyle(c_style.withPadding(padding, padding, padding, padding));
 	}
 	
 	
 	public float getPaddingLeft() {
-		return c_paddingLeft;
+		return c_style.getPaddingLeft();
 	}
 
 	public void setPaddingLeft(float padding) {
-		c_paddingLeft = padding;
+		setStyle(c_style.withPadding(padding, c_style.getPaddingRight(),
+				c_style.getPaddingTop(), c_style.getPaddingBottom()));
 	}
 
 	public float getPaddingRight() {
-		return c_paddingRight;
+		return c_style.getPaddingRight();
 	}
 
 	public void setPaddingRight(float paddingRight) {
-		c_paddingRight = paddingRight;
+		setStyle(c_style.withPadding(c_style.getPaddingLeft(), paddingRight,
+				c_style.getPaddingTop(), c_style.getPaddingBottom()));
 	}
 
 	public float getPaddingTop() {
-		return c_paddingTop;
+		return c_style.getPaddingTop();
 	}
 
 	public void setPaddingTop(float paddingTop) {
-		c_paddingTop = paddingTop;
+		setStyle(c_style.withPadding(c_style.getPaddingLeft(),
+				c_style.getPaddingRight(), paddingTop, c_style.getPaddingBottom()));
 	}
 
 	public float getPaddingBottom() {
-		return c_paddingBottom;
+		return c_style.getPaddingBottom();
 	}
 
 	public void setPaddingBottom(float paddingBottom) {
-		c_paddingBottom = paddingBottom;
+		setStyle(c_style.withPadding(c_style.getPaddingLeft(),
+				c_style.getPaddingRight(), c_style.getPaddingTop(), paddingBottom));
+	}
+
+	/**
+	 * Stroke the border of a piece of this element, with the size, the color
+	 * and the style of every side.
+	 * 
+	 * @param batcher
+	 *          collector of the borders of the context (see
+	 *          {@link DrawContext#getBorderBatcher()}), or null: if it collects
+	 *          the borders of the canvas, the sides are only added to the ones of
+	 *          the page
+	 * @param state
+	 *          tracker of the graphics state of the context (see
+	 *          {@link DrawContext#getGraphicsState()}), or null
+	 * @param cb
+	 *          canvas to write on
+	 * @param x1
+	 *          left position
+	 * @param y1
+	 *          lower position
+	 * @param y2
+	 *          upper position
+	 * @param width
+	 *          total width of the element
+	 */
+	void strokeBorder(BorderBatcher batcher, GraphicsState state,
+			PdfContentByte cb, float x1, float y1, float y2, float width) {
+		float x2 = x1 + width;
+		Border left = getBorderLeft() != null ? getBorderLeft() : getBorder();
+		Border top = getBorderTop() != null ? getBorderTop() : getBorder();
+		Border right = getBorderRight() != null ? getBorderRight() : getBorder();
+		Border bottom = getBorderBottom() != null ? getBorderBottom()
+				: getBorder();
+		if (batcher != null && batcher.isCollecting(cb)) {
+			batcher.addBox(left, top, right, bottom, x1, y1, x2, y2);
+		} else {
+			BorderBatcher.strokeBox(cb, state, left, top, right, bottom, x1, y1,
+					x2, y2);
+		}
 	}
-	
 }
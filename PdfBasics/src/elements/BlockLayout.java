@@ -0,0 +1,230 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the measure pass of an element (see
+ * {@link Drawable#measure(DrawContext)}). It describes how the content of the
+ * element is split across the pages of the document: how many lines are
+ * written on each page, the height of every piece and the columns used to lay
+ * out the text (or, for a table, the rows begun on each page).
+ * <p>
+ * A layout is immutable: pagination code can keep it to plan the pages and pass
+ * it later to {@link Drawable#draw(DrawContext, BlockLayout)} to write the
+ * element without computing the layout again.
+ */
+public final class BlockLayout {
+	private final float			c_realWidth;
+	private final boolean		c_complete;
+	private final int[]			c_pageLines;
+	private final float[]		c_pageHeights;
+	private final float[]		c_pageTotals;
+	private final float[]		c_pageLower;
+	private final float[]		c_pageUpper;
+	private final boolean[]	c_pageBorder;
+	private final float[][]	c_columns;
+	private final int[]			c_pageRows;
+	private final float[]		c_cellWidths;
+
+	private BlockLayout(Builder b, float realWidth, boolean complete) {
+		int n = b.c_lines.size();
+		c_realWidth = realWidth;
+		c_complete = complete;
+		c_pageLines = new int[n];
+		c_pageHeights = new float[n];
+		c_pageTotals = new float[n];
+		c_pageLower = new float[n];
+		c_pageUpper = new float[n];
+		c_pageBorder = new boolean[n];
+		c_columns = new float[n][];
+		c_pageRows = new int[n];
+		c_cellWidths = b.c_cellWidths;
+		for (int i = 0; i < n; i++) {
+			c_pageLines[i] = b.c_lines.get(i);
+			float[] geom = b.c_geometry.get(i);
+			c_pageHeights[i] = geom[0];
+			c_pageTotals[i] = geom[1];
+			c_pageLower[i] = geom[2];
+			c_pageUpper[i] = geom[3];
+			c_pageBorder[i] = b.c_borders.get(i);
+			c_columns[i] = b.c_columns.get(i);
+			c_pageRows[i] = b.c_rows.get(i);
+		}
+	}
+
+	/**
+	 * @return the number of pages the element spans
+	 */
+	public int getPageCount() {
+		return c_pageLines.length;
+	}
+
+	/**
+	 * @return the total number of lines of text
+	 */
+	public int getLineCount() {
+		int lines = 0;
+		for (int l : c_pageLines)
+			lines += l;
+		return lines;
+	}
+
+	/**
+	 * @param page
+	 *          index of the page, starting from 0 for the page where the element
+	 *          begins
+	 * @return the number of lines written on the page
+	 */
+	public int getLinesOnPage(int page) {
+		return c_pageLines[page];
+	}
+
+	/**
+	 * The break point of a page, that is the index of the first line written on
+	 * that page.
+	 *
+	 * @param page
+	 *          index of the page, starting from 0
+	 * @return number of the lines written on the pages before <code>page</code>
+	 */
+	public int getBreakLine(int page) {
+		int lines = 0;
+		for (int i = 0; i < page; i++)
+			lines += c_pageLines[i];
+		return lines;
+	}
+
+	/**
+	 * @param page
+	 *          index of the page, starting from 0
+	 * @return the height (in points) of the piece of element written on the page;
+	 *         it's the value of {@link TextBlock#getLastHeight()} after the page
+	 *         has been drawn
+	 */
+	public float getPageHeight(int page) {
+		return c_pageHeights[page];
+	}
+
+	/**
+	 * @return the total height of the element, it's the value of
+	 *         {@link Drawable#getRealHeight()} once the element has been drawn
+	 */
+	public float getRealHeight() {
+		return c_pageTotals.length == 0 ? 0 : c_pageTotals[c_pageTotals.length - 1];
+	}
+
+	/**
+	 * @return the width of the element, it's the value of
+	 *         {@link Drawable#getRealWidth()} once the element has been drawn
+	 */
+	public float getRealWidth() {
+		return c_realWidth;
+	}
+
+	/**
+	 * @return false if the measure stopped because the content cannot fit even
+	 *         an empty page
+	 */
+	public boolean isComplete() {
+		return c_complete;
+	}
+
+	float getRealHeightAfter(int page) {
+		return c_pageTotals[page];
+	}
+
+	float getPageLower(int page) {
+		return c_pageLower[page];
+	}
+
+	float getPageUpper(int page) {
+		return c_pageUpper[page];
+	}
+
+	boolean hasBorder(int page) {
+		return c_pageBorder[page];
+	}
+
+	/**
+	 * @return the rectangles of the columns laid out on the page; every column
+	 *         takes 4 values: llx, lly, urx, ury
+	 */
+	float[] getColumns(int page) {
+		return c_columns[page];
+	}
+
+	/**
+	 * @return the number of rows of a table begun on the page
+	 */
+	int getRowsOnPage(int page) {
+		return c_pageRows[page];
+	}
+
+	/**
+	 * @return the widths of the columns of a table, or null
+	 */
+	float[] getCellWidths() {
+		return c_cellWidths;
+	}
+
+	/**
+	 * Collects the layout data during a measure pass.
+	 */
+	static class Builder {
+		private final List<Integer>	c_lines			= new ArrayList<Integer>();
+		private final List<float[]>	c_geometry	= new ArrayList<float[]>();
+		private final List<Boolean>	c_borders		= new ArrayList<Boolean>();
+		private final List<float[]>	c_columns		= new ArrayList<float[]>();
+		private final List<Integer>	c_rows			= new ArrayList<Integer>();
+		private float[]							c_current		= new float[16];
+		private int									c_currentSize;
+		private boolean							c_border;
+		private int									c_pageRows;
+		private int									c_totalLines;
+		private float[]							c_cellWidths;
+
+		void addColumn(float llx, float lly, float urx, float ury) {
+			if (c_currentSize + 4 > c_current.length) {
+				float[] a = new float[c_current.length * 2];
+				System.arraycopy(c_current, 0, a, 0, c_currentSize);
+				c_current = a;
+			}
+			c_current[c_currentSize++] = llx;
+			c_current[c_currentSize++] = lly;
+			c_current[c_currentSize++] = urx;
+			c_current[c_currentSize++] = ury;
+		}
+
+		void setBorder() {
+			c_border = true;
+		}
+
+		void setRows(int rows) {
+			c_pageRows = rows;
+		}
+
+		void setCellWidths(float[] widths) {
+			c_cellWidths = widths;
+		}
+
+		void endPage(int linesWritten, float lastHeight, float realHeight,
+				float lower, float upper) {
+			c_lines.add(linesWritten - c_totalLines);
+			c_totalLines = linesWritten;
+			c_geometry.add(new float[] { lastHeight, realHeight, lower, upper });
+			c_borders.add(c_border);
+			float[] cols = new float[c_currentSize];
+			System.arraycopy(c_current, 0, cols, 0, c_currentSize);
+			c_columns.add(cols);
+			c_rows.add(c_pageRows);
+			c_currentSize = 0;
+			c_border = false;
+			c_pageRows = 0;
+		}
+
+		BlockLayout build(float realWidth, boolean complete) {
+			return new BlockLayout(this, realWidth, complete);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package elements;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.itextpdf.text.Font;
+
+/**
+ * The appearance of a block: borders, paddings and font. A style can't be
+ * modified: the setters of {@link BlockElement} replace the style of the block
+ * with another one, leaving the other blocks unchanged. The styles are
+ * interned when the block is laid out (see {@link #intern()}): the blocks with
+ * the same borders, paddings and font share the same instance, so a block
+ * keeps a single reference instead of its own borders and paddings.
+ * <p>
+ * The borders and the fonts are compared by reference, because they can be
+ * modified: the style keeps the instances assigned, and a change of a border
+ * is seen by all the blocks using it. The blocks with the same border must use
+ * the same instance to share the style.
+ * <p>
+ * The interned styles not used by any block are released by the garbage
+ * collector.
+ */
+public final class BlockStyle {
+
+	private static final Map<BlockStyle, WeakReference<BlockStyle>>	POOL		= new WeakHashMap<BlockStyle, WeakReference<BlockStyle>>();
+
+	/**
+	 * no borders, no paddings, no font
+	 */
+	public static final BlockStyle																	DEFAULT	= intern(new BlockStyle(
+																																					null, null, null, null,
+																																					null, 0, 0, 0, 0, null));
+
+	private final Border	c_border;
+	private final Border	c_borderLeft;
+	private final Border	c_borderRight;
+	private final Border	c_borderTop;
+	private final Border	c_borderBottom;
+	private final float		c_paddingLeft;
+	private final float		c_paddingRight;
+	private final float		c_paddingTop;
+	private final float		c_paddingBottom;
+	private final Font		c_font;
+	private final int			c_hash;
+	/**
+	 * true for the instance kept by the pool
+	 */
+	private boolean				c_interned;
+
+	private BlockStyle(Border border, Border borderLeft, Border borderRight,
+			Border borderTop, Border borderBottom, float paddingLeft,
+			float paddingRight, float paddingTop, float paddingBottom, Font font) {
+		c_border = border;
+		c_borderLeft = borderLeft;
+		c_borderRight = borderRight;
+		c_borderTop = borderTop;
+		c_borderBottom = borderBottom;
+		c_paddingLeft = paddingLeft;
+		c_paddingRight = paddingRight;
+		c_paddingTop = paddingTop;
+		c_paddingBottom = paddingBottom;
+		c_font = font;
+		int h = hash(c_border);
+		h = h * 31 + hash(c_borderLeft);
+		h = h * 31 + hash(c_borderRight);
+		h = h * 31 + hash(c_borderTop);
+		h = h * 31 + hash(c_borderBottom);
+		h = h * 31 + Float.floatToIntBits(c_paddingLeft);
+		h = h * 31 + Float.floatToIntBits(c_paddingRight);
+		h = h * 31 + Float.floatToIntBits(c_paddingTop);
+		h = h * 31 + Float.floatToIntBits(c_paddingBottom);
+		c_hash = h * 31 + System.identityHashCode(c_font);
+	}
+
+	/**
+	 * @return the shared style with the given borders, paddings and font
+	 */
+	public static BlockStyle create(Border border, float padding, Font font) {
+		return intern(new BlockStyle(border, null, null, null, null, padding,
+				padding, padding, padding, font));
+	}
+
+	/**
+	 * @return the shared instance equal to this style
+	 */
+	public BlockStyle intern() {
+		return c_interned ? this : intern(this);
+	}
+
+	/**
+	 * @return true if this is the shared instance of the style
+	 */
+	public boolean isInterned() {
+		return c_interned;
+	}
+
+	private static BlockStyle intern(BlockStyle style) {
+		synchronized (POOL) {
+			WeakReference<BlockStyle> ref = POOL.get(style);
+			BlockStyle shared = ref == null ? null : ref.get();
+			if (shared == null) {
+				shared = style;
+				shared.c_interned = true;
+				POOL.put(shared, new WeakReference<BlockStyle>(shared));
+			}
+			return shared;
+		}
+	}
+
+	/**
+	 * @return the sum of the counters of the changes of the borders
+	 */
+	int getBorderModCount() {
+		return modCount(c_border) + modCount(c_borderLeft)
+				+ modCount(c_borderRight) + modCount(c_borderTop)
+				+ modCount(c_borderBottom);
+	}
+
+	private static int modCount(Border b) {
+		return b == null ? 0 : b.getModCount();
+	}
+
+	public BlockStyle withBorder(Border border) {
+		return new BlockStyle(border, c_borderLeft, c_borderRight,
+				c_borderTop, c_borderBottom, c_paddingLeft, c_paddingRight,
+				c_paddingTop, c_paddingBottom, c_font);
+	}
+
+	public BlockStyle withBorderLeft(Border border) {
+		return new BlockStyle(c_border, border, c_borderRight, c_borderTop,
+				c_borderBottom, c_paddingLeft, c_paddingRight, c_paddingTop,
+				c_paddingBottom, c_font);
+	}
+
+	public BlockStyle withBorderRight(Border border) {
+		return new BlockStyle(c_border, c_borderLeft, border, c_borderTop,
+				c_borderBottom, c_paddingLeft, c_paddingRight, c_paddingTop,
+				c_paddingBottom, c_font);
+	}
+
+	public BlockStyle withBorderTop(Border border) {
+		return new BlockStyle(c_border, c_borderLeft, c_borderRight,
+				border, c_borderBottom, c_paddingLeft, c_paddingRight, c_paddingTop,
+				c_paddingBottom, c_font);
+	}
+
+	public BlockStyle withBorderBottom(Border border) {
+		return new BlockStyle(c_border, c_borderLeft, c_borderRight,
+				c_borderTop, border, c_paddingLeft, c_paddingRight, c_paddingTop,
+				c_paddingBottom, c_font);
+	}
+
+	/**
+	 * @return the style with the given paddings, in points
+	 */
+	public BlockStyle withPadding(float left, float right, float top,
+			float bottom) {
+		return new BlockStyle(c_border, c_borderLeft, c_borderRight,
+				c_borderTop, c_borderBottom, left, right, top, bottom, c_font);
+	}
+
+	public BlockStyle withFont(Font font) {
+		return new BlockStyle(c_border, c_borderLeft, c_borderRight,
+				c_borderTop, c_borderBottom, c_paddingLeft, c_paddingRight,
+				c_paddingTop, c_paddingBottom, font);
+	}
+
+	public Border getBorder() {
+		return c_border;
+	}
+
+	public Border getBorderLeft() {
+		return c_borderLeft;
+	}
+
+	public Border getBorderRight() {
+		return c_borderRight;
+	}
+
+	public Border getBorderTop() {
+		return c_borderTop;
+	}
+
+	public Border getBorderBottom() {
+		return c_borderBottom;
+	}
+
+	public float getPaddingLeft() {
+		return c_paddingLeft;
+	}
+
+	public float getPaddingRight() {
+		return c_paddingRight;
+	}
+
+	public float getPaddingTop() {
+		return c_paddingTop;
+	}
+
+	public float getPaddingBottom() {
+		return c_paddingBottom;
+	}
+
+	public Font getFont() {
+		return c_font;
+	}
+
+	private static int hash(Border b) {
+		return System.identityHashCode(b);
+	}
+
+	@Override
+	public int hashCode() {
+		return c_hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this)
+			return true;
+		if (!(obj instanceof BlockStyle))
+			return false;
+		BlockStyle s = (BlockStyle) obj;
+		// the borders can be modified: they are equal only if they are the same
+		return c_hash == s.c_hash && c_border == s.c_border
+				&& c_borderLeft == s.c_borderLeft && c_borderRight == s.c_borderRight
+				&& c_borderTop == s.c_borderTop && c_borderBottom == s.c_borderBottom
+				&& Float.floatToIntBits(c_paddingLeft) == Float
+						.floatToIntBits(s.c_paddingLeft)
+				&& Float.floatToIntBits(c_paddingRight) == Float
+						.floatToIntBits(s.c_paddingRight)
+				&& Float.floatToIntBits(c_paddingTop) == Float
+						.floatToIntBits(s.c_paddingTop)
+				&& Float.floatToIntBits(c_paddingBottom) == Float
+						.floatToIntBits(s.c_paddingBottom) && c_font == s.c_font;
+	}
+}
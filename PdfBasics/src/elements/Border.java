@@ -2,11 +2,17 @@ package elements;
 
 import com.itextpdf.text.BaseColor;
 
+/**
+ * Border of a block. Two borders with the same size, color and style are
+ * equal. A block keeps the border assigned to it: a change of the border is
+ * seen by all the blocks using it.
+ */
 public class Border {
 
 	private float c_size;
 	private BaseColor c_color;
 	private Style c_style = Style.solid;
+	private int c_modCount;
 	
 	public enum Style {
 		solid, dotted, dashed
@@ -16,18 +22,37 @@ public class Border {
 		c_size = size;
 		c_color = color;
 	}
+
+	/**
+	 * Copy of a border.
+	 */
+	Border(Border border) {
+		c_size = border.c_size;
+		c_color = border.c_color;
+		c_style = border.c_style;
+	}
+
+	/**
+	 * @return counter of the changes of the border, used by the blocks to know
+	 *         that their layout has changed
+	 */
+	int getModCount() {
+		return c_modCount;
+	}
 	
 	public float getSize() {
 		return c_size;
 	}
 	public void setSize(float size) {
 		c_size = size;
+		c_modCount++;
 	}
 	public BaseColor getColor() {
 		return c_color;
 	}
 	public void setColor(BaseColor color) {
 		c_color = color;
+		c_modCount++;
 	}
 
 	public Style getStyle() {
@@ -36,5 +61,32 @@ public class Border {
 
 	public void setStyle(Style style) {
 		c_style = style;
+		c_modCount++;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Border))
+			return false;
+		Border b = (Border) obj;
+		return Float.floatToIntBits(c_size) == Float.floatToIntBits(b.c_size)
+				&& c_style == b.c_style
+				&& (c_color == null ? b.c_color == null : c_color.equals(b.c_color));
+	}
+
+	@Override
+	public int hashCode() {
+		int h = Float.floatToIntBits(c_size);
+		h = h * 31 + c_style.ordinal();
+		return h * 31 + (c_color == null ? 0 : c_color.hashCode());
+	}
+
+	/**
+	 * @return size, style and color of the border
+	 */
+	@Override
+	public String toString() {
+		return c_size + " " + c_style + " "
+				+ (c_color == null ? "-" : Integer.toHexString(c_color.getRGB()));
 	}
 }
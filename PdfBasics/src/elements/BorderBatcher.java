@@ -0,0 +1,345 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Collector of the borders of the blocks written on a page, enabled with
+ * {@link DrawContext#setBatchBorders(boolean)}. The borders are not written
+ * when the blocks are drawn, but at the end of the page: the segments are
+ * grouped by size, color and style, the collinear segments that overlap or
+ * touch (like the edges shared by adjacent cells) are merged, and every group
+ * is written as a single path, setting the line width, the color and the dash
+ * only once. The borders are then drawn over the rest of the page.
+ * <p>
+ * Only the borders written on the direct content of the writer are collected:
+ * the ones written on other canvases (like templates) are stroked at once.
+ */
+public class BorderBatcher extends PdfPageEventHelper {
+
+	/**
+	 * tolerance in the comparison of the positions, in points
+	 */
+	private static final float								EPSILON	= 0.001f;
+
+	private final PdfContentByte							c_canvas;
+	private final Map<Border, List<Segment>>	c_groups;
+	private int																c_segments;
+	private long															c_segmentsAdded;
+	private long															c_segmentsWritten;
+	private long															c_paths;
+
+	/**
+	 * @param canvas
+	 *          canvas where the borders are written
+	 */
+	public BorderBatcher(PdfContentByte canvas) {
+		c_canvas = canvas;
+		c_groups = new LinkedHashMap<Border, List<Segment>>();
+	}
+
+	/**
+	 * @return true if the borders written on the canvas are collected
+	 */
+	boolean isCollecting(PdfContentByte canvas) {
+		return canvas == c_canvas;
+	}
+
+	/**
+	 * Add a segment of a border.
+	 * 
+	 * @param border
+	 *          border with size, color and style of the segment; the segments
+	 *          keep the values it has when it's added
+	 */
+	public void add(Border border, float x1, float y1, float x2, float y2) {
+		if (border == null || border.getSize() <= 0)
+			return;
+		Segment s;
+		if (Math.abs(y1 - y2) < EPSILON) {
+			s = new Segment(false, y1, Math.min(x1, x2), Math.max(x1, x2));
+		} else if (Math.abs(x1 - x2) < EPSILON) {
+			s = new Segment(true, x1, Math.min(y1, y2), Math.max(y1, y2));
+		} else {
+			throw new IllegalArgumentException("A border must be horizontal or vertical");
+		}
+		List<Segment> group = c_groups.get(border);
+		if (group == null) {
+			group = new ArrayList<Segment>();
+			// a copy: the border can be modified before the flush
+			c_groups.put(new Border(border), group);
+		}
+		group.add(s);
+		c_segments++;
+		c_segmentsAdded++;
+	}
+
+	/**
+	 * Write the borders collected and clear them.
+	 */
+	public void flush() {
+		if (c_segments == 0)
+			return;
+		PdfContentByte cb = c_canvas;
+		cb.saveState();
+		Border last = null;
+		for (Map.Entry<Border, List<Segment>> e : c_groups.entrySet()) {
+			List<Segment> segments = e.getValue();
+			if (segments.isEmpty())
+				continue;
+			Border b = e.getKey();
+			setStyle(cb, b, last);
+			last = b;
+			Collections.sort(segments);
+			Segment current = null;
+			for (Segment s : segments) {
+				if (current != null && current.vertical == s.vertical
+						&& Math.abs(current.position - s.position) < EPSILON
+						&& s.from <= current.to + EPSILON) {
+					// collinear and overlapping or touching: a single line
+					current.to = Math.max(current.to, s.to);
+					continue;
+				}
+				if (current != null)
+					current.write(cb);
+				current = s;
+			}
+			current.write(cb);
+			cb.stroke();
+			c_paths++;
+			segments.clear();
+		}
+		cb.restoreState();
+		c_segments = 0;
+	}
+
+	/**
+	 * Write the borders at the end of the page.
+	 */
+	@Override
+	public void onEndPage(PdfWriter writer, Document document) {
+		flush();
+	}
+
+	/**
+	 * @return number of segments added
+	 */
+	public long getSegmentsAdded() {
+		return c_segmentsAdded;
+	}
+
+	/**
+	 * @return number of segments written, after the merge of the collinear
+	 *         ones
+	 */
+	public long getSegmentsWritten() {
+		return c_segmentsWritten;
+	}
+
+	/**
+	 * @return number of paths written, one for every group of every page
+	 */
+	public long getPaths() {
+		return c_paths;
+	}
+
+	/**
+	 * Add the four sides of the border of a box.
+	 * 
+	 * @param x1
+	 *          left position of the box
+	 * @param y1
+	 *          lower position of the box
+	 * @param x2
+	 *          right position of the box
+	 * @param y2
+	 *          upper position of the box
+	 */
+	public void addBox(Border left, Border top, Border right, Border bottom,
+			float x1, float y1, float x2, float y2) {
+		// the lines are in the middle of the borders, inside the box
+		if (left != null)
+			add(left, x1 + left.getSize() / 2, y1, x1 + left.getSize() / 2, y2);
+		if (top != null)
+			add(top, x1, y2 - top.getSize() / 2, x2, y2 - top.getSize() / 2);
+		if (right != null)
+			add(right, x2 - right.getSize() / 2, y2, x2 - right.getSize() / 2, y1);
+		if (bottom != null)
+			add(bottom, x2, y1 + bottom.getSize() / 2, x1, y1 + bottom.getSize() / 2);
+	}
+
+	/**
+	 * Stroke the border of a box at once, without collecting it: the sides with
+	 * the same border are written in a single path. If the state of the canvas
+	 * is tracked, the line width and the color set stay current after the box
+	 * (the dash is reset), otherwise the state is saved and restored.
+	 * 
+	 * @param state
+	 *          tracker of the graphics state, or null
+	 * @see #addBox(Border, Border, Border, Border, float, float, float, float)
+	 */
+	static void strokeBox(PdfContentByte cb, GraphicsState state, Border left,
+			Border top, Border right, Border bottom, float x1, float y1, float x2,
+			float y2) {
+		if (state != null && !state.isTracking(cb))
+			state = null;
+		Border[] sides = { left, top, right, bottom };
+		Border last = null;
+		for (int i = 0; i < sides.length; i++) {
+			Border b = sides[i];
+			if (b == null || b.getSize() <= 0)
+				continue;
+			boolean done = false;
+			for (int j = 0; j < i; j++)
+				done |= b.equals(sides[j]);
+			if (done)
+				continue;
+			if (state != null) {
+				setStyle(state, b, last);
+				state.sync();
+			} else {
+				if (last == null)
+					cb.saveState();
+				setStyle(cb, b, last);
+			}
+			last = b;
+			for (int j = i; j < sides.length; j++) {
+				if (!b.equals(sides[j]))
+					continue;
+				float half = b.getSize() / 2;
+				switch (j) {
+				case 0:
+					cb.moveTo(x1 + half, y1);
+					cb.lineTo(x1 + half, y2);
+					break;
+				case 1:
+					cb.moveTo(x1, y2 - half);
+					cb.lineTo(x2, y2 - half);
+					break;
+				case 2:
+					cb.moveTo(x2 - half, y2);
+					cb.lineTo(x2 - half, y1);
+					break;
+				default:
+					cb.moveTo(x2, y1 + half);
+					cb.lineTo(x1, y1 + half);
+				}
+			}
+			cb.stroke();
+			if (state != null)
+				state.mark();
+		}
+		if (last == null)
+			return;
+		if (state == null)
+			cb.restoreState();
+		else if (last.getStyle() != Border.Style.solid)
+			state.setLineDash(0, 0);
+	}
+
+	/**
+	 * Set line width, color and dash of a border through the tracker of the
+	 * state, that omits the ones already current. Like with the state saved, the
+	 * lines are solid if no dash has been set.
+	 * 
+	 * @param previous
+	 *          the border of the box set before, or null
+	 */
+	private static void setStyle(GraphicsState state, Border b, Border previous) {
+		float size = b.getSize();
+		state.setLineWidth(size);
+		state.setColorStroke(b.getColor());
+		switch (b.getStyle()) {
+		case dotted:
+			state.setLineDash(size, size);
+			break;
+		case dashed:
+			state.setLineDash(size * 3, size * 2);
+			break;
+		default:
+			if (previous != null && previous.getStyle() != Border.Style.solid)
+				state.setLineDash(0, 0);
+		}
+	}
+
+	/**
+	 * Set line width, color and dash of a border, omitting the ones equal to
+	 * the previous border.
+	 * 
+	 * @param previous
+	 *          the border set before, or null
+	 */
+	private static void setStyle(PdfContentByte cb, Border b, Border previous) {
+		float size = b.getSize();
+		if (previous == null || previous.getSize() != size)
+			cb.setLineWidth(size);
+		BaseColor color = b.getColor() != null ? b.getColor() : BaseColor.BLACK;
+		if (previous == null
+				|| !color.equals(previous.getColor() != null ? previous.getColor()
+						: BaseColor.BLACK))
+			cb.setColorStroke(color);
+		if (previous == null || previous.getStyle() != b.getStyle()
+				|| previous.getSize() != size) {
+			switch (b.getStyle()) {
+			case dotted:
+				cb.setLineDash(size, size, 0);
+				break;
+			case dashed:
+				cb.setLineDash(size * 3, size * 2, 0);
+				break;
+			default:
+				if (previous != null && previous.getStyle() != Border.Style.solid)
+					cb.setLineDash(0);
+			}
+		}
+	}
+
+	/**
+	 * A horizontal or vertical segment.
+	 */
+	private final class Segment implements Comparable<Segment> {
+		final boolean	vertical;
+		/**
+		 * y of a horizontal segment, x of a vertical one
+		 */
+		final float		position;
+		final float		from;
+		float					to;
+
+		Segment(boolean vertical, float position, float from, float to) {
+			this.vertical = vertical;
+			this.position = position;
+			this.from = from;
+			this.to = to;
+		}
+
+		void write(PdfContentByte cb) {
+			if (vertical) {
+				cb.moveTo(position, from);
+				cb.lineTo(position, to);
+			} else {
+				cb.moveTo(from, position);
+				cb.lineTo(to, position);
+			}
+			c_segmentsWritten++;
+		}
+
+		@Override
+		public int compareTo(Segment s) {
+			if (vertical != s.vertical)
+				return vertical ? 1 : -1;
+			if (position != s.position)
+				return position < s.position ? -1 : 1;
+			return from < s.from ? -1 : from > s.from ? 1 : 0;
+		}
+	}
+}
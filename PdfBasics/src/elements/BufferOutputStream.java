@@ -0,0 +1,134 @@
+package elements;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output stream that keeps a whole document in memory, in a list of pooled
+ * direct buffers instead of a growing byte array: the document is never copied
+ * to enlarge the array, and it's sent to a channel straight from the buffers
+ * with {@link #writeTo(WritableByteChannel)}.
+ * <p>
+ * Closing the stream (the writer closes it at the end of the document) only
+ * stops the writing; the buffers are given back to the pool by
+ * {@link #release()}, after the document has been sent.
+ */
+public class BufferOutputStream extends OutputStream {
+
+	private final BufferPool				c_pool;
+	private final List<ByteBuffer>	c_buffers;
+	private ByteBuffer							c_current;
+	private long										c_size;
+	private boolean									c_closed;
+
+	public BufferOutputStream(BufferPool pool) {
+		c_pool = pool;
+		c_buffers = new ArrayList<ByteBuffer>();
+	}
+
+	/**
+	 * Stream with the buffers of the shared pool.
+	 */
+	public BufferOutputStream() {
+		this(BufferPool.getShared());
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (c_current == null || !c_current.hasRemaining())
+			nextBuffer();
+		c_current.put((byte) b);
+		c_size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (c_current == null || !c_current.hasRemaining())
+				nextBuffer();
+			int n = Math.min(len, c_current.remaining());
+			c_current.put(b, off, n);
+			off += n;
+			len -= n;
+			c_size += n;
+		}
+	}
+
+	@Override
+	public void close() {
+		c_closed = true;
+	}
+
+	/**
+	 * @return number of bytes written
+	 */
+	public long getSize() {
+		return c_size;
+	}
+
+	/**
+	 * Send the content to a channel. The content is not consumed, so it can be
+	 * sent more times.
+	 * 
+	 * @param channel
+	 *          destination channel, in blocking mode; it's not closed
+	 * @throws IOException
+	 *           on errors writing the channel
+	 * @throws IllegalArgumentException
+	 *           if the channel is in non-blocking mode
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		ChannelOutputStream.checkBlocking(channel);
+		ByteBuffer[] views = new ByteBuffer[c_buffers.size()];
+		for (int i = 0; i < views.length; i++) {
+			ByteBuffer view = c_buffers.get(i).duplicate();
+			view.flip();
+			views[i] = view;
+		}
+		if (channel instanceof GatheringByteChannel) {
+			// a single system call for many buffers, where the channel allows it
+			GatheringByteChannel gc = (GatheringByteChannel) channel;
+			long remaining = c_size;
+			while (remaining > 0) {
+				long n = gc.write(views);
+				if (n == 0)
+					ChannelOutputStream.checkNotFull(channel);
+				remaining -= n;
+			}
+		} else {
+			for (ByteBuffer view : views) {
+				ChannelOutputStream.write(channel, view);
+			}
+		}
+	}
+
+	/**
+	 * Give back the buffers to the pool; the content is lost.
+	 */
+	public void release() {
+		for (ByteBuffer buf : c_buffers) {
+			c_pool.release(buf);
+		}
+		c_buffers.clear();
+		c_current = null;
+		c_size = 0;
+		c_closed = true;
+	}
+
+	private void nextBuffer() {
+		c_current = c_pool.acquire();
+		c_buffers.add(c_current);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (c_closed)
+			throw new IOException("Stream closed");
+	}
+}
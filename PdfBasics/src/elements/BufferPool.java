@@ -0,0 +1,106 @@
+package elements;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct {@link ByteBuffer}s of the same size, used by the output
+ * streams of the documents ({@link ChannelOutputStream},
+ * {@link PipelinedOutputStream}, {@link BufferOutputStream}). The content of a
+ * direct buffer can be written to a channel without copying it in the heap,
+ * and reusing the buffers avoids the cost of allocating them for every
+ * document.
+ * <p>
+ * The pool keeps at most {@link #getMaxPooled() maxPooled} free buffers: the
+ * buffers released beyond this limit are left to the garbage collector. The
+ * pool is thread safe.
+ */
+public class BufferPool {
+
+	public static final int					DEFAULT_BUFFER_SIZE	= 64 * 1024;
+	public static final int					DEFAULT_MAX_POOLED	= 64;
+
+	private static final BufferPool	SHARED							= new BufferPool(
+																													DEFAULT_BUFFER_SIZE,
+																													DEFAULT_MAX_POOLED);
+
+	private final int																c_bufferSize;
+	private final int																c_maxPooled;
+	private final ConcurrentLinkedQueue<ByteBuffer>	c_free;
+	private final AtomicInteger											c_freeCount;
+
+	/**
+	 * @param bufferSize
+	 *          size in bytes of every buffer
+	 * @param maxPooled
+	 *          maximum number of free buffers kept by the pool
+	 */
+	public BufferPool(int bufferSize, int maxPooled) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("bufferSize must be positive");
+		c_bufferSize = bufferSize;
+		c_maxPooled = maxPooled;
+		c_free = new ConcurrentLinkedQueue<ByteBuffer>();
+		c_freeCount = new AtomicInteger();
+	}
+
+	/**
+	 * @return the pool shared by all the documents of the process
+	 */
+	public static BufferPool getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Take a buffer from the pool, allocating it if the pool is empty.
+	 * 
+	 * @return an empty buffer, ready to be filled
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buf = c_free.poll();
+		if (buf == null)
+			return ByteBuffer.allocateDirect(c_bufferSize);
+		c_freeCount.decrementAndGet();
+		buf.clear();
+		return buf;
+	}
+
+	/**
+	 * Give back a buffer taken with {@link #acquire()}. The buffer must not be
+	 * used anymore.
+	 * 
+	 * @param buf
+	 *          buffer to release
+	 */
+	public void release(ByteBuffer buf) {
+		if (buf.capacity() != c_bufferSize || !buf.isDirect())
+			return;
+		if (c_freeCount.incrementAndGet() > c_maxPooled) {
+			c_freeCount.decrementAndGet();
+			return;
+		}
+		c_free.offer(buf);
+	}
+
+	/**
+	 * @return size in bytes of the buffers
+	 */
+	public int getBufferSize() {
+		return c_bufferSize;
+	}
+
+	/**
+	 * @return maximum number of free buffers kept
+	 */
+	public int getMaxPooled() {
+		return c_maxPooled;
+	}
+
+	/**
+	 * @return number of free buffers currently in the pool
+	 */
+	public int getFreeCount() {
+		return c_freeCount.get();
+	}
+}
@@ -0,0 +1,176 @@
+package elements;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Output stream that writes a document to a {@link WritableByteChannel} (a
+ * file, a socket...) through a pooled direct buffer: the bytes produced by the
+ * {@link com.itextpdf.text.pdf.PdfWriter PdfWriter} are collected in the
+ * buffer and passed to the channel every time it's full, without intermediate
+ * copies in the heap.
+ * <p>
+ * The buffer is given back to the pool when the stream is closed (the writer
+ * closes it at the end of the document). The channel must be in blocking mode:
+ * a non-blocking channel can accept only part of the bytes, and the stream
+ * would spin waiting for it.
+ */
+public class ChannelOutputStream extends OutputStream {
+
+	private final WritableByteChannel	c_channel;
+	private final BufferPool					c_pool;
+	private final boolean							c_closeChannel;
+	private ByteBuffer								c_buffer;
+	private long											c_count;
+
+	/**
+	 * @param channel
+	 *          destination of the bytes
+	 * @param pool
+	 *          pool of the buffer
+	 * @param closeChannel
+	 *          true to close the channel together with the stream; false to
+	 *          leave it open, for example to write other data on a network
+	 *          connection
+	 * @throws IllegalArgumentException
+	 *           if the channel is in non-blocking mode
+	 */
+	public ChannelOutputStream(WritableByteChannel channel, BufferPool pool,
+			boolean closeChannel) {
+		checkBlocking(channel);
+		c_channel = channel;
+		c_pool = pool;
+		c_closeChannel = closeChannel;
+		c_buffer = pool.acquire();
+	}
+
+	/**
+	 * Stream on a channel, with a buffer of the shared pool; the channel is
+	 * closed together with the stream.
+	 */
+	public ChannelOutputStream(WritableByteChannel channel) {
+		this(channel, BufferPool.getShared(), true);
+	}
+
+	/**
+	 * Create a stream that writes a file.
+	 * 
+	 * @param fileName
+	 *          name of the file to create
+	 * @return the stream on the file
+	 * @throws IOException
+	 *           if the file cannot be created
+	 */
+	public static ChannelOutputStream toFile(String fileName) throws IOException {
+		return new ChannelOutputStream(new FileOutputStream(fileName).getChannel());
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (!c_buffer.hasRemaining())
+			drain();
+		c_buffer.put((byte) b);
+		c_count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (!c_buffer.hasRemaining())
+				drain();
+			int n = Math.min(len, c_buffer.remaining());
+			c_buffer.put(b, off, n);
+			off += n;
+			len -= n;
+			c_count += n;
+		}
+	}
+
+	/**
+	 * Pass the buffered bytes to the channel.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (c_buffer == null)
+			return;
+		try {
+			drain();
+		} finally {
+			c_pool.release(c_buffer);
+			c_buffer = null;
+			if (c_closeChannel)
+				c_channel.close();
+		}
+	}
+
+	/**
+	 * @return number of bytes written so far
+	 */
+	public long getCount() {
+		return c_count;
+	}
+
+	private void drain() throws IOException {
+		c_buffer.flip();
+		write(c_channel, c_buffer);
+		c_buffer.clear();
+	}
+
+	/**
+	 * Check that a channel can be written by the streams of the documents.
+	 * 
+	 * @throws IllegalArgumentException
+	 *           if the channel is in non-blocking mode
+	 */
+	static void checkBlocking(WritableByteChannel channel) {
+		if (isNonBlocking(channel))
+			throw new IllegalArgumentException(
+					"The channel must be in blocking mode");
+	}
+
+	/**
+	 * Write all the remaining bytes of a buffer to a blocking channel.
+	 * 
+	 * @throws IOException
+	 *           on errors writing the channel, or if the channel has been put
+	 *           in non-blocking mode and doesn't accept the bytes
+	 */
+	static void write(WritableByteChannel channel, ByteBuffer buf)
+			throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.write(buf) == 0)
+				checkNotFull(channel);
+		}
+	}
+
+	/**
+	 * Called when a channel accepted no bytes: a blocking channel is tried
+	 * again, a non-blocking one is an error.
+	 */
+	static void checkNotFull(WritableByteChannel channel) throws IOException {
+		if (isNonBlocking(channel))
+			throw new IOException("The channel is in non-blocking mode");
+	}
+
+	private static boolean isNonBlocking(WritableByteChannel channel) {
+		return channel instanceof SelectableChannel
+				&& !((SelectableChannel) channel).isBlocking();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (c_buffer == null)
+			throw new IOException("Stream closed");
+	}
+}
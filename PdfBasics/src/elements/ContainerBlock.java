@@ -0,0 +1,482 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * Block that contains other blocks, stacked vertically (one below the other)
+ * or horizontally (side by side). The container assigns the position of its
+ * children: the first one starts at the upper left corner of the container,
+ * inside its border and padding, the others follow the previous one at
+ * {@link #getSpacing() spacing} points of distance. In a vertical stack a
+ * child that continues on the next pages pushes the following children on the
+ * page where it ends; in a horizontal stack the children are written side by
+ * side on every page.
+ * <p>
+ * The measured layout of every child is cached: a new measure of the container
+ * measures again only the children whose properties have changed (see
+ * {@link BlockElement#changed()}) or whose position has moved. Changes to a
+ * {@link Border} object already assigned are not detected: assign the border
+ * again, or call {@link #invalidate()}.
+ * <p>
+ * The height of the container is given by its children; the width is the
+ * declared one or, if not declared, the width needed by the children.
+ */
+public class ContainerBlock extends BlockElement {
+
+	public enum Stacking {
+		VERT, HORIZ
+	}
+
+	private float											c_startX;
+	private float											c_startY;
+	private float											c_width;
+	private float											c_spacing;
+	private Stacking									c_stacking;
+	private final List<BlockElement>	c_children;
+
+	/*
+	 * measure cache, guarded by this
+	 */
+	private LayoutKey													c_cacheKey;
+	private final Map<BlockElement, Measure>	c_cache;
+	private Arrangement												c_arrangement;
+	private int																c_childMeasures;
+
+	/**
+	 * @param x
+	 *          start x position (upper left point)
+	 * @param y
+	 *          start y position (upper left point)
+	 * @param stacking
+	 *          direction of the stack of children
+	 */
+	public ContainerBlock(float x, float y, Stacking stacking) {
+		this();
+		c_startX = x;
+		c_startY = y;
+		c_stacking = stacking;
+	}
+
+	public ContainerBlock() {
+		c_stacking = Stacking.VERT;
+		c_children = new ArrayList<BlockElement>();
+		c_cache = new IdentityHashMap<BlockElement, Measure>();
+	}
+
+	/**
+	 * Add a child at the end of the stack.
+	 *
+	 * @param child
+	 *          element to add; it must not belong to another container
+	 */
+	public void add(BlockElement child) {
+		if (child.getParent() != null)
+			throw new IllegalArgumentException(
+					"The element already belongs to a container");
+		child.setParent(this);
+		c_children.add(child);
+		changed();
+	}
+
+	public void remove(BlockElement child) {
+		if (c_children.remove(child)) {
+			child.setParent(null);
+			changed();
+		}
+	}
+
+	/**
+	 * @return the children, in stacking order
+	 */
+	public List<BlockElement> getChildren() {
+		return Collections.unmodifiableList(c_children);
+	}
+
+	@Override
+	void collectText(FontRegistry fonts, Map<BaseFont, StringBuilder> text) {
+		for (BlockElement child : c_children)
+			child.collectText(fonts, text);
+	}
+
+	/**
+	 * Discard the cached layouts: the next measure measures all the children.
+	 */
+	public synchronized void invalidate() {
+		c_cache.clear();
+		c_arrangement = null;
+	}
+
+	/**
+	 * @return number of measures of the children performed by this container;
+	 *         the children whose layout is found in the cache are not counted
+	 */
+	public synchronized int getChildMeasureCount() {
+		return c_childMeasures;
+	}
+
+	/**
+	 * Calculate the layout of the container; the children not changed since the
+	 * last measure on a document with the same page geometry are not measured
+	 * again.
+	 */
+	@Override
+	public BlockLayout measure(DrawContext context) throws DocumentException {
+		return arrange(context).layout;
+	}
+
+	@Override
+	public boolean draw(DrawContext context) throws DocumentException {
+		Status st = (Status) context.getDrawStatus(this);
+		if (st == null) {
+			st = start(context, arrange(context));
+		} else if (st.complete) {
+			throw new IllegalStateException("No more contents to write");
+		}
+		return drawPage(context, st);
+	}
+
+	/**
+	 * Draw the container following its layout; the layout must be the last one
+	 * returned by {@link #measure(DrawContext)}.
+	 */
+	@Override
+	public boolean draw(DrawContext context, BlockLayout layout)
+			throws DocumentException {
+		Status st = (Status) context.getDrawStatus(this);
+		if (st == null) {
+			Arrangement arr = arrange(context);
+			if (arr.layout != layout)
+				throw new IllegalStateException(
+						"The container has changed after the measure");
+			st = start(context, arr);
+		} else if (st.complete) {
+			throw new IllegalStateException("No more contents to write");
+		}
+		return drawPage(context, st);
+	}
+
+	@Override
+	public void resetDrawStatus(DrawContext context) {
+		super.resetDrawStatus(context);
+		for (BlockElement child : c_children) {
+			child.resetDrawStatus(context);
+		}
+	}
+
+	private Status start(DrawContext context, Arrangement arr) {
+		Status st = new Status();
+		st.arrangement = arr;
+		context.setDrawStatus(this, st);
+		for (BlockElement child : arr.children) {
+			child.resetDrawStatus(context);
+		}
+		return st;
+	}
+
+	/**
+	 * Draw the children (and the pieces of children) that belong to the current
+	 * page.
+	 */
+	private boolean drawPage(DrawContext context, Status st)
+			throws DocumentException {
+		Arrangement arr = st.arrangement;
+		int page = st.page++;
+		for (int i = 0; i < arr.children.length; i++) {
+			int childPage = page - arr.pages[i];
+			if (childPage >= 0 && childPage < arr.layouts[i].getPageCount()) {
+				arr.children[i].draw(context, arr.layouts[i]);
+			}
+		}
+		BlockLayout layout = arr.layout;
+		if (layout.hasBorder(page)) {
+			strokeBorder(context.getBorderBatcher(), context.getGraphicsState(),
+					context.getWriter().getDirectContent(), arr.startX,
+					layout.getPageLower(page), layout.getPageUpper(page),
+					layout.getRealWidth());
+		}
+		st.complete = page >= layout.getPageCount() - 1;
+		return st.complete;
+	}
+
+	/**
+	 * Assign the position to the children and measure the ones not found in the
+	 * cache.
+	 */
+	private synchronized Arrangement arrange(DrawContext context)
+			throws DocumentException {
+		LayoutKey key = new LayoutKey(context);
+		if (!key.equals(c_cacheKey)) {
+			c_cache.clear();
+			c_arrangement = null;
+			c_cacheKey = key;
+		}
+
+		int n = c_children.size();
+		BlockElement[] children = c_children.toArray(new BlockElement[n]);
+		BlockLayout[] layouts = new BlockLayout[n];
+		int[] pages = new int[n];
+		boolean measured = false;
+		float x = c_startX + getBorderLeftSize() + getPaddingLeft();
+		float y = c_startY - getBorderTopSize() - getPaddingTop();
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				BlockLayout prev = layouts[i - 1];
+				if (c_stacking == Stacking.VERT) {
+					int last = prev.getPageCount() - 1;
+					pages[i] = pages[i - 1] + last;
+					y = prev.getPageLower(last) - c_spacing;
+				} else {
+					x += prev.getRealWidth() + c_spacing;
+				}
+			}
+			BlockElement child = children[i];
+			child.setStartX(x);
+			child.setStartY(y);
+			Measure m = c_cache.get(child);
+			if (m == null || m.modCount != child.getModCount() || m.x != x
+					|| m.y != y) {
+				m = new Measure(child.getModCount(), x, y, child.measure(context));
+				c_cache.put(child, m);
+				c_childMeasures++;
+				measured = true;
+			}
+			layouts[i] = m.layout;
+		}
+		if (!measured && c_arrangement != null
+				&& c_arrangement.modCount == getModCount()
+				&& c_arrangement.startX == c_startX && c_arrangement.startY == c_startY) {
+			return c_arrangement;
+		}
+		// forget the children removed
+		c_cache.keySet().retainAll(c_children);
+
+		Arrangement arr = new Arrangement();
+		arr.modCount = getModCount();
+		arr.startX = c_startX;
+		arr.startY = c_startY;
+		arr.children = children;
+		arr.layouts = layouts;
+		arr.pages = pages;
+		arr.layout = buildLayout(context.getDocument(), arr);
+		c_arrangement = arr;
+		return arr;
+	}
+
+	private BlockLayout buildLayout(Document d, Arrangement arr) {
+		int pageCount = 1;
+		boolean complete = true;
+		float innerWidth = 0;
+		for (int i = 0; i < arr.layouts.length; i++) {
+			BlockLayout l = arr.layouts[i];
+			pageCount = Math.max(pageCount, arr.pages[i] + l.getPageCount());
+			complete &= l.isComplete();
+			if (c_stacking == Stacking.VERT)
+				innerWidth = Math.max(innerWidth, l.getRealWidth());
+			else
+				innerWidth += (i > 0 ? c_spacing : 0) + l.getRealWidth();
+		}
+		boolean border = getBorderLeftSize() > 0 || getBorderTopSize() > 0
+				|| getBorderRightSize() > 0 || getBorderBottomSize() > 0;
+
+		BlockLayout.Builder b = new BlockLayout.Builder();
+		int lines = 0;
+		float realHeight = 0;
+		for (int page = 0; page < pageCount; page++) {
+			float upper = page == 0 ? c_startY : d.top();
+			float lower = upper - getBorderTopSize() - getPaddingTop();
+			for (int i = 0; i < arr.layouts.length; i++) {
+				int childPage = page - arr.pages[i];
+				if (childPage >= 0 && childPage < arr.layouts[i].getPageCount()) {
+					lines += arr.layouts[i].getLinesOnPage(childPage);
+					lower = Math.min(lower, arr.layouts[i].getPageLower(childPage));
+				}
+			}
+			lower -= getPaddingBottom() + getBorderBottomSize();
+			if (border)
+				b.setBorder();
+			realHeight += upper - lower;
+			b.endPage(lines, upper - lower, realHeight, lower, upper);
+		}
+		float realWidth = c_width;
+		if (realWidth <= 0) {
+			realWidth = innerWidth + getBorderLeftSize() + getPaddingLeft()
+					+ getPaddingRight() + getBorderRightSize();
+		}
+		return b.build(realWidth, complete);
+	}
+
+	@Override
+	public float getStartX() {
+		return c_startX;
+	}
+
+	@Override
+	public void setStartX(float x) {
+		c_startX = x;
+	}
+
+	@Override
+	public float getStartY() {
+		return c_startY;
+	}
+
+	@Override
+	public void setStartY(float y) {
+		c_startY = y;
+	}
+
+	/**
+	 * @return the declared width, or 0 if the width is given by the children
+	 */
+	public float getWidth() {
+		return c_width;
+	}
+
+	public void setWidth(float width) {
+		c_width = width;
+		changed();
+	}
+
+	/**
+	 * @return distance in points between two children
+	 */
+	public float getSpacing() {
+		return c_spacing;
+	}
+
+	public void setSpacing(float spacing) {
+		c_spacing = spacing;
+		changed();
+	}
+
+	public Stacking getStacking() {
+		return c_stacking;
+	}
+
+	public void setStacking(Stacking stacking) {
+		c_stacking = stacking;
+		changed();
+	}
+
+	/**
+	 * @return the height of the container in its last layout
+	 */
+	@Override
+	public synchronized float getRealHeight() {
+		return c_arrangement == null ? 0 : c_arrangement.layout.getRealHeight();
+	}
+
+	/**
+	 * @return the width of the container in its last layout
+	 */
+	@Override
+	public synchronized float getRealWidth() {
+		return c_arrangement == null ? 0 : c_arrangement.layout.getRealWidth();
+	}
+
+	@Override
+	public boolean isCanGrowX() {
+		return c_width <= 0;
+	}
+
+	@Override
+	public boolean isCanGrowY() {
+		return true;
+	}
+
+	@Override
+	boolean isConsumingContent() {
+		for (BlockElement child : c_children) {
+			if (child.isConsumingContent())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Layout of a child, with the data used to check if it's still valid.
+	 */
+	private static class Measure {
+		final long				modCount;
+		final float				x;
+		final float				y;
+		final BlockLayout	layout;
+
+		Measure(long modCount, float x, float y, BlockLayout layout) {
+			this.modCount = modCount;
+			this.x = x;
+			this.y = y;
+			this.layout = layout;
+		}
+	}
+
+	/**
+	 * Layout of the whole container: the children with their layouts and the
+	 * index of the page (of the container) where each one begins.
+	 */
+	private static class Arrangement {
+		long						modCount;
+		float						startX;
+		float						startY;
+		BlockElement[]	children;
+		BlockLayout[]		layouts;
+		int[]						pages;
+		BlockLayout			layout;
+	}
+
+	/**
+	 * Status of a drawing of the container on a context.
+	 */
+	private static class Status {
+		Arrangement	arrangement;
+		int					page;
+		boolean			complete;
+	}
+
+	/**
+	 * The properties of the context the layout depends on: the page geometry and
+	 * the font registry.
+	 */
+	private static class LayoutKey {
+		private final float					c_pageWidth;
+		private final float					c_left;
+		private final float					c_right;
+		private final float					c_top;
+		private final float					c_bottom;
+		private final FontRegistry	c_fonts;
+
+		LayoutKey(DrawContext context) {
+			Document d = context.getDocument();
+			c_pageWidth = d.getPageSize().getWidth();
+			c_left = d.leftMargin();
+			c_right = d.rightMargin();
+			c_top = d.top();
+			c_bottom = d.bottom();
+			c_fonts = context.getFontRegistry();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LayoutKey))
+				return false;
+			LayoutKey k = (LayoutKey) obj;
+			return c_pageWidth == k.c_pageWidth && c_left == k.c_left
+					&& c_right == k.c_right && c_top == k.c_top
+					&& c_bottom == k.c_bottom && c_fonts == k.c_fonts;
+		}
+
+		@Override
+		public int hashCode() {
+			return Float.floatToIntBits(c_pageWidth) * 31
+					+ Float.floatToIntBits(c_top) * 17 + Float.floatToIntBits(c_bottom);
+		}
+	}
+}
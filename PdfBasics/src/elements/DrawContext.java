@@ -1,16 +1,121 @@
 package elements;
 
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.pdf.PdfWriter;
 
+/**
+ * Context of the drawing of a report document. Besides the writer and the
+ * document, the context owns the drawing status of the elements written on the
+ * document: the elements keep only their definition, so the same element can
+ * be drawn at the same time on different documents, each one with its own
+ * context.
+ * <p>
+ * A context is used by a single thread at a time.
+ */
 public class DrawContext {
 
 	private PdfWriter c_writer;
 	private Document c_document;
+	private Map<Drawable, Object> c_status;
+	private DrawMetrics c_metrics;
+	private DrawTracer c_tracer;
+	private FontRegistry c_fonts;
+	private LineBreakCache c_lineBreaks;
+	private FragmentCache c_fragments;
+	private BorderBatcher c_borders;
+	private boolean c_batchBorders;
+	private GraphicsState c_state;
+	private boolean c_trackState;
+	private Map<Object, Object> c_resources;
+	private boolean c_memoryBounded;
+	private int c_pageCount;
+	private float c_availWidth;
 	
 	public DrawContext(PdfWriter writer, Document document) {
 		c_writer = writer;
 		c_document = document;
+		c_status = new IdentityHashMap<Drawable, Object>();
+		c_fonts = FontRegistry.getShared();
+	}
+
+	/**
+	 * Create the writer of a document on an output stream, open the document and
+	 * return the context to draw on it. The stream can be a
+	 * {@link ChannelOutputStream} to write to a file or a network channel, a
+	 * {@link PipelinedOutputStream} to write to the channel on another thread
+	 * while the next pages are laid out, or a {@link BufferOutputStream} to keep
+	 * the document in memory.
+	 * 
+	 * @param document
+	 *          document to write
+	 * @param out
+	 *          destination of the document; it's closed with the document
+	 * @return the context of the document
+	 * @throws DocumentException
+	 *           if the writer cannot be created
+	 */
+	public static DrawContext open(Document document, OutputStream out)
+			throws DocumentException {
+		PdfWriter writer = PdfWriter.getInstance(document, out);
+		document.open();
+		return new DrawContext(writer, document);
+	}
+
+	/**
+	 * @return true if the context works in memory-bounded mode
+	 * @see #setMemoryBounded(boolean)
+	 */
+	public boolean isMemoryBounded() {
+		return c_memoryBounded;
+	}
+
+	/**
+	 * Set the memory-bounded mode, for very long documents: the writer uses
+	 * compressed cross-reference and object streams (PDF 1.5), and every page
+	 * closed with {@link #newPage()} is flushed to the output stream at once. It
+	 * should be set before writing the first page; once set, the compression of
+	 * the writer cannot be reverted.
+	 * 
+	 * @param memoryBounded
+	 *          true to enable the memory-bounded mode
+	 */
+	public void setMemoryBounded(boolean memoryBounded) {
+		c_memoryBounded = memoryBounded;
+		if (memoryBounded) {
+			c_writer.setFullCompression();
+		}
+	}
+
+	/**
+	 * Close the current page and start a new one. The writer writes the content
+	 * of the page and releases it; in memory-bounded mode the output stream is
+	 * flushed too, so its buffers don't grow with the document.
+	 * 
+	 * @return true if a new page has been started (see
+	 *         {@link Document#newPage()})
+	 */
+	public boolean newPage() {
+		boolean added = c_document.newPage();
+		if (added) {
+			c_pageCount++;
+			if (c_memoryBounded) {
+				c_writer.flush();
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * @return number of pages closed through {@link #newPage()}
+	 */
+	public int getPageCount() {
+		return c_pageCount;
 	}
 
 	public PdfWriter getWriter() {
@@ -25,4 +130,212 @@ public class DrawContext {
 		return c_document.getPageSize().getWidth() - c_document.leftMargin()
 				- c_document.rightMargin();
 	}
+
+	/**
+	 * @return the maximum width of the elements that can grow horizontally and
+	 *         have no max width: the limit set by a {@link PageComposer} for the
+	 *         element it's placing, otherwise the width of the document
+	 */
+	public float getAvailWidth() {
+		return c_availWidth > 0 ? c_availWidth : getDocumentAvailWidth();
+	}
+
+	/**
+	 * Limit the width of the elements measured from now on, without changing
+	 * their max width.
+	 * 
+	 * @param width
+	 *          maximum width, 0 to use the width of the document
+	 */
+	void setAvailWidth(float width) {
+		c_availWidth = width;
+	}
+
+	/**
+	 * @return the registry used to resolve and measure the fonts; by default the
+	 *         {@link FontRegistry#getShared() shared} one
+	 */
+	public FontRegistry getFontRegistry() {
+		return c_fonts;
+	}
+
+	public void setFontRegistry(FontRegistry fonts) {
+		c_fonts = fonts;
+	}
+
+	/**
+	 * @return the cache of the line breaks used by the measure passes, or null
+	 *         if disabled (the default)
+	 */
+	public LineBreakCache getLineBreakCache() {
+		return c_lineBreaks;
+	}
+
+	/**
+	 * Set the cache of the line breaks of the text blocks measured on this
+	 * context; it's worth when the same texts are measured many times.
+	 * 
+	 * @param lineBreaks
+	 *          the cache, normally the {@link LineBreakCache#getShared() shared}
+	 *          one, or null to disable it
+	 */
+	public void setLineBreakCache(LineBreakCache lineBreaks) {
+		c_lineBreaks = lineBreaks;
+	}
+
+	/**
+	 * @return the cache of the text blocks already written, or null if disabled
+	 *         (the default)
+	 */
+	public FragmentCache getFragmentCache() {
+		return c_fragments;
+	}
+
+	/**
+	 * Set the cache of the text blocks written on this context: a block found in
+	 * the cache is drawn without laying it out. It's worth when the documents
+	 * repeat the same blocks many times.
+	 * 
+	 * @param fragments
+	 *          the cache, normally the {@link FragmentCache#getShared() shared}
+	 *          one, or null to disable it
+	 */
+	public void setFragmentCache(FragmentCache fragments) {
+		c_fragments = fragments;
+	}
+
+	/**
+	 * @return the collector of the borders of the page, or null if the borders
+	 *         are written with the blocks
+	 */
+	public BorderBatcher getBorderBatcher() {
+		return c_batchBorders ? c_borders : null;
+	}
+
+	/**
+	 * Set if the borders of the blocks are collected and written at the end of
+	 * every page, grouped by size, color and style (see {@link BorderBatcher}).
+	 * 
+	 * @param batch
+	 *          true to collect the borders, false to write them with the blocks
+	 */
+	public void setBatchBorders(boolean batch) {
+		if (batch && c_borders == null) {
+			// a single listener for the document: the next calls only enable or
+			// disable it
+			c_borders = new BorderBatcher(c_writer.getDirectContent());
+			c_writer.setPageEvent(c_borders);
+		} else if (!batch && c_batchBorders) {
+			// the batcher is still called at the end of the pages, but it's empty
+			c_borders.flush();
+		}
+		c_batchBorders = batch;
+	}
+
+	/**
+	 * @return the tracker of the graphics state of the direct content, or null
+	 *         if the state is not tracked
+	 */
+	public GraphicsState getGraphicsState() {
+		return c_trackState ? c_state : null;
+	}
+
+	/**
+	 * Set if the graphics state of the direct content is tracked, so that the
+	 * blocks don't write the operators that set a value already current (see
+	 * {@link GraphicsState}).
+	 * 
+	 * @param track
+	 *          true to track the state
+	 */
+	public void setTrackGraphicsState(boolean track) {
+		if (track && c_state == null) {
+			// a single listener for the document, as for the borders
+			c_state = new GraphicsState(c_writer);
+			c_writer.setPageEvent(c_state);
+		}
+		// while disabled the tracker is still called at the end of the pages;
+		// the operators written meanwhile are found by its next sync
+		c_trackState = track;
+	}
+
+	/**
+	 * @return the listener of the drawing metrics, or null if the metrics are
+	 *         not collected
+	 */
+	public DrawMetrics getMetrics() {
+		return c_metrics;
+	}
+
+	/**
+	 * Set the listener that receives the counters and the timings of the
+	 * elements drawn on this context.
+	 * 
+	 * @param metrics
+	 *          the listener, or null to disable the metrics
+	 */
+	public void setMetrics(DrawMetrics metrics) {
+		c_metrics = metrics;
+	}
+
+	/**
+	 * @return the tracer of the drawing steps, or null if the steps are not
+	 *         traced
+	 */
+	public DrawTracer getTracer() {
+		return c_tracer;
+	}
+
+	/**
+	 * Set the tracer that receives an event for every step of the drawing of the
+	 * elements on this context.
+	 * 
+	 * @param tracer
+	 *          the tracer, or null to disable the events
+	 */
+	public void setTracer(DrawTracer tracer) {
+		c_tracer = tracer;
+	}
+
+	/**
+	 * @param element
+	 *          element drawn on this context
+	 * @return the drawing status of the element, or null if the element has not
+	 *         been drawn on this context
+	 */
+	Object getDrawStatus(Drawable element) {
+		return c_status.get(element);
+	}
+
+	void setDrawStatus(Drawable element, Object status) {
+		c_status.put(element, status);
+	}
+
+	/**
+	 * @param key
+	 *          key of a resource shared by the elements drawn on this document
+	 * @return the resource, or null if not created yet
+	 */
+	Object getResource(Object key) {
+		return c_resources == null ? null : c_resources.get(key);
+	}
+
+	void setResource(Object key, Object resource) {
+		if (c_resources == null)
+			c_resources = new HashMap<Object, Object>();
+		c_resources.put(key, resource);
+	}
+
+	void removeDrawStatus(Drawable element) {
+		c_status.remove(element);
+	}
+
+	/**
+	 * @return the number of elements whose drawing status is kept by this
+	 *         context: the elements being drawn, and the ones completed but not
+	 *         reset (see {@link BlockElement#resetDrawStatus(DrawContext)})
+	 */
+	public int getDrawStatusCount() {
+		return c_status.size();
+	}
 }
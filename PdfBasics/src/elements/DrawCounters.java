@@ -0,0 +1,124 @@
+package elements;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DrawMetrics} that sums the values received, for all the elements and
+ * all the pages. It's thread safe, so one instance can collect the metrics of
+ * all the documents produced by a process and be read periodically to export
+ * the values. The values per page are available only to a custom listener,
+ * through {@link #drawn(Drawable, int, int, long, long)}.
+ */
+public class DrawCounters implements DrawMetrics {
+
+	private final AtomicLong	c_columnTextCalls	= new AtomicLong();
+	private final AtomicLong	c_linesWritten		= new AtomicLong();
+	private final AtomicLong	c_pieces					= new AtomicLong();
+	private final AtomicLong	c_measures				= new AtomicLong();
+	private final AtomicLong	c_measureNanos		= new AtomicLong();
+	private final AtomicLong	c_layoutNanos			= new AtomicLong();
+	private final AtomicLong	c_renderNanos			= new AtomicLong();
+	private final AtomicLong	c_contentBytes		= new AtomicLong();
+
+	@Override
+	public void columnText(Drawable element, int lines, boolean simulate,
+			long nanos) {
+		c_columnTextCalls.incrementAndGet();
+		c_layoutNanos.addAndGet(nanos);
+	}
+
+	@Override
+	public void measured(Drawable element, BlockLayout layout, long nanos) {
+		c_measures.incrementAndGet();
+		c_measureNanos.addAndGet(nanos);
+	}
+
+	@Override
+	public void drawn(Drawable element, int page, int lines, long contentBytes,
+			long nanos) {
+		c_pieces.incrementAndGet();
+		c_linesWritten.addAndGet(lines);
+		c_contentBytes.addAndGet(contentBytes);
+		c_renderNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * @return number of calls to ColumnText.go, simulated ones included
+	 */
+	public long getColumnTextCalls() {
+		return c_columnTextCalls.get();
+	}
+
+	/**
+	 * @return number of text lines written on the documents
+	 */
+	public long getLinesWritten() {
+		return c_linesWritten.get();
+	}
+
+	/**
+	 * @return number of pieces drawn: an element that spans 3 pages counts 3
+	 */
+	public long getPagesSpanned() {
+		return c_pieces.get();
+	}
+
+	/**
+	 * @return number of measure passes
+	 */
+	public long getMeasures() {
+		return c_measures.get();
+	}
+
+	/**
+	 * @return time spent in measure passes, in nanoseconds
+	 */
+	public long getMeasureNanos() {
+		return c_measureNanos.get();
+	}
+
+	/**
+	 * @return time spent drawing, in nanoseconds
+	 */
+	public long getRenderNanos() {
+		return c_renderNanos.get();
+	}
+
+	/**
+	 * @return time spent in the layout of text columns, in nanoseconds; it's
+	 *         part of both the measure and the drawing time
+	 */
+	public long getLayoutNanos() {
+		return c_layoutNanos.get();
+	}
+
+	/**
+	 * @return bytes added to the content streams of the pages
+	 */
+	public long getContentBytes() {
+		return c_contentBytes.get();
+	}
+
+	/**
+	 * Reset all the counters to zero.
+	 */
+	public void reset() {
+		c_columnTextCalls.set(0);
+		c_linesWritten.set(0);
+		c_pieces.set(0);
+		c_measures.set(0);
+		c_measureNanos.set(0);
+		c_layoutNanos.set(0);
+		c_renderNanos.set(0);
+		c_contentBytes.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "go calls: " + getColumnTextCalls() + ", lines: "
+				+ getLinesWritten() + ", pages spanned: " + getPagesSpanned()
+				+ ", measure ms: " + getMeasureNanos() / 1000000 + ", render ms: "
+				+ getRenderNanos() / 1000000 + ", content bytes: "
+				+ getContentBytes();
+	}
+}
@@ -0,0 +1,115 @@
+package elements;
+
+import elements.BlockElement.GrowDirection;
+
+/**
+ * A step of the drawing of a text block, sent to a {@link DrawTracer}.
+ */
+public final class DrawEvent {
+
+	public enum Type {
+		/**
+		 * a call to {@link TextBlock#draw(DrawContext)}, or to
+		 * {@link TextBlock#draw(DrawContext, BlockLayout)}: a piece of the block
+		 */
+		DRAW,
+		/**
+		 * the drawing of a page after the first one
+		 */
+		REDRAW,
+		/**
+		 * the layout of the text of a page
+		 */
+		TEXT,
+		/**
+		 * the border of a piece of the block
+		 */
+		BORDER
+	}
+
+	private final Type					c_type;
+	private final Drawable			c_element;
+	private final boolean				c_measure;
+	private final float					c_width;
+	private final float					c_height;
+	private final GrowDirection	c_growType;
+	private final int						c_lines;
+	private final int						c_pages;
+	private final long					c_nanos;
+
+	DrawEvent(Type type, Drawable element, boolean measure, float width,
+			float height, GrowDirection growType, int lines, int pages, long nanos) {
+		c_type = type;
+		c_element = element;
+		c_measure = measure;
+		c_width = width;
+		c_height = height;
+		c_growType = growType;
+		c_lines = lines;
+		c_pages = pages;
+		c_nanos = nanos;
+	}
+
+	public Type getType() {
+		return c_type;
+	}
+
+	public Drawable getElement() {
+		return c_element;
+	}
+
+	/**
+	 * @return true if the step belongs to a measure pass, that doesn't write
+	 *         anything
+	 */
+	public boolean isMeasure() {
+		return c_measure;
+	}
+
+	/**
+	 * @return width of the block, in points
+	 */
+	public float getWidth() {
+		return c_width;
+	}
+
+	/**
+	 * @return height of the piece of the block written by the step, in points
+	 */
+	public float getHeight() {
+		return c_height;
+	}
+
+	public GrowDirection getGrowType() {
+		return c_growType;
+	}
+
+	/**
+	 * @return lines of text written by the step
+	 */
+	public int getLines() {
+		return c_lines;
+	}
+
+	/**
+	 * @return pages spanned by the block so far, the current one included
+	 */
+	public int getPages() {
+		return c_pages;
+	}
+
+	/**
+	 * @return duration of the step, in nanoseconds
+	 */
+	public long getNanos() {
+		return c_nanos;
+	}
+
+	@Override
+	public String toString() {
+		return c_type + (c_measure ? " (measure)" : "") + " "
+				+ c_element.getClass().getSimpleName() + " " + c_width + "x"
+				+ c_height + " " + c_growType + ", lines: " + c_lines + ", pages: "
+				+ c_pages + ", us: " + c_nanos / 1000;
+	}
+}
@@ -0,0 +1,61 @@
+package elements;
+
+/**
+ * Listener that receives the counters and the timings of the drawing of the
+ * elements on a {@link DrawContext} (see {@link DrawContext#setMetrics}).
+ * <p>
+ * The methods are called synchronously by the thread that draws, so they must
+ * be fast; when the same listener is assigned to contexts used by different
+ * threads, it must be thread safe. When a context has no listener, the
+ * elements don't even read the clock.
+ * 
+ * @see DrawCounters
+ */
+public interface DrawMetrics {
+
+	/**
+	 * Called after every layout of a text column (a call to
+	 * {@link com.itextpdf.text.pdf.ColumnText#go(boolean) ColumnText.go}).
+	 * 
+	 * @param element
+	 *          element that owns the column
+	 * @param lines
+	 *          lines placed in the column
+	 * @param simulate
+	 *          true if the column has been only measured, without writing
+	 * @param nanos
+	 *          time spent, in nanoseconds
+	 */
+	public void columnText(Drawable element, int lines, boolean simulate,
+			long nanos);
+
+	/**
+	 * Called at the end of a measure pass.
+	 * 
+	 * @param element
+	 *          element measured
+	 * @param layout
+	 *          result of the measure
+	 * @param nanos
+	 *          time spent, in nanoseconds
+	 */
+	public void measured(Drawable element, BlockLayout layout, long nanos);
+
+	/**
+	 * Called after every piece of an element is drawn, that is once for every
+	 * page the element spans.
+	 * 
+	 * @param element
+	 *          element drawn
+	 * @param page
+	 *          number of the page of the document (starting from 1)
+	 * @param lines
+	 *          lines written on the page
+	 * @param contentBytes
+	 *          bytes added to the content stream of the page
+	 * @param nanos
+	 *          time spent, in nanoseconds
+	 */
+	public void drawn(Drawable element, int page, int lines, long contentBytes,
+			long nanos);
+}
@@ -0,0 +1,73 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DrawTracer} that keeps the last events received, to find out why a
+ * document is slow while it's produced: the events shorter than a threshold
+ * are ignored, and when the recorder is full the oldest events are replaced by
+ * the new ones, so the memory used is fixed. It's thread safe.
+ */
+public class DrawRecorder implements DrawTracer {
+
+	private final DrawEvent[]	c_events;
+	private final long				c_minNanos;
+	private int								c_next;
+	private long							c_count;
+
+	/**
+	 * @param capacity
+	 *          number of events kept
+	 * @param minNanos
+	 *          minimum duration of the events kept, in nanoseconds; 0 to keep
+	 *          all the events
+	 */
+	public DrawRecorder(int capacity, long minNanos) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		c_events = new DrawEvent[capacity];
+		c_minNanos = minNanos;
+	}
+
+	@Override
+	public void event(DrawEvent event) {
+		if (event.getNanos() < c_minNanos)
+			return;
+		synchronized (this) {
+			c_events[c_next] = event;
+			c_next = (c_next + 1) % c_events.length;
+			c_count++;
+		}
+	}
+
+	/**
+	 * @return the events kept, from the oldest to the newest
+	 */
+	public synchronized List<DrawEvent> getEvents() {
+		List<DrawEvent> events = new ArrayList<DrawEvent>(c_events.length);
+		for (int i = 0; i < c_events.length; i++) {
+			DrawEvent e = c_events[(c_next + i) % c_events.length];
+			if (e != null)
+				events.add(e);
+		}
+		return events;
+	}
+
+	/**
+	 * @return number of events recorded, the ones replaced included
+	 */
+	public synchronized long getCount() {
+		return c_count;
+	}
+
+	/**
+	 * Remove all the events.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < c_events.length; i++)
+			c_events[i] = null;
+		c_next = 0;
+		c_count = 0;
+	}
+}
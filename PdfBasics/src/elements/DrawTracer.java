@@ -0,0 +1,29 @@
+package elements;
+
+/**
+ * Listener that receives an event for every step of the drawing of the text
+ * blocks on a {@link DrawContext} (see {@link DrawContext#setTracer}): the
+ * drawing of a piece of the block, the pages after the first, the layout of
+ * the text and the borders. The events of a step include the events of the
+ * steps it's made of, so a slow drawing can be broken down to its parts. The
+ * events of type {@link DrawEvent.Type#DRAW DRAW} are sent together with
+ * {@link DrawMetrics#drawn}, with the same duration, when the context has
+ * both the listeners.
+ * <p>
+ * Like {@link DrawMetrics}, the methods are called synchronously by the thread
+ * that draws, so they must be fast, and thread safe when the same tracer is
+ * assigned to contexts used by different threads. When a context has no
+ * tracer, the blocks don't read the clock nor create the events.
+ * 
+ * @see DrawRecorder
+ */
+public interface DrawTracer {
+
+	/**
+	 * Called at the end of every step.
+	 * 
+	 * @param event
+	 *          the step completed
+	 */
+	public void event(DrawEvent event);
+}
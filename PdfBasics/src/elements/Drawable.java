@@ -27,7 +27,37 @@ public interface Drawable {
 	 * @throws DocumentException on low level errors during writing on the pdf document
 	 */
 	public boolean draw(DrawContext context) throws DocumentException;
-	
+
+	/**
+	 * Calculate how this element would be written on the report document, without
+	 * writing anything: the result describes the lines and the height written on
+	 * every page the element spans.
+	 * <p>
+	 * The measure doesn't change the drawing status of the element and doesn't
+	 * use the document's canvas.
+	 *
+	 * @param context current context with the necessary properties to the drawing
+	 *
+	 * @return the layout of the element, starting from its current position
+	 * @throws DocumentException on low level errors during the text layout
+	 */
+	public BlockLayout measure(DrawContext context) throws DocumentException;
+
+	/**
+	 * Perform actual drawing of this element following a layout calculated by
+	 * {@link #measure(DrawContext)}. Like {@link #draw(DrawContext)}, every call
+	 * writes the piece of the element that belongs to the current page.
+	 *
+	 * @param context current context with the necessary properties to the drawing
+	 * @param layout layout of this element, calculated with the same context and
+	 *  properties
+	 *
+	 * @return true if the drawing has finished, false if some content remains to be
+	 *         written on the next page
+	 * @throws DocumentException on low level errors during writing on the pdf document
+	 */
+	public boolean draw(DrawContext context, BlockLayout layout) throws DocumentException;
+
 	/**
 	 * It's the maximum height of this element. If it's 0 or negative,
 	 * there isn't a max width, so the limit derive from the parent width.
@@ -0,0 +1,257 @@
+package elements;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * Cache of the glyph advances of the fonts used to measure text. For every
+ * {@link BaseFont} it keeps a table of the character widths (in thousandths of
+ * the font unit, as returned by {@link BaseFont#getWidth(int)}), so the width of
+ * a string can be computed summing array values instead of querying the font
+ * for every character.
+ * <p>
+ * The tables are split in pages of 256 characters, created the first time a
+ * character of that page is measured; once a page is loaded, measuring a string
+ * in the same font of the previous one doesn't allocate any object.
+ * <p>
+ * The fonts are weakly referenced: the table of a font is dropped when the
+ * font is no longer used by the application, so the fonts created outside a
+ * {@link FontRegistry} don't stay in memory for the life of the process.
+ * <p>
+ * The cache is thread safe and normally used through the process-wide
+ * {@link #getShared() shared} instance.
+ */
+public class FontMetricsCache {
+
+	private static final int													PAGE_BITS		= 8;
+	private static final int													PAGE_SIZE		= 1 << PAGE_BITS;
+	private static final int													PAGE_COUNT	= 0x10000 >> PAGE_BITS;
+
+	private static final FontMetricsCache							SHARED			= new FontMetricsCache();
+
+	private final ConcurrentMap<FontKey, GlyphWidths>	c_tables;
+	private final ReferenceQueue<BaseFont>						c_collected;
+	private final AtomicLong													c_hits;
+	private final AtomicLong													c_misses;
+	/**
+	 * table of the last font measured, found without looking up the map
+	 */
+	private volatile GlyphWidths											c_last;
+
+	public FontMetricsCache() {
+		c_tables = new ConcurrentHashMap<FontKey, GlyphWidths>();
+		c_collected = new ReferenceQueue<BaseFont>();
+		c_hits = new AtomicLong();
+		c_misses = new AtomicLong();
+	}
+
+	/**
+	 * @return the cache shared by all the elements of the process
+	 */
+	public static FontMetricsCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Calculate the width of a string, that can contain multiple lines separated
+	 * by '\n'.
+	 *
+	 * @param s
+	 *          text to measure
+	 * @param bf
+	 *          font used to write the text
+	 * @param fontSize
+	 *          font size in points
+	 * @return the width in points of the largest line
+	 */
+	public float getStringWidth(String s, BaseFont bf, float fontSize) {
+		float maxWidth = 0;
+		int start = 0;
+		int len = s.length();
+		while (start <= len) {
+			int end = s.indexOf('\n', start);
+			if (end < 0)
+				end = len;
+			float w = getLineWidth(s, start, end, bf, fontSize);
+			if (w > maxWidth)
+				maxWidth = w;
+			start = end + 1;
+		}
+		return maxWidth;
+	}
+
+	/**
+	 * Calculate the width of a portion of text, without taking into account line
+	 * separators.
+	 *
+	 * @param s
+	 *          text to measure
+	 * @param start
+	 *          index of the first character to measure
+	 * @param end
+	 *          index after the last character to measure
+	 * @param bf
+	 *          font used to write the text
+	 * @param fontSize
+	 *          font size in points
+	 * @return the width in points of the text, the same value returned by
+	 *         {@link BaseFont#getWidthPoint(String, float)}
+	 */
+	public float getLineWidth(CharSequence s, int start, int end, BaseFont bf,
+			float fontSize) {
+		if (bf.getFontType() == BaseFont.FONT_TYPE_CJK) {
+			// CJK fonts have their own rules (vertical writing): don't cache
+			return bf.getWidthPoint(s.subSequence(start, end).toString(), fontSize);
+		}
+		GlyphWidths table = getTable(bf);
+		int total = 0;
+		for (int i = start; i < end; i++) {
+			total += table.getWidth(bf, s.charAt(i));
+		}
+		return total * 0.001f * fontSize;
+	}
+
+	private GlyphWidths getTable(BaseFont bf) {
+		GlyphWidths table = c_last;
+		if (table == null || table.c_key.get() != bf) {
+			table = c_tables.get(new FontKey(bf, null));
+			if (table == null) {
+				c_misses.incrementAndGet();
+				expunge();
+				FontKey key = new FontKey(bf, c_collected);
+				table = new GlyphWidths(key);
+				GlyphWidths prev = c_tables.putIfAbsent(key, table);
+				if (prev != null)
+					table = prev;
+				c_last = table;
+				return table;
+			}
+			c_last = table;
+		}
+		c_hits.incrementAndGet();
+		return table;
+	}
+
+	/**
+	 * Remove the tables of the fonts collected by the garbage collector.
+	 */
+	private void expunge() {
+		FontKey key;
+		while ((key = (FontKey) c_collected.poll()) != null) {
+			c_tables.remove(key);
+		}
+	}
+
+	/**
+	 * Remove the table of a font, for example when the font isn't used anymore.
+	 *
+	 * @param bf
+	 *          font to remove
+	 */
+	public void evict(BaseFont bf) {
+		c_tables.remove(new FontKey(bf, null));
+		GlyphWidths last = c_last;
+		if (last != null && last.c_key.get() == bf)
+			c_last = null;
+	}
+
+	/**
+	 * Remove all the tables and reset the hit/miss counters.
+	 */
+	public void clear() {
+		c_tables.clear();
+		c_last = null;
+		c_hits.set(0);
+		c_misses.set(0);
+	}
+
+	/**
+	 * @return number of fonts which glyph table is currently cached
+	 */
+	public int getSize() {
+		expunge();
+		return c_tables.size();
+	}
+
+	/**
+	 * @return number of measurements that found the font table already cached
+	 */
+	public long getHits() {
+		return c_hits.get();
+	}
+
+	/**
+	 * @return number of measurements that needed to create the font table
+	 */
+	public long getMisses() {
+		return c_misses.get();
+	}
+
+	/**
+	 * Weak key of a font, compared by identity like {@link BaseFont} itself.
+	 */
+	private static class FontKey extends WeakReference<BaseFont> {
+		private final int	c_hash;
+
+		FontKey(BaseFont font, ReferenceQueue<BaseFont> queue) {
+			super(font, queue);
+			c_hash = System.identityHashCode(font);
+		}
+
+		@Override
+		public int hashCode() {
+			return c_hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (!(obj instanceof FontKey))
+				return false;
+			BaseFont font = get();
+			return font != null && font == ((FontKey) obj).get();
+		}
+	}
+
+	/**
+	 * Character widths of a single font, loaded one page at a time. The table
+	 * doesn't reference the font, otherwise the font would never be collected.
+	 */
+	private static class GlyphWidths {
+		private final FontKey											c_key;
+		private final AtomicReferenceArray<int[]>	c_pages;
+
+		GlyphWidths(FontKey key) {
+			c_key = key;
+			c_pages = new AtomicReferenceArray<int[]>(PAGE_COUNT);
+		}
+
+		int getWidth(BaseFont font, char ch) {
+			int pageIdx = ch >> PAGE_BITS;
+			int[] page = c_pages.get(pageIdx);
+			if (page == null) {
+				// concurrent loads of the same page produce the same values: the
+				// last one wins without harm
+				page = loadPage(font, pageIdx);
+				c_pages.set(pageIdx, page);
+			}
+			return page[ch & (PAGE_SIZE - 1)];
+		}
+
+		private int[] loadPage(BaseFont font, int pageIdx) {
+			int[] page = new int[PAGE_SIZE];
+			int base = pageIdx << PAGE_BITS;
+			for (int i = 0; i < PAGE_SIZE; i++) {
+				page[i] = font.getWidth(base + i);
+			}
+			return page;
+		}
+	}
+}
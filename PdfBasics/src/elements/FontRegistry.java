@@ -0,0 +1,275 @@
+package elements;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * Registry of the fonts used by the elements: it resolves the {@link Font}
+ * definitions to their {@link BaseFont} once, and shares the instances (and
+ * their metrics, kept by a {@link FontMetricsCache}) across documents and
+ * threads.
+ * <p>
+ * The registry holds at most {@link #getMaxSize() maxSize} fonts; when it's
+ * full the least recently used font is evicted, together with its metrics.
+ * The standard Type1 fonts are also kept by iText's own cache, so all the
+ * documents use the same instances; the fonts loaded from files are owned only
+ * by the registry and released on eviction.
+ * <p>
+ * The registry is thread safe and normally used through the process-wide
+ * {@link #getShared() shared} instance.
+ */
+public class FontRegistry {
+
+	public static final int						DEFAULT_MAX_SIZE	= 64;
+
+	private static final Set<String>	STANDARD_FONTS		= new HashSet<String>();
+	static {
+		Collections.addAll(STANDARD_FONTS, BaseFont.COURIER, BaseFont.COURIER_BOLD,
+				BaseFont.COURIER_OBLIQUE, BaseFont.COURIER_BOLDOBLIQUE,
+				BaseFont.HELVETICA, BaseFont.HELVETICA_BOLD, BaseFont.HELVETICA_OBLIQUE,
+				BaseFont.HELVETICA_BOLDOBLIQUE, BaseFont.SYMBOL, BaseFont.TIMES_ROMAN,
+				BaseFont.TIMES_BOLD, BaseFont.TIMES_ITALIC, BaseFont.TIMES_BOLDITALIC,
+				BaseFont.ZAPFDINGBATS);
+	}
+
+	private static final FontRegistry	SHARED						= new FontRegistry(
+																															DEFAULT_MAX_SIZE, FontMetricsCache.getShared());
+
+	private final int										c_maxSize;
+	private final FontMetricsCache			c_metrics;
+	private final Map<String, BaseFont>	c_fonts;
+	private long												c_hits;
+	private long												c_misses;
+	private long												c_evictions;
+
+	/**
+	 * @param maxSize
+	 *          maximum number of fonts kept
+	 * @param metrics
+	 *          cache of the metrics of the fonts
+	 */
+	public FontRegistry(int maxSize, FontMetricsCache metrics) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize must be positive");
+		c_maxSize = maxSize;
+		c_metrics = metrics;
+		c_fonts = new LinkedHashMap<String, BaseFont>(16, 0.75f, true) {
+			private static final long	serialVersionUID	= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, BaseFont> eldest) {
+				if (size() <= c_maxSize)
+					return false;
+				c_evictions++;
+				c_metrics.evict(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	public FontRegistry(int maxSize) {
+		this(maxSize, new FontMetricsCache());
+	}
+
+	/**
+	 * @return the registry shared by all the elements of the process
+	 */
+	public static FontRegistry getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the font with the given name and encoding, loading it the first
+	 * time it's requested. The arguments are the same of
+	 * {@link BaseFont#createFont(String, String, boolean)}.
+	 * 
+	 * @param name
+	 *          name of a standard font or of a font file
+	 * @param encoding
+	 *          encoding of the font
+	 * @param embedded
+	 *          true if the font must be embedded in the documents
+	 * @return the shared instance of the font
+	 * @throws DocumentException
+	 *           if the font is not recognized
+	 * @throws IOException
+	 *           if the font file cannot be read
+	 */
+	public BaseFont getBaseFont(String name, String encoding, boolean embedded)
+			throws DocumentException, IOException {
+		String key = name + '\n' + encoding + '\n' + embedded;
+		BaseFont bf;
+		synchronized (this) {
+			bf = c_fonts.get(key);
+			if (bf != null) {
+				c_hits++;
+				return bf;
+			}
+			c_misses++;
+		}
+		// the font is loaded outside the lock: concurrent loads of the same font
+		// are rare, the first instance registered is kept
+		bf = BaseFont.createFont(name, encoding, embedded, isStandardFont(name),
+				null, null);
+		synchronized (this) {
+			BaseFont prev = c_fonts.get(key);
+			if (prev != null)
+				return prev;
+			c_fonts.put(key, bf);
+		}
+		return bf;
+	}
+
+	/**
+	 * Resolve a font definition to the font used to write it: the same one of
+	 * {@link Font#getCalculatedBaseFont(boolean) getCalculatedBaseFont(false)},
+	 * taken from the registry.
+	 * 
+	 * @param f
+	 *          font definition
+	 * @return the font to use to write and measure the text
+	 */
+	public BaseFont getBaseFont(Font f) {
+		if (f.getBaseFont() != null)
+			return f.getBaseFont();
+		String name = getStandardFontName(f.getFamily(), f.getStyle());
+		try {
+			return getBaseFont(name, BaseFont.WINANSI, false);
+		} catch (Exception e) {
+			// a standard font is always available
+			throw new IllegalStateException("Cannot load font " + name, e);
+		}
+	}
+
+	/**
+	 * Returns a font equivalent to the given one, but with the {@link BaseFont}
+	 * already resolved, so iText doesn't need to resolve it again for every
+	 * chunk of text.
+	 * 
+	 * @param f
+	 *          font definition
+	 * @return a font with the base font assigned
+	 */
+	public Font getResolvedFont(Font f) {
+		if (f.getBaseFont() != null)
+			return f;
+		int style = f.getStyle();
+		// bold and italic are already in the base font: if kept in the style,
+		// iText would simulate them
+		style = style == Font.UNDEFINED ? Font.NORMAL : style & ~Font.BOLDITALIC;
+		return new Font(getBaseFont(f), f.getSize(), style, f.getColor());
+	}
+
+	/**
+	 * @return the cache of the metrics of the fonts of this registry
+	 */
+	public FontMetricsCache getMetrics() {
+		return c_metrics;
+	}
+
+	/**
+	 * @return maximum number of fonts kept by this registry
+	 */
+	public int getMaxSize() {
+		return c_maxSize;
+	}
+
+	/**
+	 * @return number of fonts currently kept
+	 */
+	public synchronized int getSize() {
+		return c_fonts.size();
+	}
+
+	/**
+	 * @return number of requests of a font already loaded
+	 */
+	public synchronized long getHits() {
+		return c_hits;
+	}
+
+	/**
+	 * @return number of requests that needed to load the font
+	 */
+	public synchronized long getMisses() {
+		return c_misses;
+	}
+
+	/**
+	 * @return number of fonts removed to respect the maximum size
+	 */
+	public synchronized long getEvictions() {
+		return c_evictions;
+	}
+
+	/**
+	 * Remove all the fonts and their metrics.
+	 */
+	public synchronized void clear() {
+		for (BaseFont bf : c_fonts.values()) {
+			c_metrics.evict(bf);
+		}
+		c_fonts.clear();
+	}
+
+	private static boolean isStandardFont(String name) {
+		return STANDARD_FONTS.contains(name);
+	}
+
+	/**
+	 * Name of the standard font of a family and style, with the same rules of
+	 * {@link Font#getCalculatedBaseFont(boolean)}.
+	 */
+	private static String getStandardFontName(FontFamily family, int style) {
+		if (style == Font.UNDEFINED)
+			style = Font.NORMAL;
+		switch (family) {
+		case COURIER:
+			switch (style & Font.BOLDITALIC) {
+			case Font.BOLD:
+				return BaseFont.COURIER_BOLD;
+			case Font.ITALIC:
+				return BaseFont.COURIER_OBLIQUE;
+			case Font.BOLDITALIC:
+				return BaseFont.COURIER_BOLDOBLIQUE;
+			default:
+				return BaseFont.COURIER;
+			}
+		case TIMES_ROMAN:
+			switch (style & Font.BOLDITALIC) {
+			case Font.BOLD:
+				return BaseFont.TIMES_BOLD;
+			case Font.ITALIC:
+				return BaseFont.TIMES_ITALIC;
+			case Font.BOLDITALIC:
+				return BaseFont.TIMES_BOLDITALIC;
+			default:
+				return BaseFont.TIMES_ROMAN;
+			}
+		case SYMBOL:
+			return BaseFont.SYMBOL;
+		case ZAPFDINGBATS:
+			return BaseFont.ZAPFDINGBATS;
+		default:
+			switch (style & Font.BOLDITALIC) {
+			case Font.BOLD:
+				return BaseFont.HELVETICA_BOLD;
+			case Font.ITALIC:
+				return BaseFont.HELVETICA_OBLIQUE;
+			case Font.BOLDITALIC:
+				return BaseFont.HELVETICA_BOLDOBLIQUE;
+			default:
+				return BaseFont.HELVETICA;
+			}
+		}
+	}
+}
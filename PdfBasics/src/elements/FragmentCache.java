@@ -0,0 +1,468 @@
+package elements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.ByteBuffer;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Cache of the text blocks already written, shared by the documents: a block
+ * is identified by a hash of its definition (content, fonts, size, padding,
+ * borders, grow type), so the blocks with the same definition share the same
+ * entry. The entry keeps the content stream written by the block, with its
+ * real width and height and the fonts it uses; a block found in the cache is
+ * not laid out: the content is copied once in every document in a form
+ * XObject, with the fonts of the document, and the form is drawn at the
+ * position of the block. The fonts are shared with the rest of the document,
+ * so a cached block adds only its content.
+ * <p>
+ * Only the blocks completely written on the page where they start, without
+ * reaching the bottom margin, are cached (see {@link LineBreakCache} for the
+ * content that can be described), and only if their content uses no resources
+ * but the fonts. The cache holds at most {@link #getMaxBytes() maxBytes} bytes
+ * of content; when it's full the least recently used entries are evicted.
+ * <p>
+ * The cache is disabled unless set with
+ * {@link DrawContext#setFragmentCache(FragmentCache)}; it's thread safe, so the
+ * {@link #getShared() shared} instance can be used by all the contexts.
+ */
+public class FragmentCache {
+
+	public static final long						DEFAULT_MAX_BYTES	= 16 * 1024 * 1024;
+
+	/**
+	 * space around the block in its form, for the lines drawn across the limits
+	 * of the block
+	 */
+	private static final float					BLEED							= 4;
+
+	private static final FragmentCache	SHARED						= new FragmentCache(
+																															DEFAULT_MAX_BYTES);
+
+	private final long									c_maxBytes;
+	private final Map<String, Fragment>	c_fragments;
+	private long												c_bytes;
+	private long												c_hits;
+	private long												c_misses;
+	private long												c_evictions;
+
+	/**
+	 * @param maxBytes
+	 *          maximum size of the content kept, in bytes
+	 */
+	public FragmentCache(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("maxBytes must be positive");
+		c_maxBytes = maxBytes;
+		c_fragments = new LinkedHashMap<String, Fragment>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return the cache shared by all the contexts of the process
+	 */
+	public static FragmentCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Draw a block taking it from the cache, or write it in the cache and draw
+	 * it if it's not found. The drawing status of the block is updated as if the
+	 * block had been written entirely.
+	 *
+	 * @return false if the block cannot be cached: it must be written normally
+	 */
+	boolean draw(TextBlock block, TextBlock.DrawStatus st, DrawContext context)
+			throws DocumentException {
+		String desc = block.describe(context);
+		if (desc == null)
+			return false;
+		String key = hash(desc);
+		Document d = context.getDocument();
+		float startY = block.getStartY();
+		Fragment f = get(key);
+		if (f == null) {
+			f = render(block, context);
+			if (f == null)
+				return false;
+			put(key, f);
+		} else if (startY - f.depth <= Math.max(d.bottomMargin(), 0)) {
+			// the block doesn't fit the page at this position
+			return false;
+		}
+
+		PdfContentByte cb = context.getWriter().getDirectContent();
+		PdfTemplate form = (PdfTemplate) context.getResource(key);
+		if (form == null) {
+			form = f.createForm(cb);
+			context.setResource(key, form);
+		}
+		cb.addTemplate(form, block.getStartX() - BLEED, startY - f.height - BLEED);
+
+		st.linesWritten = f.lines;
+		st.pages = 1;
+		st.realWidth = f.width;
+		st.lastHeight = f.height;
+		st.realHeight = f.height;
+		st.realUpper = startY;
+		st.realLower = startY - f.height;
+		st.drawing = true;
+		st.drawComplete = true;
+		return true;
+	}
+
+	/**
+	 * Write the block in a form of its own size, in a scratch document, and keep
+	 * the content of the form.
+	 *
+	 * @return the fragment, or null if the block cannot be cached
+	 */
+	private static Fragment render(TextBlock block, DrawContext context)
+			throws DocumentException {
+		BlockLayout layout = block.measure(context);
+		if (layout.getPageCount() != 1 || !layout.isComplete())
+			return null;
+		float upper = layout.getPageUpper(0);
+		float lower = layout.getPageLower(0);
+		float lowest = lower;
+		float[] cols = layout.getColumns(0);
+		for (int i = 0; i < cols.length; i += 4)
+			lowest = Math.min(lowest, cols[i + 1]);
+		if (lowest <= Math.max(context.getDocument().bottomMargin(), 0)) {
+			// the layout depends on the position of the block
+			return null;
+		}
+
+		float width = layout.getRealWidth();
+		float height = upper - lower;
+		// the scratch document is never closed: only the content of the form is
+		// kept
+		Document doc = new Document(new Rectangle(width + 2 * BLEED, height + 2
+				* BLEED), 0, 0, 0, 0);
+		PdfWriter writer = PdfWriter.getInstance(doc, new ByteArrayOutputStream());
+		doc.open();
+		DrawContext scratch = new DrawContext(writer, doc);
+		scratch.setFontRegistry(context.getFontRegistry());
+		Map<BaseFont, StringBuilder> text = new LinkedHashMap<BaseFont, StringBuilder>();
+		block.collectText(context.getFontRegistry(), text);
+		BaseFont[] fonts = text.keySet().toArray(new BaseFont[text.size()]);
+		PdfTemplate form = writer.getDirectContent().createTemplate(
+				width + 2 * BLEED, height + 2 * BLEED);
+		String[] names = addFonts(form, fonts, new String[fonts.length]);
+		form.saveState();
+		form.concatCTM(1, 0, 0, 1, BLEED - block.getStartX(), BLEED - lower);
+		block.draw(scratch, layout, form);
+		form.restoreState();
+
+		// the names of the fonts are replaced by the ones of the documents
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		for (int i = 0; i < names.length; i++)
+			slots.put(names[i], Integer.valueOf(i));
+		List<byte[]> parts = new ArrayList<byte[]>();
+		List<Integer> used = new ArrayList<Integer>();
+		if (!split(form.getInternalBuffer().toByteArray(), slots, parts, used))
+			return null;
+		List<BaseFont> kept = new ArrayList<BaseFont>();
+		List<String> chars = new ArrayList<String>();
+		int[] fontOf = new int[used.size()];
+		for (int i = 0; i < fontOf.length; i++) {
+			BaseFont bf = fonts[used.get(i).intValue()];
+			fontOf[i] = kept.indexOf(bf);
+			if (fontOf[i] < 0) {
+				fontOf[i] = kept.size();
+				kept.add(bf);
+				chars.add(text.get(bf).toString());
+			}
+		}
+		return new Fragment(parts.toArray(new byte[parts.size()][]), fontOf,
+				kept.toArray(new BaseFont[kept.size()]), chars
+						.toArray(new String[chars.size()]), width, height, layout
+						.getLineCount(), upper - lowest);
+	}
+
+	/**
+	 * Add the fonts to the resources of a form, marking the characters written
+	 * with them as used so the subsets of the embedded fonts contain them.
+	 *
+	 * @param chars
+	 *          characters written with every font; null elements for none
+	 * @return the names of the fonts in the resources of the form
+	 */
+	static String[] addFonts(PdfTemplate form, BaseFont[] fonts,
+			String[] chars) {
+		ByteBuffer buf = form.getInternalBuffer();
+		int size = buf.size();
+		String[] names = new String[fonts.length];
+		form.beginText();
+		for (int i = 0; i < fonts.length; i++) {
+			int start = buf.size();
+			form.setFontAndSize(fonts[i], 1);
+			// the operator written is "/name 1 Tf"
+			byte[] b = buf.getBuffer();
+			StringBuilder name = new StringBuilder();
+			for (int j = start; b[j] != ' '; j++)
+				name.append((char) b[j]);
+			names[i] = name.toString();
+			if (chars[i] != null)
+				form.showText(chars[i]);
+		}
+		form.endText();
+		// only the resources are kept
+		buf.setSize(size);
+		return names;
+	}
+
+	/**
+	 * Split a content stream at the names of the fonts.
+	 *
+	 * @param slots
+	 *          index of the font of every name
+	 * @param parts
+	 *          receives the content between the names
+	 * @param used
+	 *          receives the index of the font of every name found
+	 * @return false if the content uses a name that's not of a font
+	 */
+	private static boolean split(byte[] content, Map<String, Integer> slots,
+			List<byte[]> parts, List<Integer> used) {
+		int start = 0;
+		int i = 0;
+		while (i < content.length) {
+			byte b = content[i];
+			if (b == '(') {
+				// literal string, with balanced parentheses and escapes
+				int depth = 0;
+				do {
+					if (content[i] == '\\')
+						i++;
+					else if (content[i] == '(')
+						depth++;
+					else if (content[i] == ')')
+						depth--;
+					i++;
+				} while (depth > 0 && i < content.length);
+			} else if (b == '<' && i + 1 < content.length && content[i + 1] == '<') {
+				// dictionary: its names are checked too
+				i += 2;
+			} else if (b == '<') {
+				// hexadecimal string
+				while (i < content.length && content[i] != '>')
+					i++;
+				i++;
+			} else if (b == '/') {
+				int end = i + 1;
+				while (end < content.length && !isDelimiter(content[end]))
+					end++;
+				StringBuilder name = new StringBuilder();
+				for (int j = i; j < end; j++)
+					name.append((char) content[j]);
+				Integer slot = slots.get(name.toString());
+				if (slot == null)
+					return false;
+				parts.add(Arrays.copyOfRange(content, start, i));
+				used.add(slot);
+				start = end;
+				i = end;
+			} else {
+				i++;
+			}
+		}
+		parts.add(Arrays.copyOfRange(content, start, content.length));
+		return true;
+	}
+
+	private static boolean isDelimiter(byte b) {
+		switch (b) {
+		case ' ':
+		case '\t':
+		case '\r':
+		case '\n':
+		case '\f':
+		case 0:
+		case '(':
+		case ')':
+		case '<':
+		case '>':
+		case '[':
+		case ']':
+		case '{':
+		case '}':
+		case '/':
+		case '%':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	static String hash(String desc) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] h = md.digest(desc.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder(h.length * 2);
+			for (byte b : h) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is available on every platform
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private synchronized Fragment get(String key) {
+		Fragment f = c_fragments.get(key);
+		if (f != null)
+			c_hits++;
+		else
+			c_misses++;
+		return f;
+	}
+
+	private synchronized void put(String key, Fragment f) {
+		Fragment prev = c_fragments.put(key, f);
+		if (prev != null)
+			c_bytes -= prev.size;
+		c_bytes += f.size;
+		Iterator<Fragment> it = c_fragments.values().iterator();
+		while (c_bytes > c_maxBytes && it.hasNext()) {
+			Fragment eldest = it.next();
+			if (eldest == f)
+				break;
+			c_bytes -= eldest.size;
+			it.remove();
+			c_evictions++;
+		}
+	}
+
+	/**
+	 * @return maximum size of the content kept, in bytes
+	 */
+	public long getMaxBytes() {
+		return c_maxBytes;
+	}
+
+	/**
+	 * @return size of the content currently kept, in bytes
+	 */
+	public synchronized long getBytes() {
+		return c_bytes;
+	}
+
+	/**
+	 * @return number of blocks currently kept
+	 */
+	public synchronized int getSize() {
+		return c_fragments.size();
+	}
+
+	/**
+	 * @return number of blocks found in the cache
+	 */
+	public synchronized long getHits() {
+		return c_hits;
+	}
+
+	/**
+	 * @return number of blocks not found in the cache
+	 */
+	public synchronized long getMisses() {
+		return c_misses;
+	}
+
+	/**
+	 * @return number of blocks removed to respect the maximum size
+	 */
+	public synchronized long getEvictions() {
+		return c_evictions;
+	}
+
+	/**
+	 * Remove all the blocks and reset the counters.
+	 */
+	public synchronized void clear() {
+		c_fragments.clear();
+		c_bytes = 0;
+		c_hits = 0;
+		c_misses = 0;
+		c_evictions = 0;
+	}
+
+	/**
+	 * The content of a block written in a form of its own size.
+	 */
+	private static final class Fragment {
+		/**
+		 * the content, split at the names of the fonts
+		 */
+		final byte[][]		parts;
+		/**
+		 * font of every name, between two parts
+		 */
+		final int[]				fontOf;
+		final BaseFont[]	fonts;
+		/**
+		 * characters written with every font
+		 */
+		final String[]		chars;
+		final float				width;
+		final float				height;
+		final int					lines;
+		/**
+		 * distance from the top of the block of the lowest column of text
+		 */
+		final float				depth;
+		final int					size;
+
+		Fragment(byte[][] parts, int[] fontOf, BaseFont[] fonts, String[] chars,
+				float width, float height, int lines, float depth) {
+			this.parts = parts;
+			this.fontOf = fontOf;
+			this.fonts = fonts;
+			this.chars = chars;
+			this.width = width;
+			this.height = height;
+			this.lines = lines;
+			this.depth = depth;
+			int size = 0;
+			for (byte[] part : parts)
+				size += part.length;
+			this.size = size;
+		}
+
+		/**
+		 * Write the content in a new form of the document of the canvas, with the
+		 * fonts of the document.
+		 */
+		PdfTemplate createForm(PdfContentByte cb) {
+			PdfTemplate form = cb.createTemplate(width + 2 * BLEED, height + 2
+					* BLEED);
+			String[] names = addFonts(form, fonts, chars);
+			ByteBuffer buf = form.getInternalBuffer();
+			for (int i = 0; i < parts.length; i++) {
+				if (i > 0)
+					buf.append(names[fontOf[i - 1]]);
+				buf.append(parts[i]);
+			}
+			return form;
+		}
+	}
+}
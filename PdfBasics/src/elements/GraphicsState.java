@@ -0,0 +1,312 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Tracker of the graphics state of the direct content of a writer, enabled
+ * with {@link DrawContext#setTrackGraphicsState(boolean)}. The blocks set line
+ * width, colors, dash and font through the tracker, that omits the operators
+ * setting a value already current: the borders of consecutive blocks are
+ * written without saving and restoring the state every time, and the texts of
+ * a single line without repeating the font.
+ * <p>
+ * The tracker knows only the operators written through it. If the canvas has
+ * been written by other code since the last one (the text laid out by
+ * ColumnText, the templates, the code of the application) or the page has
+ * changed, the state is unknown and the next operators are all written. The
+ * code that writes other operators directly on the canvas, without changing the
+ * state (paths, text), calls {@link #sync()} before them and {@link #mark()}
+ * after them.
+ * <p>
+ * The width, the color and the font set stay current after the blocks, like
+ * when they are written directly on the canvas.
+ */
+public class GraphicsState extends PdfPageEventHelper {
+
+	private final PdfWriter				c_writer;
+	private final PdfContentByte	c_canvas;
+	private final List<Values>		c_stack;
+	private final List<Long>			c_pageSaved;
+	private Values								c_current;
+	private int										c_page;
+	/**
+	 * size of the content when the last operator was written through the
+	 * tracker, -1 if the state is unknown
+	 */
+	private int										c_mark;
+	private long									c_saved;
+	private long									c_saving;
+	private long									c_omitted;
+
+	/**
+	 * @param writer
+	 *          writer of the direct content tracked
+	 */
+	public GraphicsState(PdfWriter writer) {
+		c_writer = writer;
+		c_canvas = writer.getDirectContent();
+		c_stack = new ArrayList<Values>();
+		c_pageSaved = new ArrayList<Long>();
+		c_current = new Values();
+		c_mark = -1;
+	}
+
+	/**
+	 * @return true if the state of the canvas is tracked
+	 */
+	boolean isTracking(PdfContentByte canvas) {
+		return canvas == c_canvas;
+	}
+
+	/**
+	 * Forget the state if the canvas has been written by other code since the
+	 * last operator written through the tracker.
+	 */
+	public void sync() {
+		if (c_mark != c_canvas.getInternalBuffer().size()
+				|| c_page != c_writer.getPageNumber()) {
+			c_current.clear();
+			for (Values v : c_stack)
+				v.clear();
+		}
+	}
+
+	/**
+	 * Declare that the operators written on the canvas since the last call of
+	 * {@link #sync()} don't change the state.
+	 */
+	public void mark() {
+		c_mark = c_canvas.getInternalBuffer().size();
+		c_page = c_writer.getPageNumber();
+	}
+
+	public void saveState() {
+		sync();
+		c_canvas.saveState();
+		c_stack.add(c_current.copy());
+		mark();
+	}
+
+	public void restoreState() {
+		sync();
+		c_canvas.restoreState();
+		if (c_stack.isEmpty()) {
+			// not saved through the tracker
+			c_current.clear();
+		} else {
+			c_current = c_stack.remove(c_stack.size() - 1);
+		}
+		mark();
+	}
+
+	public void setLineWidth(float width) {
+		sync();
+		Values v = c_current;
+		if (v.lineWidth == width) {
+			omitted(v.lineWidthBytes);
+			return;
+		}
+		int start = c_canvas.getInternalBuffer().size();
+		c_canvas.setLineWidth(width);
+		v.lineWidth = width;
+		v.lineWidthBytes = written(start);
+	}
+
+	/**
+	 * Set the dash of the lines.
+	 *
+	 * @param on
+	 *          length of the dashes; 0 for a solid line
+	 * @param off
+	 *          length of the gaps
+	 */
+	public void setLineDash(float on, float off) {
+		sync();
+		Values v = c_current;
+		if (on <= 0)
+			off = 0;
+		if (v.dashOn == on && v.dashOff == off) {
+			omitted(v.dashBytes);
+			return;
+		}
+		int start = c_canvas.getInternalBuffer().size();
+		if (on <= 0)
+			c_canvas.setLineDash(0);
+		else
+			c_canvas.setLineDash(on, off, 0);
+		v.dashOn = on;
+		v.dashOff = off;
+		v.dashBytes = written(start);
+	}
+
+	/**
+	 * @param color
+	 *          color of the lines; null for black
+	 */
+	public void setColorStroke(BaseColor color) {
+		sync();
+		Values v = c_current;
+		if (color == null)
+			color = BaseColor.BLACK;
+		if (isSame(v.stroke, color)) {
+			omitted(v.strokeBytes);
+			return;
+		}
+		int start = c_canvas.getInternalBuffer().size();
+		c_canvas.setColorStroke(color);
+		v.stroke = color;
+		v.strokeBytes = written(start);
+	}
+
+	/**
+	 * @param color
+	 *          color of the text and of the fills; null for the default black
+	 *          (gray level 0)
+	 */
+	public void setColorFill(BaseColor color) {
+		sync();
+		Values v = c_current;
+		BaseColor value = color != null ? color : BaseColor.BLACK;
+		if (isSame(v.fill, value)) {
+			omitted(v.fillBytes);
+			return;
+		}
+		int start = c_canvas.getInternalBuffer().size();
+		if (color == null)
+			c_canvas.resetGrayFill();
+		else
+			c_canvas.setColorFill(color);
+		v.fill = value;
+		v.fillBytes = written(start);
+	}
+
+	public void setFontAndSize(BaseFont font, float size) {
+		sync();
+		Values v = c_current;
+		if (v.font == font && v.fontSize == size) {
+			omitted(v.fontBytes);
+			return;
+		}
+		int start = c_canvas.getInternalBuffer().size();
+		c_canvas.setFontAndSize(font, size);
+		v.font = font;
+		v.fontSize = size;
+		v.fontBytes = written(start);
+	}
+
+	/**
+	 * Colors of different classes can have the same RGB value in different
+	 * color spaces: they are not the same color.
+	 */
+	private static boolean isSame(BaseColor current, BaseColor color) {
+		return current != null && current.getClass() == color.getClass()
+				&& current.equals(color);
+	}
+
+	private int written(int start) {
+		mark();
+		return c_mark - start;
+	}
+
+	private void omitted(int bytes) {
+		c_omitted++;
+		c_saving += bytes;
+	}
+
+	/**
+	 * Close the count of the page; the content of the next page starts with the
+	 * default state.
+	 */
+	@Override
+	public void onEndPage(PdfWriter writer, Document document) {
+		c_pageSaved.add(c_saving);
+		c_saved += c_saving;
+		c_saving = 0;
+		c_mark = -1;
+		c_current.clear();
+		c_stack.clear();
+	}
+
+	/**
+	 * @return number of operators omitted
+	 */
+	public long getOmittedCount() {
+		return c_omitted;
+	}
+
+	/**
+	 * @return bytes of the operators omitted, in all the pages
+	 */
+	public long getBytesSaved() {
+		return c_saved + c_saving;
+	}
+
+	/**
+	 * @return bytes of the operators omitted in every page closed while the
+	 *         state was tracked
+	 */
+	public List<Long> getBytesSavedPerPage() {
+		return Collections.unmodifiableList(c_pageSaved);
+	}
+
+	/**
+	 * The values of the state, with the size of the operators that set them.
+	 */
+	private static final class Values {
+		float			lineWidth;
+		int				lineWidthBytes;
+		float			dashOn;
+		float			dashOff;
+		int				dashBytes;
+		BaseColor	stroke;
+		int				strokeBytes;
+		BaseColor	fill;
+		int				fillBytes;
+		BaseFont	font;
+		float			fontSize;
+		int				fontBytes;
+
+		Values() {
+			clear();
+		}
+
+		/**
+		 * Set all the values unknown.
+		 */
+		void clear() {
+			lineWidth = Float.NaN;
+			dashOn = Float.NaN;
+			dashOff = Float.NaN;
+			stroke = null;
+			fill = null;
+			font = null;
+			fontSize = Float.NaN;
+		}
+
+		Values copy() {
+			Values v = new Values();
+			v.lineWidth = lineWidth;
+			v.lineWidthBytes = lineWidthBytes;
+			v.dashOn = dashOn;
+			v.dashOff = dashOff;
+			v.dashBytes = dashBytes;
+			v.stroke = stroke;
+			v.strokeBytes = strokeBytes;
+			v.fill = fill;
+			v.fillBytes = fillBytes;
+			v.font = font;
+			v.fontSize = fontSize;
+			v.fontBytes = fontBytes;
+			return v;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package elements;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations, with fixed buckets from 1 millisecond to 10 seconds
+ * (1-2-5 steps) and a last bucket for the longer durations. The values are
+ * counted, not kept, so the memory used doesn't depend on the number of
+ * values; the percentiles are approximated by the upper bound of the bucket
+ * that contains them. It's thread safe.
+ */
+public class LatencyHistogram {
+
+	private static final long[]	BOUNDS_MILLIS	= { 1, 2, 5, 10, 20, 50, 100,
+			200, 500, 1000, 2000, 5000, 10000 };
+
+	private final AtomicLongArray	c_buckets;
+	private final AtomicLong			c_count;
+	private final AtomicLong			c_totalNanos;
+	private final AtomicLong			c_maxNanos;
+
+	public LatencyHistogram() {
+		c_buckets = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+		c_count = new AtomicLong();
+		c_totalNanos = new AtomicLong();
+		c_maxNanos = new AtomicLong();
+	}
+
+	/**
+	 * Count a duration.
+	 *
+	 * @param nanos
+	 *          duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int i = 0;
+		while (i < BOUNDS_MILLIS.length && millis >= BOUNDS_MILLIS[i])
+			i++;
+		c_buckets.incrementAndGet(i);
+		c_count.incrementAndGet();
+		c_totalNanos.addAndGet(nanos);
+		long max = c_maxNanos.get();
+		while (nanos > max && !c_maxNanos.compareAndSet(max, nanos))
+			max = c_maxNanos.get();
+	}
+
+	/**
+	 * @return number of durations counted
+	 */
+	public long getCount() {
+		return c_count.get();
+	}
+
+	/**
+	 * @return mean duration in milliseconds, 0 if nothing has been counted
+	 */
+	public double getMeanMillis() {
+		long count = c_count.get();
+		return count == 0 ? 0 : c_totalNanos.get() / 1e6 / count;
+	}
+
+	/**
+	 * @return longest duration in milliseconds
+	 */
+	public double getMaxMillis() {
+		return c_maxNanos.get() / 1e6;
+	}
+
+	/**
+	 * @param percentile
+	 *          the percentile, between 0 and 100
+	 * @return the upper bound in milliseconds of the bucket that contains the
+	 *         percentile; the longest duration if it's in the last bucket, 0 if
+	 *         nothing has been counted
+	 */
+	public double getPercentileMillis(double percentile) {
+		long count = c_count.get();
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+			seen += c_buckets.get(i);
+			if (seen >= rank)
+				return BOUNDS_MILLIS[i];
+		}
+		return getMaxMillis();
+	}
+
+	/**
+	 * @return the upper bounds (exclusive) of the buckets, in milliseconds; the
+	 *         last bucket, not included, has no upper bound
+	 */
+	public static long[] getBucketBounds() {
+		return BOUNDS_MILLIS.clone();
+	}
+
+	/**
+	 * @return the number of durations in every bucket, the last one included
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[c_buckets.length()];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = c_buckets.get(i);
+		return counts;
+	}
+}
@@ -0,0 +1,316 @@
+package elements;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * Cache of the line breaks of the text blocks: for a text, a font and the size
+ * of a column, it keeps the columns and the number of lines used to write the
+ * text. A measure pass of a {@link TextBlock} with the same content and size of
+ * one already measured takes the result from the cache, without laying out the
+ * text again; the content that appears many times in a report (names,
+ * addresses, fixed sentences) is laid out only once.
+ * <p>
+ * Only the text made of plain {@link Phrase}s and {@link Chunk}s (without
+ * attributes like images, links or hyphenation) is cached, and only when it's
+ * completely written on the page where the block starts, without reaching the
+ * bottom margin: the layout doesn't depend on the position of the block, as
+ * long as it's far enough from the bottom of the page. The cache holds at most
+ * {@link #getMaxSize() maxSize} entries; when it's full the least recently
+ * used one is evicted.
+ * <p>
+ * The cache is disabled unless set with
+ * {@link DrawContext#setLineBreakCache(LineBreakCache)}; it's thread safe, so
+ * the {@link #getShared() shared} instance can be used by all the contexts.
+ */
+public class LineBreakCache {
+
+	public static final int							DEFAULT_MAX_SIZE	= 4096;
+
+	private static final LineBreakCache	SHARED						= new LineBreakCache(
+																																DEFAULT_MAX_SIZE);
+
+	private final int								c_maxSize;
+	private final Map<Key, Breaks>	c_entries;
+	private long										c_hits;
+	private long										c_misses;
+	private long										c_evictions;
+
+	/**
+	 * @param maxSize
+	 *          maximum number of entries kept
+	 */
+	public LineBreakCache(int maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize must be positive");
+		c_maxSize = maxSize;
+		c_entries = new LinkedHashMap<Key, Breaks>(16, 0.75f, true) {
+			private static final long	serialVersionUID	= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Breaks> eldest) {
+				if (size() <= c_maxSize)
+					return false;
+				c_evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return the cache shared by all the contexts of the process
+	 */
+	public static LineBreakCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Describe the content of a text block, with everything that affects the
+	 * line breaks.
+	 *
+	 * @param elems
+	 *          content of the block
+	 * @param defaultFont
+	 *          font of the block, used by the elements without a font
+	 * @return the description of the content, or null if it cannot be cached
+	 */
+	static String contentKey(List<Element> elems, Font defaultFont) {
+		return contentKey(elems, defaultFont, false);
+	}
+
+	/**
+	 * Describe the content of a text block.
+	 *
+	 * @param withColor
+	 *          true to describe the color of the fonts too, that doesn't affect
+	 *          the line breaks but only the content written
+	 * @see #contentKey(List, Font)
+	 */
+	static String contentKey(List<Element> elems, Font defaultFont,
+			boolean withColor) {
+		StringBuilder sb = new StringBuilder();
+		appendFont(sb, defaultFont, withColor);
+		for (int i = 0; i < elems.size(); i++) {
+			Element e = elems.get(i);
+			if (e.getClass() == Chunk.class) {
+				if (!appendChunk(sb, (Chunk) e, withColor))
+					return null;
+			} else if (e.getClass() == Phrase.class) {
+				Phrase p = (Phrase) e;
+				if (p.getHyphenation() != null)
+					return null;
+				sb.append('\u0001');
+				appendFont(sb, p.getFont(), withColor);
+				sb.append(p.hasLeading() ? p.getLeading() : Float.NaN);
+				for (Element pe : p) {
+					if (pe.getClass() != Chunk.class
+							|| !appendChunk(sb, (Chunk) pe, withColor))
+						return null;
+				}
+			} else {
+				return null;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean appendChunk(StringBuilder sb, Chunk c,
+			boolean withColor) {
+		if (c.hasAttributes())
+			return false;
+		sb.append('\u0002');
+		appendFont(sb, c.getFont(), withColor);
+		sb.append('\u0003').append(c.getContent());
+		return true;
+	}
+
+	private static void appendFont(StringBuilder sb, Font f, boolean withColor) {
+		if (f == null) {
+			sb.append('-');
+			return;
+		}
+		BaseFont bf = f.getBaseFont();
+		if (bf != null)
+			sb.append(bf.getPostscriptFontName()).append('/').append(bf.getEncoding());
+		else
+			sb.append(f.getFamilyname());
+		sb.append('/').append(f.getSize()).append('/').append(f.getStyle());
+		if (withColor && f.getColor() != null)
+			sb.append('/').append(f.getColor().getClass().getName()).append(
+					f.getColor().getRGB());
+	}
+
+	/**
+	 * @param content
+	 *          description of the content, from
+	 *          {@link #contentKey(List, Font)}
+	 * @param width
+	 *          width of the column
+	 * @param height
+	 *          height of the column
+	 * @param leading
+	 *          leading of the column
+	 * @param maxDepth
+	 *          space available below the top of the column
+	 * @return the line breaks of the text, or null if not cached or if the
+	 *         columns don't fit the space available
+	 */
+	synchronized Breaks get(String content, float width, float height,
+			float leading, float maxDepth) {
+		Breaks e = c_entries.get(new Key(content, width, height, leading));
+		if (e != null && e.getLowest() <= maxDepth) {
+			c_hits++;
+			return e;
+		}
+		c_misses++;
+		return null;
+	}
+
+	synchronized void put(String content, float width, float height,
+			float leading, Breaks entry) {
+		c_entries.put(new Key(content, width, height, leading), entry);
+	}
+
+	/**
+	 * @return maximum number of entries kept by this cache
+	 */
+	public int getMaxSize() {
+		return c_maxSize;
+	}
+
+	/**
+	 * @return number of entries currently kept
+	 */
+	public synchronized int getSize() {
+		return c_entries.size();
+	}
+
+	/**
+	 * @return number of layouts taken from the cache
+	 */
+	public synchronized long getHits() {
+		return c_hits;
+	}
+
+	/**
+	 * @return number of layouts not found in the cache
+	 */
+	public synchronized long getMisses() {
+		return c_misses;
+	}
+
+	/**
+	 * @return number of entries removed to respect the maximum size
+	 */
+	public synchronized long getEvictions() {
+		return c_evictions;
+	}
+
+	/**
+	 * @return the fraction of the requests found in the cache, 0 if there was no
+	 *         request
+	 */
+	public synchronized double getHitRate() {
+		long total = c_hits + c_misses;
+		return total == 0 ? 0 : (double) c_hits / total;
+	}
+
+	/**
+	 * Remove all the entries and reset the counters.
+	 */
+	public synchronized void clear() {
+		c_entries.clear();
+		c_hits = 0;
+		c_misses = 0;
+		c_evictions = 0;
+	}
+
+	/**
+	 * Line breaks of a text completely written: the positions are relative to
+	 * the top of the first column.
+	 */
+	static final class Breaks {
+		private final int			c_lines;
+		private final float[]	c_columns;
+		private final float		c_depth;
+		private final float		c_lowest;
+
+		/**
+		 * @param lines
+		 *          number of lines written
+		 * @param columns
+		 *          distance from the top of the first column of the lower and the
+		 *          upper limit of every column
+		 * @param depth
+		 *          distance from the top of the first column of the lower limit of
+		 *          the last line (descender included)
+		 */
+		Breaks(int lines, float[] columns, float depth) {
+			c_lines = lines;
+			c_columns = columns;
+			c_depth = depth;
+			float lowest = 0;
+			for (int i = 0; i < columns.length; i += 2)
+				lowest = Math.max(lowest, columns[i]);
+			c_lowest = lowest;
+		}
+
+		int getLines() {
+			return c_lines;
+		}
+
+		float[] getColumns() {
+			return c_columns;
+		}
+
+		float getLowest() {
+			return c_lowest;
+		}
+
+		float getDepth() {
+			return c_depth;
+		}
+	}
+
+	private static final class Key {
+		private final String	c_content;
+		private final float		c_width;
+		private final float		c_height;
+		private final float		c_leading;
+
+		Key(String content, float width, float height, float leading) {
+			c_content = content;
+			c_width = width;
+			c_height = height;
+			c_leading = leading;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = c_content.hashCode();
+			h = h * 31 + Float.floatToIntBits(c_width);
+			h = h * 31 + Float.floatToIntBits(c_height);
+			return h * 31 + Float.floatToIntBits(c_leading);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key k = (Key) obj;
+			return Float.floatToIntBits(c_width) == Float.floatToIntBits(k.c_width)
+					&& Float.floatToIntBits(c_height) == Float
+							.floatToIntBits(k.c_height)
+					&& Float.floatToIntBits(c_leading) == Float
+							.floatToIntBits(k.c_leading)
+					&& c_content.equals(k.c_content);
+		}
+	}
+}
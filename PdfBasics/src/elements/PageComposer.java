@@ -0,0 +1,257 @@
+package elements;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+
+/**
+ * Writes a sequence of blocks one below the other, keeping the vertical
+ * position of the next block (the cursor) and breaking the pages
+ * automatically. Every block is measured once and drawn following its layout:
+ * a block that continues on the next pages is written page by page, and the
+ * following one starts where it ends.
+ * <p>
+ * The blocks are separated by {@link #getSpacing() spacing} points, or by the
+ * space given to {@link #add(BlockElement, float)}; no space is left at the top
+ * of a page. The horizontal position of the blocks is their own; a block that
+ * can grow horizontally without a max width is limited by the right margin.
+ * With {@link #setKeepTogether(boolean) keepTogether} a block that doesn't fit
+ * the rest of the page, but fits an empty one, is moved on the next page.
+ * <p>
+ * The limits of the page and the available width are read from the document
+ * at the start of every page, and the pages are closed with
+ * {@link DrawContext#newPage()}.
+ */
+public class PageComposer {
+
+	private final DrawContext	c_context;
+	private float							c_spacing;
+	private boolean						c_keepTogether;
+
+	/*
+	 * limits of the current page
+	 */
+	private float		c_top;
+	private float		c_bottom;
+	private float		c_right;
+	private float		c_availWidth;
+
+	private float		c_y;
+	private boolean	c_pageEmpty;
+	private int			c_pages;
+
+	/**
+	 * Create a composer that starts writing at the top of the current page.
+	 *
+	 * @param context
+	 *          context of the document
+	 */
+	public PageComposer(DrawContext context) {
+		c_context = context;
+		c_pages = 1;
+		startPage();
+	}
+
+	/**
+	 * Write a block below the previous one, separated by the default
+	 * {@link #getSpacing() spacing}.
+	 *
+	 * @param element
+	 *          block to write
+	 * @throws DocumentException
+	 *           on low level errors during writing on the pdf document
+	 */
+	public void add(BlockElement element) throws DocumentException {
+		add(element, c_spacing);
+	}
+
+	/**
+	 * Write a block below the previous one.
+	 *
+	 * @param element
+	 *          block to write
+	 * @param spaceBefore
+	 *          space between the previous block and this one; not used at the
+	 *          top of a page
+	 * @throws DocumentException
+	 *           on low level errors during writing on the pdf document
+	 */
+	public void add(BlockElement element, float spaceBefore)
+			throws DocumentException {
+		render(plan(element, spaceBefore));
+	}
+
+	/**
+	 * Move the cursor after a block: decide where the block starts, measure it
+	 * and count the pages to open before and during its drawing.
+	 */
+	Placement plan(BlockElement element, float spaceBefore)
+			throws DocumentException {
+		int pagesBefore = 0;
+		if (!c_pageEmpty) {
+			c_y -= spaceBefore;
+			if (c_y <= c_bottom) {
+				nextPage();
+				pagesBefore++;
+			}
+		}
+		BlockLayout layout = place(element);
+		if (c_keepTogether && !c_pageEmpty && layout.getPageCount() > 1
+				&& layout.getRealHeight() <= c_top - c_bottom) {
+			nextPage();
+			pagesBefore++;
+			layout = place(element);
+		}
+		int page = c_pages;
+		int last = layout.getPageCount() - 1;
+		for (int i = 0; i < last; i++) {
+			nextPage();
+		}
+		c_y = layout.getPageLower(last);
+		c_pageEmpty = false;
+		return new Placement(element, layout, pagesBefore, page);
+	}
+
+	/**
+	 * Draw a block on the pages decided by {@link #plan(BlockElement, float)}.
+	 */
+	private void render(Placement p) throws DocumentException {
+		for (int i = 0; i < p.pagesBefore; i++) {
+			c_context.newPage();
+		}
+		BlockElement element = p.element;
+		element.resetDrawStatus(c_context);
+		while (!element.draw(c_context, p.layout)) {
+			c_context.newPage();
+		}
+		// the context doesn't keep the blocks already written
+		element.resetDrawStatus(c_context);
+	}
+
+	/**
+	 * Move the block on the cursor and measure it. A block that can grow
+	 * horizontally without a max width is limited by the right margin through
+	 * the context: its max width is not changed, so the block can be shared by
+	 * other documents.
+	 */
+	private BlockLayout place(BlockElement element) throws DocumentException {
+		element.setStartY(c_y);
+		if (!element.isCanGrowX() || element.getMaxWidth() > 0)
+			return element.measure(c_context);
+		c_context.setAvailWidth(c_right - element.getStartX());
+		try {
+			return element.measure(c_context);
+		} finally {
+			c_context.setAvailWidth(0);
+		}
+	}
+
+	/**
+	 * Close the current page and move the cursor at the top of the next one.
+	 */
+	public void newPage() {
+		c_context.newPage();
+		nextPage();
+	}
+
+	/**
+	 * Move the cursor at the top of the next page.
+	 */
+	private void nextPage() {
+		c_pages++;
+		startPage();
+	}
+
+	private void startPage() {
+		Document d = c_context.getDocument();
+		c_top = d.top();
+		c_bottom = d.bottom();
+		c_right = d.right();
+		c_availWidth = c_context.getDocumentAvailWidth();
+		c_y = c_top;
+		c_pageEmpty = true;
+	}
+
+	/**
+	 * @return the vertical position of the next block, without spacing
+	 */
+	public float getY() {
+		return c_y;
+	}
+
+	/**
+	 * @return the height left on the current page
+	 */
+	public float getRemainingHeight() {
+		return c_y - c_bottom;
+	}
+
+	/**
+	 * @return the width of the current page between the margins
+	 */
+	public float getAvailWidth() {
+		return c_availWidth;
+	}
+
+	/**
+	 * @return the number of pages written since the creation of the composer,
+	 *         the current one included
+	 */
+	public int getPageCount() {
+		return c_pages;
+	}
+
+	/**
+	 * @return default vertical space (in points) between two blocks
+	 */
+	public float getSpacing() {
+		return c_spacing;
+	}
+
+	public void setSpacing(float spacing) {
+		c_spacing = spacing;
+	}
+
+	/**
+	 * @return true if the blocks are moved on the next page rather than split,
+	 *         when possible
+	 */
+	public boolean isKeepTogether() {
+		return c_keepTogether;
+	}
+
+	public void setKeepTogether(boolean keepTogether) {
+		c_keepTogether = keepTogether;
+	}
+
+	/**
+	 * Block measured and positioned, waiting to be drawn.
+	 */
+	static final class Placement {
+		final BlockElement	element;
+		final BlockLayout		layout;
+		/**
+		 * pages to open before drawing the block
+		 */
+		final int						pagesBefore;
+		/**
+		 * page where the block starts, counted from 1 like
+		 * {@link PageComposer#getPageCount()}
+		 */
+		final int						page;
+
+		Placement(BlockElement element, BlockLayout layout, int pagesBefore,
+				int page) {
+			this.element = element;
+			this.layout = layout;
+			this.pagesBefore = pagesBefore;
+			this.page = page;
+		}
+
+		/**
+		 * @return the number of the last page of the block
+		 */
+		int getLastPage() {
+			return page + layout.getPageCount() - 1;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package elements;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.BidiLine;
+import com.itextpdf.text.pdf.ColumnText;
+
+/**
+ * Pagination of a {@link TextBlock}, built by
+ * {@link TextBlock#index(DrawContext)}: besides the layout of the block, for
+ * every page it keeps the point of the content where the page starts (the
+ * index of the element and the offset of the character in the element). A page
+ * can be drawn without laying out the text of the pages before it:
+ * {@link TextBlock#seek(DrawContext, PaginationIndex, int)} prepares the
+ * drawing from the page, and {@link TextBlock#draw(DrawContext, BlockLayout)}
+ * with the {@link #getLayout() layout} of the index writes it and the next
+ * ones.
+ * <p>
+ * The index can be saved with {@link #writeTo(OutputStream)} and read with
+ * {@link #readFrom(InputStream)}, to draw the pages of the block later (like a
+ * preview of a page of a report). It keeps a fingerprint of the definition and
+ * the position of the block, and it can be used only with a block equal to
+ * the indexed one.
+ * <p>
+ * Only the blocks made of plain {@link Phrase}s and {@link Chunk}s can be
+ * indexed (see {@link LineBreakCache}).
+ */
+public final class PaginationIndex {
+
+	private static final int		VERSION	= 1;
+
+	/*
+	 * the position of the text in a ColumnText is not public: it's read from
+	 * the fields, if they are accessible
+	 */
+	private static final Field	COMPOSITE_COLUMN;
+	private static final Field	BIDI_LINE;
+	private static final Field	CURRENT_CHAR;
+
+	static {
+		Field composite = null;
+		Field bidi = null;
+		Field current = null;
+		try {
+			composite = ColumnText.class.getDeclaredField("compositeColumn");
+			bidi = ColumnText.class.getDeclaredField("bidiLine");
+			current = BidiLine.class.getDeclaredField("currentChar");
+			composite.setAccessible(true);
+			bidi.setAccessible(true);
+			current.setAccessible(true);
+		} catch (Exception e) {
+			// another version of the library, or a security manager: no index
+			composite = null;
+		}
+		COMPOSITE_COLUMN = composite;
+		BIDI_LINE = bidi;
+		CURRENT_CHAR = current;
+	}
+
+	private final String			c_fingerprint;
+	private final BlockLayout	c_layout;
+	private final int[]				c_elements;
+	private final int[]				c_offsets;
+
+	PaginationIndex(String fingerprint, BlockLayout layout, List<int[]> positions) {
+		int n = layout.getPageCount();
+		c_fingerprint = fingerprint;
+		c_layout = layout;
+		c_elements = new int[n];
+		c_offsets = new int[n];
+		for (int i = 0; i < n; i++) {
+			c_elements[i] = positions.get(i)[0];
+			c_offsets[i] = positions.get(i)[1];
+		}
+	}
+
+	private PaginationIndex(String fingerprint, BlockLayout layout,
+			int[] elements, int[] offsets) {
+		c_fingerprint = fingerprint;
+		c_layout = layout;
+		c_elements = elements;
+		c_offsets = offsets;
+	}
+
+	/**
+	 * @return the layout of the block, to draw it after
+	 *         {@link TextBlock#seek(DrawContext, PaginationIndex, int)}
+	 */
+	public BlockLayout getLayout() {
+		return c_layout;
+	}
+
+	public int getPageCount() {
+		return c_elements.length;
+	}
+
+	/**
+	 * @param page
+	 *          index of the page, starting from 0
+	 * @return index of the element of the block where the page starts
+	 */
+	public int getElementIndex(int page) {
+		return c_elements[page];
+	}
+
+	/**
+	 * @param page
+	 *          index of the page, starting from 0
+	 * @return offset of the first character of the page in the text of its
+	 *         element
+	 */
+	public int getCharOffset(int page) {
+		return c_offsets[page];
+	}
+
+	String getFingerprint() {
+		return c_fingerprint;
+	}
+
+	/**
+	 * @return true if the positions of the text can be read from the column
+	 *         texts
+	 */
+	static boolean isAvailable() {
+		return COMPOSITE_COLUMN != null;
+	}
+
+	/**
+	 * @param count
+	 *          number of elements added to the column text
+	 * @return index of the element and offset of the character of the next line
+	 *         written by a column text in composite mode
+	 */
+	static int[] getPosition(ColumnText c, int count) {
+		List<Element> remaining = c.getCompositeElements();
+		int[] position = { count - (remaining == null ? 0 : remaining.size()), 0 };
+		try {
+			// the paragraph being written, if it has been started
+			Object column = COMPOSITE_COLUMN.get(c);
+			Object bidi = column != null ? BIDI_LINE.get(column) : null;
+			if (bidi != null)
+				position[1] = CURRENT_CHAR.getInt(bidi);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+		return position;
+	}
+
+	/**
+	 * @return the content of a block from a position: the rest of the element
+	 *         of the position, without the spaces dropped at the start of the
+	 *         line, and the following elements
+	 */
+	static List<Element> getContent(List<Element> elems, int element, int offset) {
+		List<Element> content = new ArrayList<Element>();
+		if (element >= elems.size())
+			return content;
+		Element first = elems.get(element);
+		if (offset > 0) {
+			if (first instanceof Phrase) {
+				Phrase p = (Phrase) first;
+				Phrase rest = new Phrase(p);
+				rest.clear();
+				if (!p.hasLeading())
+					rest.setLeading(Float.NaN);
+				boolean trim = true;
+				for (Element e : p) {
+					Chunk c = (Chunk) e;
+					String text = c.getContent();
+					if (offset < text.length()) {
+						String part = text.substring(offset);
+						if (trim)
+							part = trimLeft(part);
+						if (part.length() > 0) {
+							rest.add(new Chunk(part, c.getFont()));
+							trim = false;
+						}
+					}
+					offset = Math.max(offset - text.length(), 0);
+				}
+				first = rest;
+			} else {
+				Chunk c = (Chunk) first;
+				first = new Chunk(trimLeft(c.getContent().substring(offset)), c
+						.getFont());
+			}
+		}
+		content.add(first);
+		content.addAll(elems.subList(element + 1, elems.size()));
+		return content;
+	}
+
+	private static String trimLeft(String s) {
+		int i = 0;
+		while (i < s.length() && s.charAt(i) == ' ')
+			i++;
+		return s.substring(i);
+	}
+
+	/**
+	 * Write the index on a stream, in a compact binary format.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		BlockLayout l = c_layout;
+		data.writeInt(VERSION);
+		data.writeUTF(c_fingerprint);
+		data.writeFloat(l.getRealWidth());
+		data.writeBoolean(l.isComplete());
+		data.writeInt(l.getPageCount());
+		for (int i = 0; i < l.getPageCount(); i++) {
+			data.writeInt(c_elements[i]);
+			data.writeInt(c_offsets[i]);
+			data.writeInt(l.getLinesOnPage(i));
+			data.writeFloat(l.getPageHeight(i));
+			data.writeFloat(l.getRealHeightAfter(i));
+			data.writeFloat(l.getPageLower(i));
+			data.writeFloat(l.getPageUpper(i));
+			data.writeBoolean(l.hasBorder(i));
+			float[] cols = l.getColumns(i);
+			data.writeInt(cols.length);
+			for (float f : cols)
+				data.writeFloat(f);
+		}
+		data.flush();
+	}
+
+	/**
+	 * Read an index written by {@link #writeTo(OutputStream)}.
+	 *
+	 * @throws IOException
+	 *           if the stream cannot be read, or it doesn't contain an index
+	 */
+	public static PaginationIndex readFrom(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int version = data.readInt();
+		if (version != VERSION)
+			throw new IOException("Unknown version of the index: " + version);
+		String fingerprint = data.readUTF();
+		float realWidth = data.readFloat();
+		boolean complete = data.readBoolean();
+		int n = data.readInt();
+		int[] elements = new int[n];
+		int[] offsets = new int[n];
+		BlockLayout.Builder b = new BlockLayout.Builder();
+		int lines = 0;
+		for (int i = 0; i < n; i++) {
+			elements[i] = data.readInt();
+			offsets[i] = data.readInt();
+			lines += data.readInt();
+			float height = data.readFloat();
+			float total = data.readFloat();
+			float lower = data.readFloat();
+			float upper = data.readFloat();
+			if (data.readBoolean())
+				b.setBorder();
+			int cols = data.readInt();
+			for (int c = 0; c < cols; c += 4) {
+				b.addColumn(data.readFloat(), data.readFloat(), data.readFloat(),
+						data.readFloat());
+			}
+			b.endPage(lines, height, total, lower, upper);
+		}
+		return new PaginationIndex(fingerprint, b.build(realWidth, complete),
+				elements, offsets);
+	}
+}
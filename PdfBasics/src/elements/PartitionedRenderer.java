@@ -0,0 +1,410 @@
+package elements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.BadPdfFormatException;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PRIndirectReference;
+import com.itextpdf.text.pdf.PRStream;
+import com.itextpdf.text.pdf.PdfArray;
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfIndirectReference;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfObject;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfSmartCopy;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import elements.PageComposer.Placement;
+
+/**
+ * Writes the document of a {@link RenderJob} in parts, on several threads: a
+ * measure pass positions all the blocks as a {@link PageComposer} does, the
+ * pages are split into parts of about {@link #getPagesPerPart() pagesPerPart}
+ * pages, every part is written on its own document in memory by a task of the
+ * executor, and the parts are merged in the document of the job. The pages are
+ * broken exactly as in a sequential writing, since all the parts follow the
+ * same measure pass.
+ * <p>
+ * A part that starts in the middle of a block draws the block from its first
+ * page, and the pages before the start of the part are discarded; so a part
+ * starts in a block only if the pages to discard are less than
+ * <code>pagesPerPart</code>, and a block written on many pages (like a long
+ * table) is written by a single part. A block that consumes its content (see
+ * {@link TextBlock#setConsumeContent(boolean)}) can be drawn only once, so it's
+ * always written by a single part too. A job with elements
+ * that are not {@link BlockElement}s is written sequentially, with
+ * {@link RenderJob#render(DrawContext)}; otherwise that method is not used.
+ * Every block must appear only once in the job.
+ * <p>
+ * The parts are merged in order, while the next ones are written. The streams
+ * equal in more parts are written only once, and so are the fonts: every part
+ * prepares the fonts with all the characters of the job, so the subsets of the
+ * embedded fonts are the same in all the parts and the merged document has a
+ * single subset of every font.
+ */
+public class PartitionedRenderer {
+
+	public static final int	DEFAULT_PAGES_PER_PART	= 50;
+
+	private final Executor	c_executor;
+	private int							c_pagesPerPart;
+
+	/**
+	 * @param executor
+	 *          executor of the tasks that write the parts
+	 */
+	public PartitionedRenderer(Executor executor) {
+		c_executor = executor;
+		c_pagesPerPart = DEFAULT_PAGES_PER_PART;
+	}
+
+	/**
+	 * @return minimum number of pages of a part, the last one excluded
+	 */
+	public int getPagesPerPart() {
+		return c_pagesPerPart;
+	}
+
+	public void setPagesPerPart(int pagesPerPart) {
+		if (pagesPerPart <= 0)
+			throw new IllegalArgumentException("pagesPerPart must be positive");
+		c_pagesPerPart = pagesPerPart;
+	}
+
+	/**
+	 * Write the document of a job on its sink.
+	 *
+	 * @param job
+	 *          document to write
+	 * @return the job, with the number of pages and of parts written
+	 * @throws DocumentException
+	 *           on low level errors during the layout or the writing on the pdf
+	 *           document, or if the thread is interrupted
+	 */
+	public RenderJob render(final RenderJob job) throws DocumentException {
+		long start = System.nanoTime();
+		List<Part> parts = plan(job);
+		if (parts == null) {
+			Document doc = job.createDocument();
+			DrawContext context = DrawContext.open(doc, job.getSink());
+			job.render(context);
+			int pages = context.getWriter().getPageNumber();
+			doc.close();
+			job.setPartCount(1);
+			job.done(pages, 0, System.nanoTime() - start);
+			return job;
+		}
+
+		// the contexts of the parts use the shared registry
+		Map<BaseFont, StringBuilder> text = new LinkedHashMap<BaseFont, StringBuilder>();
+		for (Drawable e : job.getElements())
+			((BlockElement) e).collectText(FontRegistry.getShared(), text);
+		final BaseFont[] fonts = text.keySet().toArray(new BaseFont[text.size()]);
+		final String[] chars = new String[fonts.length];
+		for (int i = 0; i < fonts.length; i++)
+			chars[i] = text.get(fonts[i]).toString();
+
+		List<FutureTask<byte[]>> tasks = new ArrayList<FutureTask<byte[]>>();
+		for (final Part part : parts) {
+			FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+				public byte[] call() throws Exception {
+					return writePart(job, part, fonts, chars);
+				}
+			});
+			tasks.add(task);
+			c_executor.execute(task);
+		}
+		int pages = 0;
+		boolean ok = false;
+		try {
+			Document doc = new Document();
+			FontMergingCopy copy = new FontMergingCopy(doc, job.getSink());
+			doc.open();
+			for (int p = 0; p < tasks.size(); p++) {
+				PdfReader reader = new PdfReader(tasks.get(p).get());
+				// the first pages can belong to the previous part
+				int skip = parts.get(p).skip;
+				for (int i = skip + 1; i <= reader.getNumberOfPages(); i++) {
+					copy.addPage(copy.getImportedPage(reader, i));
+					pages++;
+				}
+				copy.freeReader(reader);
+				reader.close();
+			}
+			doc.close();
+			ok = true;
+		} catch (IOException e) {
+			throw new DocumentException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DocumentException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof DocumentException)
+				throw (DocumentException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new DocumentException(cause.toString());
+		} finally {
+			if (!ok) {
+				for (FutureTask<byte[]> task : tasks)
+					task.cancel(true);
+			}
+		}
+		job.setPartCount(parts.size());
+		job.done(pages, 0, System.nanoTime() - start);
+		return job;
+	}
+
+	/**
+	 * Position and measure all the blocks of the job, and split them into parts.
+	 *
+	 * @return the parts, or null if the job has elements that are not blocks
+	 */
+	private List<Part> plan(RenderJob job) throws DocumentException {
+		for (Drawable e : job.getElements()) {
+			if (!(e instanceof BlockElement))
+				return null;
+		}
+		Document doc = job.createDocument();
+		PdfWriter writer = PdfWriter.getInstance(doc, new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		});
+		doc.open();
+		List<Part> parts = new ArrayList<Part>();
+		try {
+			PageComposer composer = new PageComposer(new DrawContext(writer, doc));
+			Part part = null;
+			int last = 0;
+			for (Drawable e : job.getElements()) {
+				Placement p = composer.plan((BlockElement) e, job.getSpacing());
+				if (part == null
+						|| (p.page > last && last - part.first + 1 >= c_pagesPerPart)) {
+					// the part starts with the page of the block
+					part = startPart(parts, p, p.page);
+				} else {
+					part.blocks.add(p);
+					int cut = part.first + c_pagesPerPart;
+					if (cut > p.page && cut <= p.getLastPage()
+							&& cut - p.page < c_pagesPerPart
+							&& !p.element.isConsumingContent()) {
+						// the block continues on the next part
+						part = startPart(parts, p, cut);
+					}
+				}
+				last = Math.max(last, p.getLastPage());
+			}
+		} finally {
+			// nothing has been written: the document is discarded
+			writer.setPageEmpty(false);
+			doc.close();
+		}
+		return parts;
+	}
+
+	/**
+	 * Start a part with a block, drawn from its first page, and close the
+	 * previous part.
+	 *
+	 * @param first
+	 *          first page of the part
+	 */
+	private static Part startPart(List<Part> parts, Placement p, int first) {
+		if (!parts.isEmpty())
+			parts.get(parts.size() - 1).end = first;
+		Part part = new Part(first, first - p.page);
+		part.blocks.add(new Placement(p.element, p.layout, 0, p.page));
+		parts.add(part);
+		return part;
+	}
+
+	/**
+	 * Write the blocks of a part on a document in memory, as a
+	 * {@link PageComposer} does, up to the end of the part.
+	 *
+	 * @param fonts
+	 *          fonts of the job
+	 * @param chars
+	 *          characters of the job written with every font
+	 */
+	private static byte[] writePart(RenderJob job, Part part, BaseFont[] fonts,
+			String[] chars) throws DocumentException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Document doc = job.createDocument();
+		DrawContext context = DrawContext.open(doc, out);
+		int pages = part.end - part.first + part.skip;
+		PdfWriter writer = context.getWriter();
+		// the fonts are written with all the characters of the job, even if the
+		// part doesn't use them: the copy merges the fonts equal in all the parts
+		FragmentCache.addFonts(writer.getDirectContent().createTemplate(0, 0),
+				fonts, chars);
+		for (Placement p : part.blocks) {
+			for (int i = 0; i < p.pagesBefore; i++) {
+				context.newPage();
+			}
+			BlockElement element = p.element;
+			element.resetDrawStatus(context);
+			while (!element.draw(context, p.layout)
+					&& writer.getPageNumber() < pages) {
+				context.newPage();
+			}
+			element.resetDrawStatus(context);
+		}
+		doc.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * A range of pages, written on its own document.
+	 */
+	private static final class Part {
+		/**
+		 * first page of the part
+		 */
+		final int								first;
+		/**
+		 * pages of the document written before the first page: they belong to
+		 * the previous part
+		 */
+		final int								skip;
+		/**
+		 * the page after the last one
+		 */
+		int											end;
+		final List<Placement>	blocks;
+
+		Part(int first, int skip) {
+			this.first = first;
+			this.skip = skip;
+			this.end = Integer.MAX_VALUE;
+			this.blocks = new ArrayList<Placement>();
+		}
+	}
+
+	/**
+	 * Copy that writes only once the fonts that are equal in the documents
+	 * merged: the font dictionaries are compared with all the objects they refer
+	 * to (descriptors, widths, font programs), ignoring the random prefix of the
+	 * names of the subsets.
+	 */
+	private static class FontMergingCopy extends PdfSmartCopy {
+		/**
+		 * prefix of the name of a font subset
+		 */
+		private static final Pattern											SUBSET_PREFIX	= Pattern
+																																			.compile("^/[A-Z]{6}\\+");
+
+		private final Map<String, PdfIndirectReference>	c_fonts;
+
+		FontMergingCopy(Document document, OutputStream os)
+				throws DocumentException {
+			super(document, os);
+			c_fonts = new HashMap<String, PdfIndirectReference>();
+		}
+
+		@Override
+		protected PdfIndirectReference copyIndirect(PRIndirectReference in)
+				throws IOException, BadPdfFormatException {
+			String key = getFontKey(PdfReader.getPdfObjectRelease(in));
+			if (key == null)
+				return super.copyIndirect(in);
+			PdfIndirectReference ref = c_fonts.get(key);
+			if (ref == null) {
+				ref = super.copyIndirect(in);
+				c_fonts.put(key, ref);
+			}
+			return ref;
+		}
+
+		/**
+		 * @return the description of a font dictionary, or null if the object is
+		 *         not a font
+		 */
+		private static String getFontKey(PdfObject obj) throws IOException {
+			if (obj == null || !obj.isDictionary())
+				return null;
+			PdfDictionary d = (PdfDictionary) obj;
+			if (!PdfName.FONT.equals(d.get(PdfName.TYPE)))
+				return null;
+			StringBuilder sb = new StringBuilder();
+			describe(d, sb);
+			return sb.toString();
+		}
+
+		/**
+		 * Describe an object and the objects it refers to: the dictionaries with
+		 * their entries sorted, the streams with a digest of their content.
+		 */
+		private static void describe(PdfObject obj, StringBuilder sb)
+				throws IOException {
+			obj = PdfReader.getPdfObjectRelease(obj);
+			if (obj == null) {
+				sb.append("null");
+			} else if (obj.isDictionary() || obj.isStream()) {
+				PdfDictionary d = (PdfDictionary) obj;
+				sb.append("<<");
+				for (PdfName name : new TreeSet<PdfName>(d.getKeys())) {
+					sb.append(name).append(' ');
+					describe(d.get(name), sb);
+					sb.append(' ');
+				}
+				sb.append(">>");
+				if (obj.isStream())
+					sb.append(digest(PdfReader.getStreamBytesRaw((PRStream) obj)));
+			} else if (obj.isArray()) {
+				sb.append('[');
+				for (PdfObject item : ((PdfArray) obj)) {
+					describe(item, sb);
+					sb.append(' ');
+				}
+				sb.append(']');
+			} else if (obj.isName()) {
+				sb.append(SUBSET_PREFIX.matcher(obj.toString()).replaceFirst("/"));
+			} else {
+				sb.append(obj);
+			}
+		}
+
+		private static String digest(byte[] b) {
+			try {
+				byte[] h = MessageDigest.getInstance("SHA-1").digest(b);
+				StringBuilder sb = new StringBuilder(h.length * 2 + 2);
+				sb.append(b.length).append(':');
+				for (byte x : h) {
+					sb.append(Character.forDigit((x >> 4) & 0xf, 16));
+					sb.append(Character.forDigit(x & 0xf, 16));
+				}
+				return sb.toString();
+			} catch (NoSuchAlgorithmException e) {
+				// SHA-1 is available on every platform
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
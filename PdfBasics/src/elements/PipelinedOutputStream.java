@@ -0,0 +1,218 @@
+package elements;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Output stream that writes a document to a {@link WritableByteChannel} on
+ * another thread, so the output of a page overlaps the layout of the next
+ * ones: the bytes produced by the {@link com.itextpdf.text.pdf.PdfWriter
+ * PdfWriter} are collected in pooled direct buffers, and every full buffer is
+ * handed to a writer task through a bounded queue. The task writes the buffers
+ * to the channel and gives them back to the pool. When the queue is full the
+ * thread of the document waits for the writer, so the memory used doesn't
+ * depend on the speed of the channel.
+ * <p>
+ * {@link #flush()} hands the partial buffer to the writer too: in the
+ * memory-bounded mode of the {@link DrawContext} every page is passed to the
+ * writer as soon as it's closed. The compression of the page content is done
+ * by iText when the page is closed, on the thread of the document.
+ * <p>
+ * The writer task runs on an executor, and occupies a thread until the stream
+ * is closed (the writer closes it at the end of the document): the executor
+ * must have a thread for it, it can't run the task on the calling thread. An
+ * error of the channel is thrown by the next write, or by {@link #close()}.
+ */
+public class PipelinedOutputStream extends OutputStream {
+
+	public static final int					DEFAULT_QUEUE_SIZE	= 16;
+
+	/**
+	 * marks the end of the buffers in the queue
+	 */
+	private static final ByteBuffer	END									= ByteBuffer.allocate(0);
+
+	private final WritableByteChannel				c_channel;
+	private final BufferPool								c_pool;
+	private final boolean										c_closeChannel;
+	private final BlockingQueue<ByteBuffer>	c_queue;
+	private final FutureTask<Void>					c_writer;
+	private volatile IOException						c_failure;
+	private ByteBuffer											c_buffer;
+	private long														c_count;
+
+	/**
+	 * @param channel
+	 *          destination of the bytes
+	 * @param pool
+	 *          pool of the buffers
+	 * @param queueSize
+	 *          maximum number of buffers waiting to be written
+	 * @param executor
+	 *          executor of the writer task
+	 * @param closeChannel
+	 *          true to close the channel together with the stream
+	 * @throws IllegalArgumentException
+	 *           if the channel is in non-blocking mode
+	 */
+	public PipelinedOutputStream(WritableByteChannel channel, BufferPool pool,
+			int queueSize, Executor executor, boolean closeChannel) {
+		if (queueSize <= 0)
+			throw new IllegalArgumentException("queueSize must be positive");
+		ChannelOutputStream.checkBlocking(channel);
+		c_channel = channel;
+		c_pool = pool;
+		c_closeChannel = closeChannel;
+		c_queue = new ArrayBlockingQueue<ByteBuffer>(queueSize);
+		c_writer = new FutureTask<Void>(new Callable<Void>() {
+			public Void call() throws Exception {
+				drain();
+				return null;
+			}
+		});
+		c_buffer = pool.acquire();
+		executor.execute(c_writer);
+	}
+
+	/**
+	 * Stream on a channel, with the buffers of the shared pool; the channel is
+	 * closed together with the stream.
+	 */
+	public PipelinedOutputStream(WritableByteChannel channel, Executor executor) {
+		this(channel, BufferPool.getShared(), DEFAULT_QUEUE_SIZE, executor, true);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (!c_buffer.hasRemaining())
+			handOff();
+		c_buffer.put((byte) b);
+		c_count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (!c_buffer.hasRemaining())
+				handOff();
+			int n = Math.min(len, c_buffer.remaining());
+			c_buffer.put(b, off, n);
+			off += n;
+			len -= n;
+			c_count += n;
+		}
+	}
+
+	/**
+	 * Pass the buffered bytes to the writer; they are written to the channel
+	 * later, by the writer task.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (c_buffer.position() > 0)
+			handOff();
+	}
+
+	/**
+	 * Pass the buffered bytes to the writer and wait until all the buffers have
+	 * been written to the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (c_buffer == null)
+			return;
+		ByteBuffer last = c_buffer;
+		c_buffer = null;
+		boolean done = false;
+		try {
+			if (last.position() > 0 && c_failure == null) {
+				last.flip();
+				c_queue.put(last);
+			} else {
+				c_pool.release(last);
+			}
+			c_queue.put(END);
+			c_writer.get();
+			done = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new IOException(cause);
+		} finally {
+			if (!done)
+				c_writer.cancel(true);
+			if (c_closeChannel)
+				c_channel.close();
+		}
+	}
+
+	/**
+	 * @return number of bytes written so far
+	 */
+	public long getCount() {
+		return c_count;
+	}
+
+	/**
+	 * Hand the current buffer to the writer and take a new one.
+	 */
+	private void handOff() throws IOException {
+		c_buffer.flip();
+		try {
+			c_queue.put(c_buffer);
+		} catch (InterruptedException e) {
+			// the buffer is lost: the stream can't be used anymore
+			c_buffer = null;
+			c_writer.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing");
+		}
+		c_buffer = c_pool.acquire();
+	}
+
+	/**
+	 * Write the buffers of the queue to the channel, until the end of the
+	 * stream. After an error of the channel the buffers are only given back to
+	 * the pool, so the thread of the document never waits forever.
+	 */
+	private void drain() throws IOException, InterruptedException {
+		for (;;) {
+			ByteBuffer buf = c_queue.take();
+			if (buf == END)
+				break;
+			try {
+				if (c_failure == null)
+					ChannelOutputStream.write(c_channel, buf);
+			} catch (IOException e) {
+				c_failure = e;
+			} finally {
+				c_pool.release(buf);
+			}
+		}
+		if (c_failure != null)
+			throw c_failure;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (c_buffer == null)
+			throw new IOException("Stream closed");
+		if (c_failure != null)
+			throw c_failure;
+	}
+}
@@ -0,0 +1,141 @@
+package elements;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+
+/**
+ * A document to produce with a {@link RenderService}: the elements to write
+ * and the stream that receives the document. The elements that extend
+ * {@link BlockElement} are written one below the other by a
+ * {@link PageComposer}; the other ones are drawn at their own position, on the
+ * current page and on the next ones if needed.
+ * <p>
+ * A subclass can change the document (page size, margins) overriding
+ * {@link #createDocument()}, or the whole writing overriding
+ * {@link #render(DrawContext)}. After the execution the job keeps the number
+ * of pages written and the times of the execution.
+ * <p>
+ * The elements are drawn by the thread of the service: they must not be
+ * modified, nor drawn by other jobs, until the job is complete.
+ */
+public class RenderJob {
+
+	private final OutputStream		c_sink;
+	private final List<Drawable>	c_elements;
+	private float									c_spacing;
+
+	/*
+	 * results, written by the thread of the service
+	 */
+	private volatile int	c_pageCount;
+	private volatile int	c_partCount	= 1;
+	private volatile long	c_waitNanos;
+	private volatile long	c_renderNanos;
+
+	/**
+	 * @param sink
+	 *          destination of the document, closed with the document; a
+	 *          {@link BufferOutputStream} keeps the document in memory
+	 */
+	public RenderJob(OutputStream sink) {
+		c_sink = sink;
+		c_elements = new ArrayList<Drawable>();
+	}
+
+	public void add(Drawable element) {
+		c_elements.add(element);
+	}
+
+	public List<Drawable> getElements() {
+		return c_elements;
+	}
+
+	public OutputStream getSink() {
+		return c_sink;
+	}
+
+	/**
+	 * @return vertical space (in points) between two blocks
+	 */
+	public float getSpacing() {
+		return c_spacing;
+	}
+
+	public void setSpacing(float spacing) {
+		c_spacing = spacing;
+	}
+
+	/**
+	 * Create the document to write; by default an A4 page with margins of 36
+	 * points.
+	 */
+	protected Document createDocument() {
+		return new Document();
+	}
+
+	/**
+	 * Write the elements on the document, already open.
+	 *
+	 * @param context
+	 *          context of the document
+	 * @throws DocumentException
+	 *           on low level errors during writing on the pdf document
+	 */
+	protected void render(DrawContext context) throws DocumentException {
+		PageComposer composer = new PageComposer(context);
+		composer.setSpacing(c_spacing);
+		for (Drawable e : c_elements) {
+			if (e instanceof BlockElement) {
+				composer.add((BlockElement) e);
+			} else {
+				while (!e.draw(context)) {
+					composer.newPage();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of pages of the document, once written
+	 */
+	public int getPageCount() {
+		return c_pageCount;
+	}
+
+	/**
+	 * @return number of parts written in parallel and merged by a
+	 *         {@link PartitionedRenderer}; 1 if the document has been written
+	 *         sequentially
+	 */
+	public int getPartCount() {
+		return c_partCount;
+	}
+
+	void setPartCount(int partCount) {
+		c_partCount = partCount;
+	}
+
+	/**
+	 * @return time spent in the queue of the service, in nanoseconds
+	 */
+	public long getWaitNanos() {
+		return c_waitNanos;
+	}
+
+	/**
+	 * @return time spent to write the document, in nanoseconds
+	 */
+	public long getRenderNanos() {
+		return c_renderNanos;
+	}
+
+	void done(int pageCount, long waitNanos, long renderNanos) {
+		c_pageCount = pageCount;
+		c_waitNanos = waitNanos;
+		c_renderNanos = renderNanos;
+	}
+}
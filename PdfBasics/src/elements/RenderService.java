@@ -0,0 +1,230 @@
+package elements;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.itextpdf.text.Document;
+
+/**
+ * Service that produces documents concurrently: the {@link RenderJob}s
+ * submitted are written by at most {@link #getConcurrency() concurrency}
+ * threads, every one with its own document and {@link DrawContext}. The jobs
+ * waiting for a thread are queued, up to {@link #getMaxQueued() maxQueued}:
+ * when the queue is full the new jobs are rejected, so a burst of requests
+ * cannot exhaust the memory.
+ * <p>
+ * The service counts the jobs completed and failed, keeps the depth of the
+ * queue and the histograms of the time spent by the jobs in the queue and
+ * writing the document.
+ */
+public class RenderService {
+
+	private final ThreadPoolExecutor	c_executor;
+	private final int									c_concurrency;
+	private final int									c_maxQueued;
+	private final LatencyHistogram		c_waitLatency;
+	private final LatencyHistogram		c_renderLatency;
+	private final AtomicLong					c_completed;
+	private final AtomicLong					c_failed;
+	private final AtomicLong					c_rejected;
+	private final AtomicInteger				c_maxQueueDepth;
+
+	/**
+	 * @param concurrency
+	 *          maximum number of documents written at the same time
+	 * @param maxQueued
+	 *          maximum number of jobs waiting to be executed
+	 */
+	public RenderService(int concurrency, int maxQueued) {
+		if (concurrency <= 0 || maxQueued <= 0)
+			throw new IllegalArgumentException(
+					"concurrency and maxQueued must be positive");
+		c_concurrency = concurrency;
+		c_maxQueued = maxQueued;
+		c_waitLatency = new LatencyHistogram();
+		c_renderLatency = new LatencyHistogram();
+		c_completed = new AtomicLong();
+		c_failed = new AtomicLong();
+		c_rejected = new AtomicLong();
+		c_maxQueueDepth = new AtomicInteger();
+		c_executor = new ThreadPoolExecutor(concurrency, concurrency, 60,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(maxQueued),
+				new RenderThreadFactory());
+		c_executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queue a job for execution.
+	 *
+	 * @param job
+	 *          document to write
+	 * @return the future of the job, that returns the job itself once complete
+	 * @throws RejectedExecutionException
+	 *           if the queue is full or the service has been shut down
+	 */
+	public Future<RenderJob> submit(final RenderJob job) {
+		final long queued = System.nanoTime();
+		Future<RenderJob> f;
+		try {
+			f = c_executor.submit(new Callable<RenderJob>() {
+				public RenderJob call() throws Exception {
+					return execute(job, queued);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			c_rejected.incrementAndGet();
+			throw e;
+		}
+		int depth = c_executor.getQueue().size();
+		int max = c_maxQueueDepth.get();
+		while (depth > max && !c_maxQueueDepth.compareAndSet(max, depth))
+			max = c_maxQueueDepth.get();
+		return f;
+	}
+
+	private RenderJob execute(RenderJob job, long queued) throws Exception {
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			Document doc = job.createDocument();
+			DrawContext context = DrawContext.open(doc, job.getSink());
+			try {
+				job.render(context);
+				ok = true;
+			} finally {
+				int pages = context.getWriter().getPageNumber();
+				try {
+					doc.close();
+				} catch (RuntimeException e) {
+					// the document of a failed job can be incomplete: keep the first
+					// error
+					if (ok) {
+						ok = false;
+						throw e;
+					}
+				}
+				job.done(pages, start - queued, System.nanoTime() - start);
+			}
+		} finally {
+			c_waitLatency.record(start - queued);
+			c_renderLatency.record(System.nanoTime() - start);
+			if (ok)
+				c_completed.incrementAndGet();
+			else
+				c_failed.incrementAndGet();
+		}
+		return job;
+	}
+
+	/**
+	 * Stop accepting new jobs; the jobs already submitted are completed.
+	 */
+	public void shutdown() {
+		c_executor.shutdown();
+	}
+
+	/**
+	 * Wait for the completion of the jobs after a {@link #shutdown()}.
+	 *
+	 * @return true if all the jobs are complete, false if the timeout elapsed
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return c_executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * @return maximum number of documents written at the same time
+	 */
+	public int getConcurrency() {
+		return c_concurrency;
+	}
+
+	/**
+	 * @return maximum number of jobs waiting to be executed
+	 */
+	public int getMaxQueued() {
+		return c_maxQueued;
+	}
+
+	/**
+	 * @return number of jobs waiting to be executed
+	 */
+	public int getQueueDepth() {
+		return c_executor.getQueue().size();
+	}
+
+	/**
+	 * @return the highest number of jobs waiting, observed at the submission
+	 */
+	public int getMaxQueueDepth() {
+		return c_maxQueueDepth.get();
+	}
+
+	/**
+	 * @return number of jobs being executed
+	 */
+	public int getActiveCount() {
+		return c_executor.getActiveCount();
+	}
+
+	/**
+	 * @return number of jobs completed successfully
+	 */
+	public long getCompletedCount() {
+		return c_completed.get();
+	}
+
+	/**
+	 * @return number of jobs terminated by an exception
+	 */
+	public long getFailedCount() {
+		return c_failed.get();
+	}
+
+	/**
+	 * @return number of jobs rejected because the queue was full
+	 */
+	public long getRejectedCount() {
+		return c_rejected.get();
+	}
+
+	/**
+	 * @return histogram of the time spent by the jobs in the queue
+	 */
+	public LatencyHistogram getWaitLatency() {
+		return c_waitLatency;
+	}
+
+	/**
+	 * @return histogram of the time spent writing the documents
+	 */
+	public LatencyHistogram getRenderLatency() {
+		return c_renderLatency;
+	}
+
+	/**
+	 * Creates daemon threads, so a service not shut down doesn't prevent the
+	 * process from exiting.
+	 */
+	private static class RenderThreadFactory implements ThreadFactory {
+		private static final AtomicInteger	SERVICES	= new AtomicInteger();
+
+		private final int										c_service	= SERVICES.incrementAndGet();
+		private final AtomicInteger					c_threads	= new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "render-" + c_service + "-"
+					+ c_threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package elements;
+
+import java.util.Iterator;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+
+/**
+ * Report made of a sequence of rows, each one written with the same set of
+ * text blocks (the cells of the row). The rows are read one at a time from an
+ * iterator, laid out below the previous one and the pages are broken
+ * automatically.
+ * <p>
+ * The cells are reused for every row: the {@link RowFiller} assigns the
+ * content of the current record to the cells, so the memory used doesn't
+ * depend on the number of rows. Every page is passed to the
+ * {@link com.itextpdf.text.pdf.PdfWriter PdfWriter} as soon as it's complete,
+ * so the writer can send it to its output stream (see
+ * {@link DrawContext#setMemoryBounded(boolean)}).
+ * <p>
+ * The horizontal position and the size of the cells are those assigned to the
+ * text blocks; the vertical position is calculated by the report.
+ *
+ * @param <T>
+ *          type of the records
+ */
+public class RowReport<T> {
+
+	/**
+	 * Assigns the content of a record to the cells of a row.
+	 *
+	 * @param <T>
+	 *          type of the records
+	 */
+	public interface RowFiller<T> {
+		/**
+		 * Fill the cells with the data of a record. The cells contain the data of
+		 * the previous row, that must be replaced.
+		 *
+		 * @param record
+		 *          current record
+		 * @param cells
+		 *          the text blocks of the row
+		 */
+		public void fill(T record, TextBlock[] cells);
+	}
+
+	private final TextBlock[]		c_cells;
+	private final RowFiller<T>	c_filler;
+	private float								c_rowSpacing;
+	private int									c_pages;
+
+	/**
+	 * @param cells
+	 *          text blocks that compose a row, with the horizontal position
+	 *          already assigned
+	 * @param filler
+	 *          object that assigns the data of every record to the cells
+	 */
+	public RowReport(TextBlock[] cells, RowFiller<T> filler) {
+		c_cells = cells.clone();
+		c_filler = filler;
+	}
+
+	/**
+	 * @return vertical space (in points) between two rows
+	 */
+	public float getRowSpacing() {
+		return c_rowSpacing;
+	}
+
+	public void setRowSpacing(float rowSpacing) {
+		c_rowSpacing = rowSpacing;
+	}
+
+	/**
+	 * @return the number of pages written by the last call to
+	 *         {@link #write(DrawContext, Iterator)}
+	 */
+	public int getPageCount() {
+		return c_pages;
+	}
+
+	/**
+	 * Write all the rows, starting from the top of the current page.
+	 *
+	 * @param context
+	 *          context of the document
+	 * @param rows
+	 *          records to write
+	 * @return the number of rows written
+	 * @throws DocumentException
+	 *           on low level errors during writing on the pdf document
+	 */
+	public int write(DrawContext context, Iterator<? extends T> rows)
+			throws DocumentException {
+		Document d = context.getDocument();
+		BlockLayout[] layouts = new BlockLayout[c_cells.length];
+		float y = d.top();
+		boolean pageEmpty = true;
+		int count = 0;
+		c_pages = 1;
+		while (rows.hasNext()) {
+			c_filler.fill(rows.next(), c_cells);
+			measure(context, y, layouts);
+			if (!pageEmpty && spansPages(layouts)) {
+				// the row doesn't fit the rest of the page: move it on the next one
+				context.newPage();
+				c_pages++;
+				y = d.top();
+				measure(context, y, layouts);
+			}
+			y = drawRow(context, layouts) - c_rowSpacing;
+			pageEmpty = false;
+			count++;
+		}
+		return count;
+	}
+
+	private void measure(DrawContext context, float y, BlockLayout[] layouts)
+			throws DocumentException {
+		for (int i = 0; i < c_cells.length; i++) {
+			c_cells[i].setStartY(y);
+			layouts[i] = c_cells[i].measure(context);
+		}
+	}
+
+	private static boolean spansPages(BlockLayout[] layouts) {
+		for (BlockLayout l : layouts) {
+			if (l.getPageCount() > 1)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Draw the cells of the current row; if the row is taller than a page, the
+	 * cells are continued together on the next pages.
+	 *
+	 * @return the lower position of the row on the last page
+	 */
+	private float drawRow(DrawContext context, BlockLayout[] layouts)
+			throws DocumentException {
+		for (TextBlock cell : c_cells) {
+			cell.resetDrawStatus(context);
+		}
+		boolean complete = false;
+		float lower = 0;
+		while (!complete) {
+			complete = true;
+			lower = context.getDocument().top();
+			for (int i = 0; i < c_cells.length; i++) {
+				TextBlock.DrawStatus st = c_cells[i].getDrawStatus(context);
+				if (st != null && st.isDrawComplete())
+					continue;
+				if (!c_cells[i].draw(context, layouts[i]))
+					complete = false;
+				lower = Math.min(lower, c_cells[i].getDrawStatus(context).getRealLower());
+			}
+			if (!complete) {
+				context.newPage();
+				c_pages++;
+			}
+		}
+		// the context doesn't keep the content of the row written
+		for (TextBlock cell : c_cells) {
+			cell.resetDrawStatus(context);
+		}
+		return lower;
+	}
+}
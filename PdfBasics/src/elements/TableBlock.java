@@ -0,0 +1,675 @@
+package elements;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.pdf.BaseFont;
+
+/**
+ * Table of text cells. The table keeps only the content of the cells (one
+ * element for every cell): the rows are laid out one at a time, with a text
+ * block for every column reused for all the rows, and the pages are broken
+ * automatically. The header rows are repeated at the top of every page.
+ * <p>
+ * The body rows can be added to the table, or read from a source with
+ * {@link #setRowSource(Iterable)}: the table doesn't keep the rows of a
+ * source, and every measure and drawing reads them one at a time, so the
+ * memory used doesn't depend on the number of rows.
+ * <p>
+ * A row that doesn't fit the rest of the page is moved to the next one; a row
+ * higher than a whole page is split, and the header is not repeated on the
+ * pages that continue it.
+ * <p>
+ * The widths of the columns not declared with
+ * {@link #setColumnWidth(int, float)} are calculated from the content, in a
+ * single pass over the cells; if the table is wider than the available space,
+ * the calculated columns are shrunk. The grid is drawn with the size and the
+ * color of the {@link #getBorder() border} of the table, once for every page:
+ * the line between two cells is shared by both.
+ */
+public class TableBlock extends BlockElement {
+
+	private float													c_startX;
+	private float													c_startY;
+	private final int											c_columns;
+	private final float[]									c_columnWidths;
+	private float													c_cellPadding;
+	private final List<Element[]>					c_headerRows;
+	private final List<Element[]>					c_rows;
+	private Iterable<? extends Element[]>	c_rowSource;
+
+	/**
+	 * Status of the last drawing, used by the methods that don't take the
+	 * context as argument.
+	 */
+	private transient volatile Status			c_lastStatus;
+
+	/**
+	 * @param x
+	 *          start x position (upper left point)
+	 * @param y
+	 *          start y position (upper left point)
+	 * @param columns
+	 *          number of columns
+	 */
+	public TableBlock(float x, float y, int columns) {
+		this(columns);
+		c_startX = x;
+		c_startY = y;
+	}
+
+	public TableBlock(int columns) {
+		if (columns <= 0)
+			throw new IllegalArgumentException("A table needs at least one column");
+		c_columns = columns;
+		c_columnWidths = new float[columns];
+		setFont(new Font(FontFamily.HELVETICA, 10));
+		c_cellPadding = 2;
+		c_headerRows = new ArrayList<Element[]>();
+		c_rows = new ArrayList<Element[]>();
+		c_lastStatus = new Status();
+	}
+
+	/**
+	 * Add a row repeated at the top of every page.
+	 *
+	 * @param cells
+	 *          content of the cells, one for every column; null for an empty
+	 *          cell
+	 */
+	public void addHeaderRow(Element... cells) {
+		c_headerRows.add(checkRow(cells));
+		changed();
+	}
+
+	/**
+	 * Add a row at the end of the table.
+	 *
+	 * @param cells
+	 *          content of the cells, one for every column; null for an empty
+	 *          cell
+	 */
+	public void addRow(Element... cells) {
+		if (c_rowSource != null)
+			throw new IllegalStateException("The rows are read from a source");
+		c_rows.add(checkRow(cells));
+		changed();
+	}
+
+	/**
+	 * Read the body rows from a source, instead of keeping them in the table;
+	 * the rows already added are removed. Every measure and every drawing asks
+	 * the source for a new iterator, and releases every row as soon as it's
+	 * written (as a {@link RowReport} does). If the widths of some columns are
+	 * calculated from the content, the source is read once more to calculate
+	 * them.
+	 * <p>
+	 * All the iterators must return the same rows; if the table is drawn on more
+	 * contexts at the same time, the source must support concurrent iterators.
+	 *
+	 * @param rows
+	 *          source of the rows, each one with an element for every column
+	 *          (null for an empty cell); null to add the rows to the table again
+	 */
+	public void setRowSource(Iterable<? extends Element[]> rows) {
+		c_rows.clear();
+		c_rowSource = rows;
+		changed();
+	}
+
+	/**
+	 * @return the source of the rows, or null if the rows are added to the table
+	 */
+	public Iterable<? extends Element[]> getRowSource() {
+		return c_rowSource;
+	}
+
+	/**
+	 * Remove all the rows, headers excluded, and the source of the rows.
+	 */
+	public void clearRows() {
+		c_rows.clear();
+		c_rowSource = null;
+		changed();
+	}
+
+	/**
+	 * @return the number of rows added to the table, 0 if they are read from a
+	 *         source
+	 */
+	public int getRowCount() {
+		return c_rows.size();
+	}
+
+	public int getColumnCount() {
+		return c_columns;
+	}
+
+	private Element[] checkRow(Element[] cells) {
+		return checkLength(cells).clone();
+	}
+
+	private Element[] checkLength(Element[] cells) {
+		if (cells.length != c_columns)
+			throw new IllegalArgumentException("Expected " + c_columns
+					+ " cells, found " + cells.length);
+		return cells;
+	}
+
+	/**
+	 * @return the body rows: the source, or the rows added
+	 */
+	private Iterable<? extends Element[]> getRows() {
+		return c_rowSource != null ? c_rowSource : c_rows;
+	}
+
+	@Override
+	void collectText(FontRegistry fonts, Map<BaseFont, StringBuilder> text) {
+		BaseFont def = fonts.getResolvedFont(getFont()).getBaseFont();
+		for (Element[] row : c_headerRows)
+			collectText(row, def, fonts, text);
+		for (Element[] row : getRows())
+			collectText(row, def, fonts, text);
+	}
+
+	private static void collectText(Element[] row, BaseFont def,
+			FontRegistry fonts, Map<BaseFont, StringBuilder> text) {
+		for (Element cell : row) {
+			if (cell != null)
+				TextBlock.collectText(cell, def, fonts, text);
+		}
+	}
+
+	/**
+	 * Calculate the width of every column: the declared one or, if not
+	 * declared, the width of the largest cell. If the total width exceeds the
+	 * {@link #getMaxWidth() maxWidth} (or the {@link DrawContext#getAvailWidth()
+	 * available width}), the calculated columns are shrunk proportionally.
+	 *
+	 * @param context
+	 *          context of the drawing
+	 * @return the widths of the columns, comprising the padding of the cells
+	 */
+	public float[] calculateColumnWidths(DrawContext context) {
+		float[] widths = new float[c_columns];
+		FontRegistry fonts = context.getFontRegistry();
+		for (int c = 0; c < c_columns; c++) {
+			if (c_columnWidths[c] > 0)
+				widths[c] = c_columnWidths[c];
+		}
+		measureCells(c_headerRows, widths, fonts);
+		measureCells(getRows(), widths, fonts);
+
+		float declared = 0;
+		float auto = 0;
+		// add the padding and 1 pt to adjust possible roundings, as the text
+		// blocks do
+		float extra = 2 * c_cellPadding + getBorderSize() + 1;
+		for (int c = 0; c < c_columns; c++) {
+			if (c_columnWidths[c] > 0) {
+				declared += widths[c];
+			} else {
+				widths[c] += extra;
+				auto += widths[c];
+			}
+		}
+		float avail = getMaxWidth() > 0 ? getMaxWidth() : context.getAvailWidth();
+		if (declared + auto > avail && auto > 0) {
+			float scale = Math.max(0, avail - declared) / auto;
+			for (int c = 0; c < c_columns; c++) {
+				if (c_columnWidths[c] <= 0)
+					widths[c] *= scale;
+			}
+		}
+		return widths;
+	}
+
+	/**
+	 * Update the widths of the columns not declared with the width of the
+	 * content of the cells.
+	 */
+	private void measureCells(Iterable<? extends Element[]> rows,
+			float[] widths, FontRegistry fonts) {
+		boolean auto = false;
+		for (int c = 0; c < c_columns; c++) {
+			if (c_columnWidths[c] <= 0)
+				auto = true;
+		}
+		if (!auto) {
+			// all the widths are declared: the rows are not read
+			return;
+		}
+		for (Element[] row : rows) {
+			checkLength(row);
+			for (int c = 0; c < c_columns; c++) {
+				if (c_columnWidths[c] > 0 || row[c] == null)
+					continue;
+				float w = TextBlock.calculateTextMaxWidth(row[c], getFont(), fonts);
+				if (w > widths[c])
+					widths[c] = w;
+			}
+		}
+	}
+
+	/**
+	 * Draw the rows that fit the current page.
+	 */
+	@Override
+	public boolean draw(DrawContext context) throws DocumentException {
+		return drawPage(context, null);
+	}
+
+	/**
+	 * Draw a page of the table following the layout returned by
+	 * {@link #measure(DrawContext)}: the widths of the columns are not
+	 * calculated again, and the page ends after the rows recorded by the
+	 * measure, without laying out the row that doesn't fit. The table must not
+	 * be modified between the measure and the drawing.
+	 */
+	@Override
+	public boolean draw(DrawContext context, BlockLayout layout)
+			throws DocumentException {
+		if (layout.getCellWidths() == null)
+			throw new IllegalArgumentException("Not the layout of a table");
+		return drawPage(context, layout);
+	}
+
+	private boolean drawPage(DrawContext context, BlockLayout layout)
+			throws DocumentException {
+		Status st = (Status) context.getDrawStatus(this);
+		if (st == null) {
+			st = start(context, layout == null ? calculateColumnWidths(context)
+					: layout.getCellWidths());
+			st.plan = layout;
+			context.setDrawStatus(this, st);
+		} else if (st.complete) {
+			throw new IllegalStateException("No more contents to write");
+		} else if (st.plan != layout) {
+			throw new IllegalArgumentException(
+					"The table is being drawn with another layout");
+		}
+		c_lastStatus = st;
+		return layoutPage(context, st, true);
+	}
+
+	/**
+	 * Calculate how the table is split across the pages, laying out all the
+	 * rows without writing them.
+	 */
+	@Override
+	public BlockLayout measure(DrawContext context) throws DocumentException {
+		Status st = start(context, calculateColumnWidths(context));
+		st.layout = new BlockLayout.Builder();
+		st.layout.setCellWidths(st.widths);
+		boolean complete = false;
+		while (!complete) {
+			int row = st.nextRow;
+			int rowPage = st.rowPage;
+			complete = layoutPage(context, st, false);
+			if (!complete && st.nextRow == row && st.rowPage == rowPage) {
+				// no progress: the table cannot be completed
+				break;
+			}
+		}
+		return st.layout.build(st.xs[c_columns] - st.xs[0], complete);
+	}
+
+	private Status start(DrawContext context, float[] widths) {
+		Status st = new Status();
+		st.widths = widths;
+		st.xs = new float[c_columns + 1];
+		st.xs[0] = c_startX;
+		st.cells = new TextBlock[c_columns];
+		st.layouts = new BlockLayout[c_columns];
+		float minHeight = getFont().getSize() * 1.5f + 2 * c_cellPadding;
+		// all the cells share the same style
+		BlockStyle cellStyle = BlockStyle.create(null, c_cellPadding, getFont());
+		for (int c = 0; c < c_columns; c++) {
+			st.xs[c + 1] = st.xs[c] + st.widths[c];
+			TextBlock cell = new TextBlock(st.xs[c], 0, st.widths[c], minHeight);
+			cell.setStyle(cellStyle);
+			cell.setGrowType(GrowDirection.VERT);
+			st.cells[c] = cell;
+		}
+		st.bounds = new float[32];
+		st.rows = getRows().iterator();
+		return st;
+	}
+
+	/**
+	 * Lay out (and draw, if requested) a page of the table: the header and the
+	 * rows that fit the page.
+	 *
+	 * @return true if the table has been completed
+	 */
+	private boolean layoutPage(DrawContext context, Status st, boolean draw)
+			throws DocumentException {
+		Document d = context.getDocument();
+		float top = st.page == 0 ? c_startY : d.top();
+		// rows begun on the page, if known from the layout
+		int planned = -1;
+		if (st.plan != null && st.page < st.plan.getPageCount())
+			planned = st.plan.getRowsOnPage(st.page);
+		int firstRow = st.nextRow;
+		st.page++;
+		st.boundCount = 0;
+		addBound(st, top);
+		float y = top;
+		boolean rowsOnPage = false;
+		if (st.rowPage > 0) {
+			// continuation of a row higher than a page
+			y = placeRow(context, st, draw);
+			addBound(st, y);
+			rowsOnPage = true;
+		} else {
+			for (Element[] header : c_headerRows) {
+				fillRow(context, st, header, y, draw);
+				y = placeRow(context, st, draw);
+				// a header is never continued
+				st.rowPage = 0;
+				addBound(st, y);
+			}
+		}
+		while (st.rowPage == 0 && st.nextRow - firstRow != planned
+				&& nextRow(st) != null) {
+			fillRow(context, st, st.row, y, draw);
+			if (planned < 0 && rowsOnPage && spansPages(st.layouts)) {
+				// the row doesn't fit the rest of the page: move it on the next one
+				break;
+			}
+			st.row = null;
+			st.nextRow++;
+			y = placeRow(context, st, draw);
+			addBound(st, y);
+			rowsOnPage = true;
+		}
+
+		st.realLower = y;
+		st.realUpper = top;
+		st.lastHeight = top - y;
+		st.realHeight += st.lastHeight;
+		if (draw) {
+			strokeGrid(context, st);
+		} else {
+			if (getBorderSize() > 0)
+				st.layout.setBorder();
+			st.layout.setRows(st.nextRow - firstRow);
+			st.layout.endPage(st.lines, st.lastHeight, st.realHeight, y, top);
+		}
+		st.complete = st.rowPage == 0 && nextRow(st) == null;
+		if (draw && st.complete) {
+			// the cells belong to this drawing: the context doesn't keep them
+			for (TextBlock cell : st.cells)
+				cell.resetDrawStatus(context);
+		}
+		return st.complete;
+	}
+
+	/**
+	 * @return the next body row to write, read from the rows if needed, or null
+	 *         if all the rows have been written
+	 */
+	private Element[] nextRow(Status st) {
+		if (st.row == null && st.rows.hasNext())
+			st.row = checkLength(st.rows.next());
+		return st.row;
+	}
+
+	/**
+	 * Assign the content of a row to the cells and measure them; the drawing
+	 * status of the cells is used only if the row will be drawn, so a measure
+	 * pass doesn't touch the context.
+	 */
+	private void fillRow(DrawContext context, Status st, Element[] row,
+			float y, boolean draw) throws DocumentException {
+		for (int c = 0; c < c_columns; c++) {
+			TextBlock cell = st.cells[c];
+			cell.clearContent();
+			if (row[c] != null)
+				cell.addElement(row[c]);
+			cell.setStartY(y);
+			if (draw)
+				cell.resetDrawStatus(context);
+			st.layouts[c] = cell.measure(context);
+		}
+	}
+
+	/**
+	 * Place the next piece of the current row on the page.
+	 *
+	 * @return the lower position of the row
+	 */
+	private float placeRow(DrawContext context, Status st, boolean draw)
+			throws DocumentException {
+		int piece = st.rowPage;
+		float lower = Float.MAX_VALUE;
+		boolean more = false;
+		for (int c = 0; c < c_columns; c++) {
+			BlockLayout l = st.layouts[c];
+			if (piece >= l.getPageCount())
+				continue;
+			if (draw)
+				st.cells[c].draw(context, l);
+			lower = Math.min(lower, l.getPageLower(piece));
+			st.lines += l.getLinesOnPage(piece);
+			if (piece < l.getPageCount() - 1)
+				more = true;
+		}
+		st.rowPage = more ? piece + 1 : 0;
+		return lower;
+	}
+
+	private static boolean spansPages(BlockLayout[] layouts) {
+		for (BlockLayout l : layouts) {
+			if (l.getPageCount() > 1)
+				return true;
+		}
+		return false;
+	}
+
+	private static void addBound(Status st, float y) {
+		if (st.boundCount == st.bounds.length) {
+			float[] a = new float[st.bounds.length * 2];
+			System.arraycopy(st.bounds, 0, a, 0, st.boundCount);
+			st.bounds = a;
+		}
+		st.bounds[st.boundCount++] = y;
+	}
+
+	/**
+	 * Stroke the grid of the rows written on the page as a single path: every
+	 * line is drawn once, even if it separates two cells. If the context
+	 * collects the borders, the lines are added to the ones of the page.
+	 */
+	private void strokeGrid(DrawContext context, Status st) {
+		Border border = getBorder();
+		if (border == null || border.getSize() <= 0 || st.boundCount < 2)
+			return;
+		BorderBatcher batcher = context.getBorderBatcher();
+		if (batcher == null) {
+			batcher = new BorderBatcher(context.getWriter().getDirectContent());
+		}
+		float left = st.xs[0];
+		float right = st.xs[c_columns];
+		float top = st.bounds[0];
+		float bottom = st.bounds[st.boundCount - 1];
+		for (int i = 0; i < st.boundCount; i++) {
+			batcher.add(border, left, st.bounds[i], right, st.bounds[i]);
+		}
+		for (int c = 0; c <= c_columns; c++) {
+			batcher.add(border, st.xs[c], top, st.xs[c], bottom);
+		}
+		if (batcher != context.getBorderBatcher()) {
+			batcher.flush();
+		}
+	}
+
+	@Override
+	public float getStartX() {
+		return c_startX;
+	}
+
+	@Override
+	public void setStartX(float x) {
+		c_startX = x;
+	}
+
+	@Override
+	public float getStartY() {
+		return c_startY;
+	}
+
+	@Override
+	public void setStartY(float y) {
+		c_startY = y;
+	}
+
+	/**
+	 * @param column
+	 *          index of the column
+	 * @return the declared width of the column, or 0 if calculated from the
+	 *         content
+	 */
+	public float getColumnWidth(int column) {
+		return c_columnWidths[column];
+	}
+
+	/**
+	 * @param column
+	 *          index of the column
+	 * @param width
+	 *          width of the column, padding included; 0 to calculate it from
+	 *          the content
+	 */
+	public void setColumnWidth(int column, float width) {
+		c_columnWidths[column] = width;
+		changed();
+	}
+
+	/**
+	 * @return the font of the text, part of the {@link #getStyle() style}
+	 */
+	public Font getFont() {
+		return getStyle().getFont();
+	}
+
+	public void setFont(Font font) {
+		setStyle(peekStyle().withFont(font));
+	}
+
+	/**
+	 * @return the padding of every cell, in points
+	 */
+	public float getCellPadding() {
+		return c_cellPadding;
+	}
+
+	public void setCellPadding(float cellPadding) {
+		c_cellPadding = cellPadding;
+		changed();
+	}
+
+	/**
+	 * @return the height of the table written so far by the last drawing
+	 */
+	@Override
+	public float getRealHeight() {
+		return c_lastStatus.realHeight;
+	}
+
+	/**
+	 * @return the width of the table in the last drawing
+	 */
+	@Override
+	public float getRealWidth() {
+		Status st = c_lastStatus;
+		return st.xs == null ? 0 : st.xs[c_columns] - st.xs[0];
+	}
+
+	/**
+	 * @return the lower position of the table on the last page written
+	 */
+	public float getRealLower() {
+		return c_lastStatus.realLower;
+	}
+
+	/**
+	 * @return the number of body rows written so far by the last drawing
+	 */
+	public int getRowsWritten() {
+		return c_lastStatus.nextRow;
+	}
+
+	@Override
+	public boolean isCanGrowX() {
+		return false;
+	}
+
+	@Override
+	public boolean isCanGrowY() {
+		return true;
+	}
+
+	/**
+	 * Status of a drawing of the table on a context.
+	 */
+	private static class Status {
+		/**
+		 * widths of the columns
+		 */
+		float[]												widths;
+		/**
+		 * x position of the lines between the columns
+		 */
+		float[]												xs;
+		TextBlock[]										cells;
+		/**
+		 * layouts of the cells of the current row
+		 */
+		BlockLayout[]									layouts;
+		/**
+		 * y position of the lines between the rows of the current page
+		 */
+		float[]												bounds;
+		int														boundCount;
+		/**
+		 * body rows not yet read
+		 */
+		Iterator<? extends Element[]>	rows;
+		/**
+		 * next body row, read and not yet written
+		 */
+		Element[]											row;
+		/**
+		 * index of the next body row
+		 */
+		int														nextRow;
+		/**
+		 * index of the next piece of the current row, 0 if the row is complete
+		 */
+		int														rowPage;
+		int														page;
+		int														lines;
+		float													lastHeight;
+		float													realHeight;
+		float													realLower;
+		float													realUpper;
+		boolean												complete;
+		/**
+		 * not null during a measure pass
+		 */
+		BlockLayout.Builder						layout;
+		/**
+		 * layout followed by the drawing, null if the pages are broken while
+		 * drawing
+		 */
+		BlockLayout										plan;
+	}
+}
@@ -0,0 +1,200 @@
+package elements;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfTemplate;
+
+/**
+ * A text block with static content, that repeats unchanged on many pages
+ * (headers, footers, fixed labels...). The first time it's drawn on a
+ * document the block is laid out and written in a {@link PdfTemplate} (a form
+ * XObject); on the following pages the template is only placed again, so the
+ * text is not laid out anymore and the document contains its content once.
+ * <p>
+ * The template belongs to the document, so it's kept in the
+ * {@link DrawContext}: every document has its own. The content and the
+ * properties of the wrapped block must not change after the first drawing;
+ * use {@link #invalidate(DrawContext)} to draw the block again from scratch.
+ * <p>
+ * The block must fit a single page: if its text continues on other pages, it
+ * is drawn normally, without template.
+ */
+public class TemplateBlock implements Drawable {
+
+	private final TextBlock	c_block;
+
+	/**
+	 * @param block
+	 *          block to draw through the template
+	 */
+	public TemplateBlock(TextBlock block) {
+		c_block = block;
+	}
+
+	/**
+	 * @return the wrapped text block
+	 */
+	public TextBlock getBlock() {
+		return c_block;
+	}
+
+	/**
+	 * Draw the block on the current page, writing the template the first time.
+	 */
+	@Override
+	public boolean draw(DrawContext context) throws DocumentException {
+		Cached cached = getCached(context);
+		if (cached.template == null) {
+			// more pages: no template
+			return c_block.draw(context);
+		}
+		DrawMetrics metrics = context.getMetrics();
+		long start = metrics != null ? System.nanoTime() : 0;
+		PdfContentByte cb = context.getWriter().getDirectContent();
+		int size = metrics != null ? cb.getInternalBuffer().size() : 0;
+		cb.addTemplate(cached.template, 0, 0);
+		if (metrics != null) {
+			metrics.drawn(this, context.getWriter().getPageNumber(), 0,
+					cb.getInternalBuffer().size() - size, System.nanoTime() - start);
+		}
+		return true;
+	}
+
+	/**
+	 * The block is laid out once per document: the measure returns the layout
+	 * used to write the template.
+	 */
+	@Override
+	public BlockLayout measure(DrawContext context) throws DocumentException {
+		return getCached(context).layout;
+	}
+
+	@Override
+	public boolean draw(DrawContext context, BlockLayout layout)
+			throws DocumentException {
+		return draw(context);
+	}
+
+	/**
+	 * Discard the template written on a context: the next drawing lays out the
+	 * block again.
+	 * 
+	 * @param context
+	 *          context of the document
+	 */
+	public void invalidate(DrawContext context) {
+		context.removeDrawStatus(this);
+		c_block.resetDrawStatus(context);
+	}
+
+	/**
+	 * @param context
+	 *          context of the document
+	 * @return true if the block is written in a template on the context
+	 */
+	public boolean isTemplate(DrawContext context) throws DocumentException {
+		return getCached(context).template != null;
+	}
+
+	private Cached getCached(DrawContext context) throws DocumentException {
+		Cached cached = (Cached) context.getDrawStatus(this);
+		if (cached == null) {
+			cached = new Cached();
+			cached.layout = c_block.measure(context);
+			if (cached.layout.getPageCount() == 1) {
+				cached.template = createTemplate(context, cached.layout);
+			}
+			context.setDrawStatus(this, cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Write the block in a new template. The template uses the coordinates of
+	 * the page, so it's placed without any transformation.
+	 */
+	private PdfTemplate createTemplate(DrawContext context, BlockLayout layout)
+			throws DocumentException {
+		float x = c_block.getStartX();
+		PdfTemplate tpl = context.getWriter().getDirectContent()
+				.createTemplate(0, 0);
+		tpl.setBoundingBox(new Rectangle(x, layout
+				.getPageLower(0), x + layout.getRealWidth(), layout.getPageUpper(0)));
+		c_block.resetDrawStatus(context);
+		c_block.draw(context, layout, tpl);
+		c_block.resetDrawStatus(context);
+		return tpl;
+	}
+
+	@Override
+	public float getMaxHeight() {
+		return c_block.getMaxHeight();
+	}
+
+	@Override
+	public void setMaxHeight(float h) {
+		c_block.setMaxHeight(h);
+	}
+
+	@Override
+	public float getMaxWidth() {
+		return c_block.getMaxWidth();
+	}
+
+	@Override
+	public void setMaxWidth(float h) {
+		c_block.setMaxWidth(h);
+	}
+
+	@Override
+	public float getRealHeight() {
+		return c_block.getRealHeight();
+	}
+
+	@Override
+	public boolean isCanGrowX() {
+		return c_block.isCanGrowX();
+	}
+
+	@Override
+	public boolean isCanGrowY() {
+		return c_block.isCanGrowY();
+	}
+
+	@Override
+	public float getRealWidth() {
+		return c_block.getRealWidth();
+	}
+
+	@Override
+	public float getPaddingTop() {
+		return c_block.getPaddingTop();
+	}
+
+	@Override
+	public float getPaddingLeft() {
+		return c_block.getPaddingLeft();
+	}
+
+	@Override
+	public float getPaddingRight() {
+		return c_block.getPaddingRight();
+	}
+
+	@Override
+	public float getPaddingBottom() {
+		return c_block.getPaddingBottom();
+	}
+
+	/**
+	 * Status of the block on a context.
+	 */
+	private static class Cached {
+		BlockLayout	layout;
+		/**
+		 * null if the block doesn't fit a page
+		 */
+		PdfTemplate	template;
+	}
+}
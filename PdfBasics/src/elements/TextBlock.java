@@ -1,7 +1,9 @@
 package elements;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import com.itextpdf.text.Chunk;
 import com.itextpdf.text.Document;
@@ -20,37 +22,15 @@ public class TextBlock extends BlockElement {
 	private float							c_startY;
 	private float							c_width;
 	private float							c_height;
-	private Font							c_font;
 
-	private ColumnText				c_columnText;
 	/**
-	 * The number of the text lines written so far.
+	 * Status of the last drawing started by {@link #draw(DrawContext)}, used by
+	 * the methods that don't take the context as argument.
 	 */
-	private transient int			c_linesWritten;
-	/**
-	 * the height of the last block written. If the text block spawns across
-	 * multiple pages, c_lastHeight is the height of the last piece written.
-	 */
-	private transient float		c_lastHeight;
-	/**
-	 * total height (padding and border included) in points of the text written so
-	 * far. If the text spawns across multiple pages, this height is the sum of
-	 * all pieces of text.
-	 */
-	private transient float		c_realHeight;
-
-	/**
-	 * The real width of the text block, comprising padding and borders. The
-	 * property is calculated by the {@link #draw(DrawContext)} method, that takes
-	 * into account the {@link #isCanGrowX()} and {@link #getMaxWidth()}
-	 * properties and the container's width to calculate the correct total width.
-	 */
-	private transient float		c_realWidth;
-
-	private transient boolean	c_drawComplete;
-	private transient boolean	c_drawing;
+	private transient volatile DrawStatus	c_lastStatus;
 
 	private List<Element>			c_elems;
+	private boolean						c_consumeContent;
 
 	/**
 	 * Constructs a new text block.
@@ -74,121 +54,793 @@ public class TextBlock extends BlockElement {
 
 	public TextBlock() {
 		c_elems = new ArrayList<Element>();
+		c_lastStatus = new DrawStatus();
 	}
 
 	public void addElement(Element e) {
 		c_elems.add(e);
+		changed();
 	}
 
 	public void clearContent() {
 		c_elems.clear();
+		changed();
+	}
+
+	/**
+	 * @return true if the content is removed from the block when the drawing
+	 *         starts
+	 * @see #setConsumeContent(boolean)
+	 */
+	public boolean isConsumeContent() {
+		return c_consumeContent;
 	}
-	
+
+	/**
+	 * Set if the content is removed from the block when the drawing starts. The
+	 * text of a very long block is then released page by page, as soon as it's
+	 * written, instead of being kept by the block until the end; the block can
+	 * be drawn only once. A measure pass doesn't remove the content.
+	 * 
+	 * @param consumeContent
+	 *          true to remove the content when the drawing starts
+	 */
+	public void setConsumeContent(boolean consumeContent) {
+		c_consumeContent = consumeContent;
+	}
+
+	@Override
+	boolean isConsumingContent() {
+		return c_consumeContent;
+	}
+
+	/**
+	 * Draw the text block; the drawing status is kept by the context, so the same
+	 * block can be drawn concurrently on different contexts. The block must not
+	 * be modified while it's being drawn.
+	 */
 	@Override
 	public boolean draw(DrawContext context) throws DocumentException {
-		if (isDrawComplete()) {
+		DrawStatus st = startDraw(context);
+		PdfContentByte canvas = context.getWriter().getDirectContent();
+		long start = st.timed ? System.nanoTime() : 0;
+		int size = st.metrics != null ? canvas.getInternalBuffer().size() : 0;
+		int lines = st.drawing ? st.linesWritten : 0;
+		FragmentCache fragments = context.getFragmentCache();
+		if (!st.drawing && fragments != null && fragments.draw(this, st, context)) {
+			// the cache can use a drawing of its own to write the block
+			c_lastStatus = st;
+			if (st.timed) {
+				notifyDrawn(st, context, canvas, lines, size, start);
+			}
+			return true;
+		}
+		if (!st.drawing) {
+			begin(st, context, canvas);
+			st.drawComplete = drawFirst(st, context.getDocument());
+		} else {
+			st.drawComplete = redraw(st, context.getDocument());
+		}
+		if (st.timed) {
+			notifyDrawn(st, context, canvas, lines, size, start);
+		}
+		if (st.drawComplete) {
+			// the status can be kept by the context until the end of the document:
+			// release the text as soon as it's written
+			st.columnText = null;
+		}
+		return st.drawComplete;
+	}
+
+	/**
+	 * Calculate the layout of this text block without writing anything on the
+	 * document: the text is laid out with the same rules of
+	 * {@link #draw(DrawContext)}, starting from the current position and
+	 * continuing on the subsequent pages until all the text is placed.
+	 * <p>
+	 * The drawing status of the block is not modified.
+	 */
+	@Override
+	public BlockLayout measure(DrawContext context) throws DocumentException {
+		return measure(context, null);
+	}
+
+	/**
+	 * Measure the block and build the index of its pages, to draw a page
+	 * without drawing the ones before it (see {@link PaginationIndex}). The
+	 * index is valid as long as the block and its position are not modified.
+	 * 
+	 * @return the index, or null if the content of the block cannot be indexed
+	 */
+	public PaginationIndex index(DrawContext context) throws DocumentException {
+		String fingerprint = fingerprint(context);
+		if (fingerprint == null || !PaginationIndex.isAvailable())
+			return null;
+		List<int[]> positions = new ArrayList<int[]>();
+		BlockLayout layout = measure(context, positions);
+		return new PaginationIndex(fingerprint, layout, positions);
+	}
+
+	/**
+	 * Prepare the drawing of this block from a page of an index, as if the pages
+	 * before it had been drawn: the next call of
+	 * {@link #draw(DrawContext, BlockLayout)} with the layout of the index
+	 * writes that page, on the current page of the document. Only the text from
+	 * that page on is laid out.
+	 * 
+	 * @param page
+	 *          index of the page of the block, starting from 0
+	 * @throws IllegalArgumentException
+	 *           if the index has been built for another block, or for another
+	 *           position of the block
+	 */
+	public void seek(DrawContext context, PaginationIndex index, int page) {
+		BlockLayout layout = index.getLayout();
+		if (page < 0 || page >= layout.getPageCount())
+			throw new IndexOutOfBoundsException("Page " + page + " of "
+					+ layout.getPageCount());
+		if (!index.getFingerprint().equals(fingerprint(context)))
+			throw new IllegalArgumentException("The index describes another block");
+		resetDrawStatus(context);
+		if (page == 0)
+			return;
+		DrawStatus st = startDraw(context);
+		PdfContentByte canvas = context.getWriter().getDirectContent();
+		st.canvas = canvas;
+		st.fonts = context.getFontRegistry();
+		st.linesWritten = layout.getBreakLine(page);
+		st.realWidth = layout.getRealWidth();
+		st.page = page;
+		st.pages = page;
+		st.singleLine = false;
+		st.columnText = createColumntext(canvas, st.fonts, PaginationIndex
+				.getContent(c_elems, index.getElementIndex(page), index
+						.getCharOffset(page)));
+		st.drawing = true;
+	}
+
+	/**
+	 * @return a hash of the definition and the position of the block, or null
+	 *         if the content cannot be described
+	 */
+	private String fingerprint(DrawContext context) {
+		String desc = describe(context);
+		if (desc == null)
+			return null;
+		return FragmentCache.hash(desc + '\n' + c_startX + '/' + c_startY);
+	}
+
+	/**
+	 * @param positions
+	 *          if not null, receives the position of the text at the start of
+	 *          every page (see {@link PaginationIndex})
+	 */
+	private BlockLayout measure(DrawContext context, List<int[]> positions)
+			throws DocumentException {
+		Document d = context.getDocument();
+		DrawStatus st = new DrawStatus();
+		st.layout = new BlockLayout.Builder();
+		listen(st, context);
+		long start = st.metrics != null ? System.nanoTime() : 0;
+		begin(st, context, null);
+		if (positions != null) {
+			// the positions are read from the column text, that the cached line
+			// breaks would skip
+			st.breakCache = null;
+			st.breakKey = null;
+			positions.add(new int[2]);
+		}
+		boolean complete = drawFirst(st, d);
+		endPage(st);
+		while (!complete) {
+			if (positions != null)
+				positions.add(PaginationIndex.getPosition(st.columnText, c_elems
+						.size()));
+			int lines = st.linesWritten;
+			complete = redraw(st, d);
+			endPage(st);
+			if (!complete && st.linesWritten == lines) {
+				// not even a line fits on a new page: the text cannot be completed
+				break;
+			}
+		}
+		BlockLayout layout = st.layout.build(st.realWidth, complete);
+		if (st.metrics != null) {
+			st.metrics.measured(this, layout, System.nanoTime() - start);
+		}
+		return layout;
+	}
+
+	/**
+	 * Draw this text block following a layout previously calculated by
+	 * {@link #measure(DrawContext)}: the text is written in the columns recorded
+	 * by the measure pass, so the page breaks and the sizes are not calculated
+	 * again. The block must not be modified between the measure and the
+	 * drawing.
+	 */
+	@Override
+	public boolean draw(DrawContext context, BlockLayout layout)
+			throws DocumentException {
+		return draw(context, layout, context.getWriter().getDirectContent());
+	}
+
+	/**
+	 * Draw this text block following a layout, on a specific canvas.
+	 * 
+	 * @param canvas
+	 *          canvas to write on, used for the whole drawing
+	 * @see #draw(DrawContext, BlockLayout)
+	 */
+	boolean draw(DrawContext context, BlockLayout layout, PdfContentByte canvas)
+			throws DocumentException {
+		DrawStatus st = startDraw(context);
+		long start = st.timed ? System.nanoTime() : 0;
+		int size = st.metrics != null ? canvas.getInternalBuffer().size() : 0;
+		int lines = st.drawing ? st.linesWritten : 0;
+		if (!st.drawing) {
+			st.canvas = canvas;
+			st.fonts = context.getFontRegistry();
+			st.linesWritten = 0;
+			st.realWidth = layout.getRealWidth();
+			st.page = 0;
+			float[] cols = layout.getColumns(0);
+			// a layout of a single line in a single column is written directly
+			st.singleLine = layout.getPageCount() == 1
+					&& layout.getLineCount() == 1 && cols.length == 4
+					&& isSingleLine(st, cols[2] - cols[0])
+					&& cols[3] - cols[1] >= st.lineAscender - st.lineDescender;
+			st.columnText = st.singleLine ? null : createColumntext(canvas,
+					st.fonts);
+			st.drawing = true;
+		}
+		int page = st.page++;
+		st.pages = st.page;
+		float[] cols = layout.getColumns(page);
+		if (st.singleLine) {
+			writeSingleLine(st, cols[0], cols[3] - st.lineAscender);
+		} else {
+			ColumnText c = st.columnText;
+			for (int i = 0; i < cols.length; i += 4) {
+				c.setSimpleColumn(cols[i], cols[i + 1], cols[i + 2], cols[i + 3]);
+				c.setUseAscender(true);
+				go(st, false);
+			}
+		}
+		st.linesWritten += layout.getLinesOnPage(page);
+		st.realLower = layout.getPageLower(page);
+		st.realUpper = layout.getPageUpper(page);
+		if (layout.hasBorder(page)) {
+			strokeBorder(st.borders, st.state, canvas, c_startX, st.realLower,
+					st.realUpper, st.realWidth);
+		}
+		st.lastHeight = layout.getPageHeight(page);
+		st.realHeight = layout.getRealHeightAfter(page);
+		st.drawComplete = page >= layout.getPageCount() - 1;
+		if (st.timed) {
+			notifyDrawn(st, context, canvas, lines, size, start);
+		}
+		if (st.drawComplete) {
+			st.columnText = null;
+		}
+		return st.drawComplete;
+	}
+
+	/**
+	 * Get the drawing status of this block in the context, creating it if this is
+	 * the first drawing on the context.
+	 */
+	private DrawStatus startDraw(DrawContext context) {
+		DrawStatus st = (DrawStatus) context.getDrawStatus(this);
+		if (st == null) {
+			st = new DrawStatus();
+			context.setDrawStatus(this, st);
+		}
+		if (st.drawComplete) {
 			throw new IllegalStateException("No more contents to write");
 		}
-		if (!isDrawing()) {
-			createColumntext(context.getWriter());
-			c_linesWritten = 0;
-			c_realWidth = 0;
-			c_realHeight = 0;
-			if (isCanGrowX()) {
-				// in case of horizontal auto-width, adjust the width to contain the
-				// largest text line
-				if (getMaxWidth() <= 0) {
-					// max width not specified --> max width = document width
-					setMaxWidth(context.getDocumentAvailWidth());
+		listen(st, context);
+		st.borders = context.getBorderBatcher();
+		st.state = context.getGraphicsState();
+		c_lastStatus = st;
+		return st;
+	}
+
+	/**
+	 * Assign to the status the listeners of the context.
+	 */
+	private static void listen(DrawStatus st, DrawContext context) {
+		st.metrics = context.getMetrics();
+		st.tracer = context.getTracer();
+		st.timed = st.metrics != null || st.tracer != null;
+	}
+
+	/**
+	 * Send the data of the piece of text just drawn to the listeners of the
+	 * context: the time is read once for both of them.
+	 * 
+	 * @param lines
+	 *          lines written before the current page
+	 * @param size
+	 *          size of the canvas before the current page
+	 * @param start
+	 *          time of start of the drawing of the page
+	 */
+	private void notifyDrawn(DrawStatus st, DrawContext context,
+			PdfContentByte canvas, int lines, int size, long start) {
+		long nanos = System.nanoTime() - start;
+		if (st.metrics != null) {
+			st.metrics.drawn(this, context.getWriter().getPageNumber(),
+					st.linesWritten - lines, canvas.getInternalBuffer().size() - size,
+					nanos);
+		}
+		if (st.tracer != null) {
+			trace(st, DrawEvent.Type.DRAW, st.linesWritten - lines, st.lastHeight,
+					nanos);
+		}
+	}
+
+	/**
+	 * Send an event to the tracer.
+	 * 
+	 * @param lines
+	 *          lines written by the step
+	 * @param height
+	 *          height of the piece written by the step
+	 * @param nanos
+	 *          duration of the step
+	 */
+	private void trace(DrawStatus st, DrawEvent.Type type, int lines,
+			float height, long nanos) {
+		st.tracer.event(new DrawEvent(type, this, st.layout != null,
+				st.realWidth, height, getGrowType(), lines, st.pages, nanos));
+	}
+
+	/**
+	 * Layout the current column of text, notifying the metrics listener.
+	 */
+	private int go(DrawStatus st, boolean simulate) throws DocumentException {
+		ColumnText c = st.columnText;
+		if (st.metrics == null)
+			return c.go(simulate);
+		long start = System.nanoTime();
+		int status = c.go(simulate);
+		st.metrics.columnText(this, c.getLinesWritten(), simulate,
+				System.nanoTime() - start);
+		return status;
+	}
+
+	/**
+	 * Initialize the status for a new drawing.
+	 * 
+	 * @param st
+	 *          status to initialize
+	 * @param context
+	 *          current drawing context
+	 * @param canvas
+	 *          canvas to write on, or null to measure the text only
+	 */
+	private void begin(DrawStatus st, DrawContext context, PdfContentByte canvas) {
+		FontRegistry fonts = context.getFontRegistry();
+		st.canvas = canvas;
+		st.fonts = fonts;
+		if (canvas == null && context.getLineBreakCache() != null) {
+			st.breakCache = context.getLineBreakCache();
+			st.breakKey = LineBreakCache.contentKey(c_elems, getFont());
+			if (st.breakKey != null)
+				st.breakKey = getGrowType() + st.breakKey;
+		}
+		st.linesWritten = 0;
+		st.pages = 0;
+		st.realWidth = 0;
+		st.realHeight = 0;
+		if (isCanGrowX()) {
+			// in case of horizontal auto-width, adjust the width to contain the
+			// largest text line
+			float maxWidth = getMaxWidth();
+			if (maxWidth <= 0) {
+				// max width not specified --> max width = document width
+				maxWidth = context.getAvailWidth();
+			}
+			float maxTextWidth = calculateTextMaxWidth(fonts) + getBorderLeftSize()
+					+ getBorderRightSize() + getPaddingLeft() + getPaddingRight();
+			// add 1 pt to adjust possible roundings
+			maxTextWidth += 1;
+			if (maxTextWidth > maxWidth)
+				st.realWidth = maxWidth;
+			else
+				st.realWidth = maxTextWidth;
+		} else {
+			st.realWidth = getWidth();
+		}
+		st.singleLine = canvas != null
+				&& isSingleLine(st, st.realWidth - getPaddingLeft()
+						- getPaddingRight() - getBorderLeftSize() - getBorderRightSize())
+				&& fitsFirstPage(st, context.getDocument());
+		st.columnText = st.singleLine ? null : createColumntext(canvas, fonts);
+		st.drawing = true;
+	}
+
+	/**
+	 * Check if the content is a single line of text that can be written
+	 * directly, without laying it out with a ColumnText: a single phrase or chunk
+	 * without attributes, with fonts that iText doesn't need to simulate, no
+	 * line breaks nor spaces at the ends, and narrower than the column. The
+	 * ascender and the descender of the line are stored in the status.
+	 * 
+	 * @param width
+	 *          width of the column of text
+	 */
+	private boolean isSingleLine(DrawStatus st, float width) {
+		if (c_elems.size() != 1 || getFont() == null)
+			return false;
+		Element e = c_elems.get(0);
+		Phrase p = null;
+		if (e.getClass() == Phrase.class) {
+			p = (Phrase) e;
+			if (p.getHyphenation() != null || p.isEmpty())
+				return false;
+		} else if (e.getClass() != Chunk.class) {
+			return false;
+		}
+		int n = p != null ? p.size() : 1;
+		float textWidth = 0;
+		st.lineAscender = 0;
+		st.lineDescender = 0;
+		for (int i = 0; i < n; i++) {
+			Element pe = p != null ? p.get(i) : e;
+			if (pe.getClass() != Chunk.class)
+				return false;
+			Chunk c = (Chunk) pe;
+			String text = c.getContent();
+			if (c.hasAttributes() || text.length() == 0)
+				return false;
+			Font f = getLineFont(c, p);
+			if (f == null)
+				return false;
+			BaseFont bf = st.fonts.getBaseFont(f);
+			for (int j = 0; j < text.length(); j++) {
+				char ch = text.charAt(j);
+				if (ch < ' ' || ch == '\u00ad' || ch > '~' && !bf.charExists(ch))
+					return false;
+			}
+			if (i == 0 && text.charAt(0) == ' ' || i == n - 1
+					&& text.charAt(text.length() - 1) == ' ')
+				return false;
+			textWidth += st.fonts.getMetrics().getStringWidth(text, bf, f.getSize());
+			st.lineAscender = Math.max(st.lineAscender, bf.getFontDescriptor(
+					BaseFont.ASCENT, f.getSize()));
+			st.lineDescender = Math.min(st.lineDescender, bf.getFontDescriptor(
+					BaseFont.DESCENT, f.getSize()));
+		}
+		// keep a margin for the roundings of ColumnText
+		return textWidth + 0.01f <= width;
+	}
+
+	/**
+	 * @return the font of a chunk of a single line, resolved as ColumnText
+	 *         does, or null if the font is only partially defined or needs a
+	 *         simulated style
+	 */
+	private Font getLineFont(Chunk c, Phrase p) {
+		Font f = c.getFont();
+		if (isUndefined(f))
+			f = p != null ? p.getFont() : null;
+		if (isUndefined(f))
+			f = getFont();
+		if (f.getSize() <= 0)
+			return null;
+		int style = f.getStyle() == Font.UNDEFINED ? Font.NORMAL : f.getStyle();
+		if (f.getBaseFont() != null) {
+			// bold and italic are simulated on an explicit base font
+			return style == Font.NORMAL ? f : null;
+		}
+		if (f.getFamily() == FontFamily.UNDEFINED
+				|| f.getFamily() == FontFamily.SYMBOL
+				|| f.getFamily() == FontFamily.ZAPFDINGBATS)
+			return null;
+		// underline and strike through are drawn by ColumnText
+		return (style & ~Font.BOLDITALIC) == 0 ? f : null;
+	}
+
+	private static boolean isUndefined(Font f) {
+		return f == null || f.getBaseFont() == null
+				&& f.getFamily() == FontFamily.UNDEFINED
+				&& f.getSize() == Font.UNDEFINED && f.getStyle() == Font.UNDEFINED
+				&& f.getColor() == null;
+	}
+
+	/**
+	 * Check if the single line fits the first page of the block, so the text is
+	 * completed with the same rules of {@link #drawText}: the column must be at
+	 * least as high as the line and the leading, and a block that can grow must
+	 * be above the bottom margin.
+	 */
+	private boolean fitsFirstPage(DrawStatus st, Document d) {
+		float yLower = c_startY - getHeight() + getPaddingBottom()
+				+ getBorderBottomSize();
+		float height = getMaxHeight() > 0 ? getMaxHeight() : c_height
+				- (getPaddingBottom() + getBorderBottomSize() + getPaddingTop() + getBorderTopSize());
+		float yUpper = yLower + height;
+		float leading = getFont().getSize() * 1.5f;
+		if (height < leading || height < st.lineAscender - st.lineDescender)
+			return false;
+		if (getGrowType() == GrowDirection.NONE)
+			return true;
+		return yUpper >= d.bottomMargin()
+				&& yUpper - Math.max(yLower, d.bottomMargin()) >= leading;
+	}
+
+	/**
+	 * Write the single line of text directly on the canvas, in a single text
+	 * section, with the same operators of ColumnText.
+	 * 
+	 * @param x
+	 *          left position of the line
+	 * @param y
+	 *          position of the baseline
+	 */
+	private void writeSingleLine(DrawStatus st, float x, float y) {
+		PdfContentByte cb = st.canvas;
+		GraphicsState gs = st.state != null && st.state.isTracking(cb) ? st.state
+				: null;
+		Element e = c_elems.get(0);
+		Phrase p = e instanceof Phrase ? (Phrase) e : null;
+		int n = p != null ? p.size() : 1;
+		boolean colored = false;
+		if (gs != null)
+			gs.sync();
+		cb.beginText();
+		cb.setTextMatrix(x, y);
+		for (int i = 0; i < n; i++) {
+			Chunk c = (Chunk) (p != null ? p.get(i) : e);
+			Font f = getLineFont(c, p);
+			if (gs != null) {
+				// font and color only if they are not the current ones
+				gs.mark();
+				gs.setFontAndSize(st.fonts.getBaseFont(f), f.getSize());
+				if (f.getColor() != null) {
+					gs.setColorFill(f.getColor());
+					colored = true;
+				} else if (colored) {
+					gs.setColorFill(null);
+					colored = false;
 				}
-				float maxTextWidth = calculateTextMaxWidth() + getBorderLeftSize()
-						+ getBorderRightSize() + getPaddingLeft() + getPaddingRight();
-				// add 1 pt to adjust possible roundings
-				maxTextWidth += 1;
-				if (maxTextWidth > getMaxWidth())
-					c_realWidth = getMaxWidth();
-				else
-					c_realWidth = maxTextWidth;
+				gs.sync();
 			} else {
-				c_realWidth = getWidth();
+				cb.setFontAndSize(st.fonts.getBaseFont(f), f.getSize());
+				if (f.getColor() != null) {
+					cb.setColorFill(f.getColor());
+					colored = true;
+				} else if (colored) {
+					cb.resetGrayFill();
+					colored = false;
+				}
 			}
-			c_drawing = true;
-
-			float xLeft = c_startX + getBorderLeftSize() + getPaddingLeft();
-			float yLower = c_startY - getHeight() + getPaddingBottom()
-					+ getBorderBottomSize();
-			float height = c_height
-					- (getPaddingBottom() + getBorderBottomSize() + getPaddingTop() + getBorderTopSize());
-			c_drawComplete = drawText(c_columnText, context.getDocument(), xLeft,
-					yLower, height);
-
-			c_realLower -= (getPaddingBottom() + getBorderBottomSize());
-			drawBorder(c_columnText, c_startX, c_realLower, c_realUpper);
-			c_lastHeight = c_realUpper - c_realLower;
-			c_realHeight += c_lastHeight;
-		} else {
-			c_drawComplete = redraw(context.getWriter(), context.getDocument());
+			cb.showText(c.getContent());
 		}
-		return c_drawComplete;
+		if (colored) {
+			if (gs != null) {
+				gs.mark();
+				gs.setColorFill(null);
+				gs.sync();
+			} else {
+				cb.resetGrayFill();
+			}
+		}
+		cb.endText();
+		if (gs != null)
+			gs.mark();
+		if (c_consumeContent) {
+			// the text is written: the block doesn't need to keep it
+			c_elems.clear();
+		}
+	}
+
+	/**
+	 * Used internally to write the text on the first page.
+	 * 
+	 * @param st
+	 *          status of the drawing
+	 * @param d
+	 *          destination document
+	 * @return true if the drawing has finished
+	 * @throws DocumentException
+	 */
+	private boolean drawFirst(DrawStatus st, Document d)
+			throws DocumentException {
+		st.pages++;
+		float xLeft = c_startX + getBorderLeftSize() + getPaddingLeft();
+		float yLower = c_startY - getHeight() + getPaddingBottom()
+				+ getBorderBottomSize();
+		float height = c_height
+				- (getPaddingBottom() + getBorderBottomSize() + getPaddingTop() + getBorderTopSize());
+		boolean complete = drawText(st, d, xLeft, yLower, height);
+
+		st.realLower -= (getPaddingBottom() + getBorderBottomSize());
+		drawBorder(st, c_startX, st.realLower, st.realUpper);
+		st.lastHeight = st.realUpper - st.realLower;
+		st.realHeight += st.lastHeight;
+		return complete;
 	}
 
 	/**
 	 * Used internally to write the text on pages after the first.
 	 * 
-	 * @param w
-	 *          writer to use
+	 * @param st
+	 *          status of the drawing
 	 * @param d
 	 *          destination document
-	 * @return
+	 * @return true if the drawing has finished
 	 * @throws DocumentException
 	 */
-	private boolean redraw(PdfWriter w, Document d) throws DocumentException {
+	private boolean redraw(DrawStatus st, Document d) throws DocumentException {
+		st.pages++;
+		if (st.tracer == null)
+			return redrawPage(st, d);
+		long start = System.nanoTime();
+		int lines = st.linesWritten;
+		boolean complete = redrawPage(st, d);
+		trace(st, DrawEvent.Type.REDRAW, st.linesWritten - lines, st.lastHeight,
+				System.nanoTime() - start);
+		return complete;
+	}
+
+	private boolean redrawPage(DrawStatus st, Document d)
+			throws DocumentException {
 		if (!isCanGrowY()) {
 			// cannot grow vertically: space for only the remaining height
-			float heightLeft = getHeight() - getLastHeight();
+			float heightLeft = getHeight() - st.lastHeight;
 			if (heightLeft > 0) {
-				drawText(c_columnText, d, c_startX, d.top() - heightLeft, heightLeft);
+				drawText(st, d, c_startX, d.top() - heightLeft, heightLeft);
 			}
 			return true;
 		} else {
-			// write a line of text at a time, until all the text has been written
-			float yStart = d.top() - getPaddingTop() - getBorderTopSize();
-			c_columnText.setUseAscender(true);
+			// fill all the height of the page in a single layout: from the top
+			// margin to the bottom margin, leaving room for padding and borders
+			float yUpper = d.top() - getPaddingTop() - getBorderTopSize();
+			float yLower = d.bottom() + getPaddingBottom() + getBorderBottomSize();
 			float xLeft = c_startX + getBorderLeftSize() + getPaddingLeft();
 			boolean bDrawFinished = false;
-			while (!bDrawFinished) {
-				if (yStart - c_columnText.getLeading() < d.bottom())
-					// no space left even for a single row
-					break;
-				yStart -= c_columnText.getLeading();
-				bDrawFinished = drawText(c_columnText, d, xLeft, yStart,
-						c_columnText.getLeading());
+			if (yUpper - yLower >= st.columnText.getLeading()) {
+				bDrawFinished = drawText(st, d, xLeft, yLower, yUpper - yLower);
+			} else {
+				// no space left even for a single row
+				st.realUpper = d.top();
+				st.realLower = yUpper;
 			}
-			c_realLower -= (getPaddingBottom() + getBorderBottomSize());
-			drawBorder(c_columnText, c_startX, c_realLower, c_realUpper);
-			c_lastHeight = c_realUpper - c_realLower;
-			c_realHeight += c_lastHeight;
+			st.realLower -= (getPaddingBottom() + getBorderBottomSize());
+			drawBorder(st, c_startX, st.realLower, st.realUpper);
+			st.lastHeight = st.realUpper - st.realLower;
+			st.realHeight += st.lastHeight;
 			return bDrawFinished;
 		}
 	}
 
+	/**
+	 * Record the status at the end of a page, during a measure pass.
+	 */
+	private void endPage(DrawStatus st) {
+		st.layout.endPage(st.linesWritten, st.lastHeight, st.realHeight,
+				st.realLower, st.realUpper);
+	}
+
+	/**
+	 * Describe everything that affects the content written by this block, but
+	 * not its position: the blocks with the same description write the same
+	 * content. It's the key of the {@link FragmentCache}.
+	 * 
+	 * @return the description, or null if the content cannot be described
+	 */
+	String describe(DrawContext context) {
+		String content = LineBreakCache.contentKey(c_elems, getFont(), true);
+		if (content == null)
+			return null;
+		StringBuilder sb = new StringBuilder(content);
+		sb.append('\n').append(getGrowType());
+		sb.append('/').append(c_width).append('/').append(c_height);
+		sb.append('/').append(getMaxWidth()).append('/').append(getMaxHeight());
+		sb.append('/').append(getPaddingLeft()).append('/').append(getPaddingTop());
+		sb.append('/').append(getPaddingRight()).append('/').append(
+				getPaddingBottom());
+		// the sides are drawn with their own color and style
+		Border border = getBorder();
+		Border[] sides = { getBorderLeft(), getBorderTop(), getBorderRight(),
+				getBorderBottom() };
+		for (Border side : sides)
+			sb.append('/').append(side != null ? side : border);
+		if (isCanGrowX())
+			sb.append('/').append(context.getAvailWidth());
+		return sb.toString();
+	}
+
+	@Override
+	void collectText(FontRegistry fonts, Map<BaseFont, StringBuilder> text) {
+		BaseFont def = fonts.getResolvedFont(getFont()).getBaseFont();
+		for (int i = 0; i < c_elems.size(); i++)
+			collectText(c_elems.get(i), def, fonts, text);
+	}
+
+	/**
+	 * Collect the characters of an element by the fonts that can write them,
+	 * resolved as {@link #createColumntext} and iText do: a chunk without a base
+	 * font can be written with the default font or with the font calculated from
+	 * its own definition.
+	 * 
+	 * @param def
+	 *          default font of the element
+	 */
+	static void collectText(Element e, BaseFont def, FontRegistry fonts,
+			Map<BaseFont, StringBuilder> text) {
+		for (Chunk c : e.getChunks()) {
+			Font f = c.getFont();
+			appendText(text, def, c);
+			if (f == null)
+				continue;
+			if (f.getBaseFont() != null) {
+				appendText(text, f.getBaseFont(), c);
+			} else {
+				appendText(text, f.getCalculatedBaseFont(false), c);
+				appendText(text, fonts.getBaseFont(f), c);
+			}
+		}
+	}
+
+	private static void appendText(Map<BaseFont, StringBuilder> text,
+			BaseFont bf, Chunk c) {
+		StringBuilder sb = text.get(bf);
+		if (sb == null) {
+			sb = new StringBuilder();
+			text.put(bf, sb);
+		}
+		String content = c.getContent();
+		for (int i = 0; i < content.length(); i++) {
+			char ch = content.charAt(i);
+			if (sb.indexOf(String.valueOf(ch)) < 0)
+				sb.append(ch);
+		}
+	}
+
 	/**
 	 * Create the columnText object and initialize its properties
 	 * 
-	 * @param w
-	 *          writer to use
-	 */
-	private void createColumntext(PdfWriter w) {
-		PdfContentByte cb = w.getDirectContent();
-		c_columnText = new ColumnText(cb);
-		for (int i = 0; i < c_elems.size(); i++) {
-			Element e = c_elems.get(i);
+	 * @param cb
+	 *          canvas to write on; if null, the column can be used only to
+	 *          simulate the writing
+	 * @param fonts
+	 *          registry used to resolve the default font
+	 */
+	private ColumnText createColumntext(PdfContentByte cb, FontRegistry fonts) {
+		return createColumntext(cb, fonts, c_elems);
+	}
+
+	/**
+	 * Create the columnText object for a part of the content.
+	 * 
+	 * @param elems
+	 *          the content to write
+	 */
+	private ColumnText createColumntext(PdfContentByte cb, FontRegistry fonts,
+			List<Element> elems) {
+		ColumnText columnText = new ColumnText(cb);
+		Font font = null;
+		for (int i = 0; i < elems.size(); i++) {
+			Element e = elems.get(i);
+			// the content can be shared by concurrent drawings: the default font is
+			// assigned to a copy of the element, never to the element itself
 			if (e instanceof Phrase) {
 				Phrase p = (Phrase) e;
 				if (p.getFont() == null
 						|| p.getFont().getFamilyname().equals(FontFamily.UNDEFINED)
 						|| p.getFont().getSize() <= 0) {
-					p.setFont(c_font);
+					if (font == null)
+						font = fonts.getResolvedFont(getFont());
+					Phrase copy = new Phrase(p);
+					copy.setFont(font);
+					if (!p.hasLeading()) {
+						// the copy fixes the leading of the old font
+						copy.setLeading(Float.NaN);
+					}
+					e = copy;
 				}
 			}
 			else if (e instanceof Chunk) {
@@ -196,64 +848,88 @@ public class TextBlock extends BlockElement {
 				if (c.getFont() == null
 						|| c.getFont().getFamilyname().equals(FontFamily.UNDEFINED)
 						|| c.getFont().getSize() <= 0) {
-					c.setFont(c_font);
+					if (font == null)
+						font = fonts.getResolvedFont(getFont());
+					c = new Chunk(c);
+					c.setFont(font);
+					e = c;
 				}
 			}
-			c_columnText.addElement(e);
+			columnText.addElement(e);
 		}
-		c_columnText.setLeading(c_font.getSize() * 1.5f);
-	}
-
-	private float getPhraseWidth(Phrase p) {
-		return getStringWidth(p.getContent(), p.getFont());
-	}
-
-	private float getChunkWidth(Chunk p) {
-		return getStringWidth(p.getContent(), p.getFont());
+		if (c_consumeContent && cb != null) {
+			// the column text keeps the elements until they are written: the block
+			// doesn't need to keep them too
+			c_elems.clear();
+		}
+		columnText.setLeading(getFont().getSize() * 1.5f);
+		return columnText;
 	}
 
-	private float getStringWidth(String s, Font f) {
+	private static float getStringWidth(String s, Font f, Font defaultFont,
+			FontRegistry fonts) {
 		if (f == null || f.getFamilyname().equals(FontFamily.UNDEFINED)
 				|| f.getSize() <= 0)
-			f = c_font;
+			f = defaultFont;
 
 		if (f == null)
 			return 0f;
 
-		float fontSize = f.getSize();
-		BaseFont bf = f.getCalculatedBaseFont(false);
+		BaseFont bf = fonts.getBaseFont(f);
+		return fonts.getMetrics().getStringWidth(s, bf, f.getSize());
+	}
 
-		String lines[] = s.split("\\n");
-		float maxWidth = 0;
-		for (String line : lines) {
-			float w = bf.getWidthPoint(line, fontSize);
-			System.out.println(">>> lunghezza '" + line + "' = " + w + ", fontSize="
-					+ fontSize + ", font=" + f.getFamilyname());
-			if (w > maxWidth)
-				maxWidth = w;
-		}
-		return maxWidth;
+	/**
+	 * Calculate the content's max width calculating the text line by line. The
+	 * widths are measured through the shared {@link FontRegistry}.
+	 *
+	 * @return the width in point of the largest line
+	 */
+	float calculateTextMaxWidth() {
+		return calculateTextMaxWidth(FontRegistry.getShared());
 	}
 
 	/**
 	 * Calculate the content's max width calculating the text line by line.
-	 * 
+	 *
+	 * @param fonts
+	 *          registry used to resolve and measure the fonts
 	 * @return the width in point of the largest line
 	 */
-	private float calculateTextMaxWidth() {
+	float calculateTextMaxWidth(FontRegistry fonts) {
 		float maxWidth = 0;
 		for (Element e : c_elems) {
-			float w = 0;
-			if (e instanceof Phrase)
-				w = getPhraseWidth((Phrase) e);
-			else if (e instanceof Chunk)
-				w = getChunkWidth((Chunk) e);
+			float w = calculateTextMaxWidth(e, getFont(), fonts);
 			if (w > maxWidth)
 				maxWidth = w;
 		}
 		return maxWidth;
 	}
 
+	/**
+	 * Calculate the max width of the lines of a single element, with the same
+	 * rules of the content of a block.
+	 *
+	 * @param e
+	 *          a phrase or a chunk; other elements have no width
+	 * @param defaultFont
+	 *          font of the block, used if the element has no font
+	 * @param fonts
+	 *          registry used to resolve and measure the fonts
+	 * @return the width in point of the largest line
+	 */
+	static float calculateTextMaxWidth(Element e, Font defaultFont,
+			FontRegistry fonts) {
+		if (e instanceof Phrase) {
+			Phrase p = (Phrase) e;
+			return getStringWidth(p.getContent(), p.getFont(), defaultFont, fonts);
+		} else if (e instanceof Chunk) {
+			Chunk c = (Chunk) e;
+			return getStringWidth(c.getContent(), c.getFont(), defaultFont, fonts);
+		}
+		return 0;
+	}
+
 	public boolean isCanGrowX() {
 		return (getGrowType() == GrowDirection.HORIZ || getGrowType() == GrowDirection.BOTH);
 	}
@@ -262,27 +938,15 @@ public class TextBlock extends BlockElement {
 		return (getGrowType() == GrowDirection.VERT || getGrowType() == GrowDirection.BOTH);
 	}
 
-	/**
-	 * contiene la posizione y del limite inferiore dell'ultimo blocco di testo
-	 * scritto. Tale posizione comprende bordi e padding. Se il blocco di testo 
-	 * su pi pagine,  la coordinata superiore dell'ultimo pezzo scritto.
-	 */
-	private float	c_realLower;
-	/**
-	 * contiene la posizione y del limite superiore dell'ultimo blocco di testo
-	 * scritto. Tale posizione comprende bordi e padding. Se il blocco di testo 
-	 * su pi pagine,  la coordinata superiore dell'ultimo pezzo scritto.
-	 */
-	private float	c_realUpper;
-
 	/**
 	 * Draw the buffered text on the pdf writer, using the columnText object
-	 * passed as the first argument. NOTE: the arguments regarding position and
+	 * of the drawing status. NOTE: the arguments regarding position and
 	 * size refers exactly to the text rectangle, that is <b>doesn't include</b>
 	 * padding and borders.
 	 * 
-	 * @param c
-	 *          ColumnText object used to write the text
+	 * @param st
+	 *          status of the drawing, with the ColumnText object used to write
+	 *          the text
 	 * @param d
 	 *          PDF Document on which the text is written
 	 * @param xStart
@@ -301,18 +965,30 @@ public class TextBlock extends BlockElement {
 	 *         used.
 	 * @throws DocumentException
 	 */
-	private boolean drawText(ColumnText c, Document d, float xStart,
+	private boolean drawText(DrawStatus st, Document d, float xStart,
+			float yStart, float height) throws DocumentException {
+		if (st.tracer == null)
+			return layoutText(st, d, xStart, yStart, height);
+		long start = System.nanoTime();
+		int lines = st.linesWritten;
+		boolean complete = layoutText(st, d, xStart, yStart, height);
+		trace(st, DrawEvent.Type.TEXT, st.linesWritten - lines, st.lastHeight,
+				System.nanoTime() - start);
+		return complete;
+	}
+
+	private boolean layoutText(DrawStatus st, Document d, float xStart,
 			float yStart, float height) throws DocumentException {
 
 		// FIXME controllare che esista l'altezza minima disponibile per scrivere
 		// almeno una riga
 
 		boolean endText = true;
-		c_lastHeight = 0;
+		st.lastHeight = 0;
 
 		// prepare the right X point: it limit the text on the right side
 		// hence doesn't include border/padding
-		float xRight = xStart + c_realWidth - getPaddingRight()
+		float xRight = xStart + st.realWidth - getPaddingRight()
 				- getBorderRightSize() - getPaddingLeft() - getBorderLeftSize();
 		// float mw = getMaxWidth() > 0 ? getMaxWidth() :
 		// d.getPageSize().getWidth();
@@ -327,27 +1003,80 @@ public class TextBlock extends BlockElement {
 		float remainingHeight = 0;
 		if (getMaxHeight() > 0)
 			// FIXME qui forse bisogna sottrarre padding e border
-			remainingHeight = getMaxHeight() - c_realHeight;
+			remainingHeight = getMaxHeight() - st.realHeight;
 		else
 			remainingHeight = height;
 
 		float yUpper = yStart + remainingHeight;
 		// c_realUpper include border and padding
-		c_realUpper = yUpper + getPaddingTop() + getBorderTopSize();
+		st.realUpper = yUpper + getPaddingTop() + getBorderTopSize();
+
+		if (st.singleLine) {
+			// the line is placed like ColumnText does, with the ascender of the
+			// fonts below the top of the column
+			float baseline = yUpper - st.lineAscender;
+			writeSingleLine(st, xStart, baseline);
+			st.linesWritten++;
+			st.lastHeight = getFont().getSize() * 1.5f;
+			st.realLower = baseline + st.lineDescender;
+			return true;
+		}
+
+		ColumnText c = st.columnText;
+		// a measure pass starting from the whole text can reuse the columns of the
+		// same text, already laid out from a column of the same size
+		String breakKey = st.breakKey;
+		st.breakKey = null;
+		float[] breaks = null;
+		int breakCount = 0;
+		float yTop = yUpper;
+		int linesBefore = st.linesWritten;
+		if (breakKey != null) {
+			LineBreakCache.Breaks b = st.breakCache.get(breakKey, xRight - xStart,
+					remainingHeight, c.getLeading(), yTop - Math.max(d.bottomMargin(), 0));
+			if (b != null) {
+				float[] cols = b.getColumns();
+				for (int i = 0; i < cols.length; i += 2) {
+					st.layout.addColumn(xStart, yTop - cols[i], xRight, yTop
+							- cols[i + 1]);
+				}
+				st.linesWritten += b.getLines();
+				st.lastHeight = b.getLines() * c.getLeading();
+				st.realLower = yTop - b.getDepth();
+				return true;
+			}
+			breaks = new float[8];
+		}
 
 		// FIXME need to save columntext status across drawText calls to safely stop
 		// writing text
 		int status = ColumnText.START_COLUMN;
 		while (ColumnText.hasMoreText(status)) {
-			c_realLower = yLower - getPaddingBottom() - getBorderBottomSize();
+			st.realLower = yLower - getPaddingBottom() - getBorderBottomSize();
 			c.setSimpleColumn(xStart, yLower, xRight, yUpper);
 			c.setUseAscender(true);
-			status = c.go();
-			c_linesWritten += c.getLinesWritten();
+			if (st.layout != null) {
+				st.layout.addColumn(xStart, yLower, xRight, yUpper);
+				if (breaks != null) {
+					if (breakCount == breaks.length)
+						breaks = Arrays.copyOf(breaks, breakCount * 2);
+					breaks[breakCount++] = yTop - yLower;
+					breaks[breakCount++] = yTop - yUpper;
+				}
+				status = go(st, true);
+			} else {
+				status = go(st, false);
+			}
+			st.linesWritten += c.getLinesWritten();
+			if (c.getLinesWritten() == 0 && ColumnText.hasMoreText(status)) {
+				// the column cannot contain even the next line
+				endText = false;
+				break;
+			}
 			// c_realWidth = Math.max(c_realWidth, c.getFilledWidth() + getPadding() *
 			// 2
 			// + getBorder().getSize() * 2);
-			c_lastHeight += c.getLinesWritten() * c.getLeading();
+			st.lastHeight += c.getLinesWritten() * c.getLeading();
 			// float fw = c.getFilledWidth();
 			// if (fw > c_width)
 			// System.out
@@ -365,11 +1094,12 @@ public class TextBlock extends BlockElement {
 				// written
 				float dist = c.getLinesWritten() * c.getLeading() - height;
 				yLower -= height + dist;
-				if (yLower < 0)
-					yLower = 0;
 				yUpper -= height + dist;
-				if (yUpper < 0)
-					yUpper = 0;
+				if (yLower < 0 || yUpper < 0) {
+					yLower = Math.max(yLower, 0);
+					yUpper = Math.max(yUpper, 0);
+					breaks = null;
+				}
 			}
 			if (yUpper < d.bottomMargin()) {
 				endText = false;
@@ -377,6 +1107,8 @@ public class TextBlock extends BlockElement {
 			}
 			if (yLower < d.bottomMargin()) {
 				yLower = d.bottomMargin();
+				// the columns depend on the position of the block on the page
+				breaks = null;
 			}
 			if (yUpper - yLower < c.getLeading()) {
 				// non ci sta nemmeno una riga
@@ -388,7 +1120,12 @@ public class TextBlock extends BlockElement {
 		// c.getDescender is negative: add the correct distance from the baseline of
 		// the last written row
 		yLower = c.getYLine() + c.getDescender();
-		c_realLower = yLower;
+		st.realLower = yLower;
+		if (breaks != null && endText && !ColumnText.hasMoreText(status)) {
+			st.breakCache.put(breakKey, xRight - xStart, remainingHeight, c
+					.getLeading(), new LineBreakCache.Breaks(st.linesWritten
+					- linesBefore, Arrays.copyOf(breaks, breakCount), yTop - yLower));
+		}
 		// yUpper = yLower + height + c_padding;
 		// c_realUpper = yLower;
 
@@ -398,39 +1135,22 @@ public class TextBlock extends BlockElement {
 		return endText;
 	}
 
-	private void drawBorder(ColumnText c, float x1, float y1, float y2) {
-		PdfContentByte cb = c.getCanvas();
-		float x2 = x1 + c_realWidth;
-		cb.setRGBColorStrokeF(0.3f, 0.17f, 0.5f);
-		if (getBorderLeftSize() > 0) {
-			float halfBorder = getBorderLeftSize() / 2;
-			// x1 -= c_padding;
-
-			cb.setLineWidth(getBorderLeftSize());
-			c.getCanvas().moveTo(x1 + halfBorder, y1);
-			c.getCanvas().lineTo(x1 + halfBorder, y2); // vertical left side
-		}
-		if (getBorderTopSize() > 0) {
-			float halfBorder = getBorderTopSize() / 2;
-			cb.setLineWidth(getBorderTopSize());
-			c.getCanvas().moveTo(x1, y2 - halfBorder);
-			c.getCanvas().lineTo(x2, y2 - halfBorder); // horizontal top side
-		}
-		if (getBorderRightSize() > 0) {
-			float halfBorder = getBorderRightSize() / 2;
-			cb.setLineWidth(getBorderRightSize());
-			c.getCanvas().moveTo(x2 - halfBorder, y2);
-			c.getCanvas().lineTo(x2 - halfBorder, y1); // vertical right side
+	/**
+	 * Draw the border around the piece of text just written; during a measure
+	 * pass nothing is written, only the border's height is taken into account.
+	 */
+	private void drawBorder(DrawStatus st, float x1, float y1, float y2) {
+		long start = st.tracer != null ? System.nanoTime() : 0;
+		if (st.layout != null) {
+			st.layout.setBorder();
+		} else {
+			strokeBorder(st.borders, st.state, st.canvas, x1, y1, y2,
+					st.realWidth);
 		}
-		if (getBorderBottomSize() > 0) {
-			float halfBorder = getBorderBottomSize() / 2;
-			cb.setLineWidth(getBorderBottomSize());
-			c.getCanvas().moveTo(x2, y1 + halfBorder);
-			c.getCanvas().lineTo(x1, y1 + halfBorder); // horizontal bottom side
+		st.lastHeight += getBorderTopSize() + getBorderBottomSize();
+		if (st.tracer != null) {
+			trace(st, DrawEvent.Type.BORDER, 0, y2 - y1, System.nanoTime() - start);
 		}
-
-		c.getCanvas().stroke();
-		c_lastHeight += getBorderTopSize() + getBorderBottomSize();
 	}
 
 	// private float getLastlineExtraspace(ColumnText c) {
@@ -451,7 +1171,7 @@ public class TextBlock extends BlockElement {
 	 * @return number of the lines written so far
 	 */
 	public int getLinesWritten() {
-		return c_linesWritten;
+		return c_lastStatus.linesWritten;
 	}
 
 	/**
@@ -465,7 +1185,7 @@ public class TextBlock extends BlockElement {
 	 * @return the real width of this text block once written
 	 */
 	public float getRealWidth() {
-		return c_realWidth;
+		return c_lastStatus.realWidth;
 	}
 
 	/**
@@ -484,21 +1204,25 @@ public class TextBlock extends BlockElement {
 	 * @see #getHeight()
 	 */
 	public float getLastHeight() {
-		return c_lastHeight;
+		return c_lastStatus.lastHeight;
 	}
 
+	@Override
 	public float getStartX() {
 		return c_startX;
 	}
 
+	@Override
 	public void setStartX(float x) {
 		c_startX = x;
 	}
 
+	@Override
 	public float getStartY() {
 		return c_startY;
 	}
 
+	@Override
 	public void setStartY(float y) {
 		c_startY = y;
 	}
@@ -509,6 +1233,7 @@ public class TextBlock extends BlockElement {
 
 	public void setWidth(float width) {
 		c_width = width;
+		changed();
 	}
 
 	/**
@@ -532,22 +1257,26 @@ public class TextBlock extends BlockElement {
 	 */
 	public void setHeight(float height) {
 		c_height = height;
+		changed();
 	}
 
+	/**
+	 * @return the font of the text, part of the {@link #getStyle() style}
+	 */
 	public Font getFont() {
-		return c_font;
+		return getStyle().getFont();
 	}
 
 	public void setFont(Font font) {
-		c_font = font;
+		setStyle(peekStyle().withFont(font));
 	}
 
 	public float getRealLower() {
-		return c_realLower;
+		return c_lastStatus.realLower;
 	}
 
 	public float getRealUpper() {
-		return c_realUpper;
+		return c_lastStatus.realUpper;
 	}
 
 	/**
@@ -565,16 +1294,36 @@ public class TextBlock extends BlockElement {
 	 * @see #getHeight()
 	 */
 	public float getRealHeight() {
-		return c_realHeight;
+		return c_lastStatus.realHeight;
 	}
 
 	public boolean isDrawComplete() {
-		return c_drawComplete;
+		return c_lastStatus.drawComplete;
 	}
 
+	/**
+	 * Reset the status of the last drawing, so the next call to
+	 * {@link #draw(DrawContext)} on the same context starts writing the text
+	 * from the beginning.
+	 */
 	public void resetDrawStatus() {
-		c_drawComplete = false;
-		c_drawing = false;
+		c_lastStatus.drawComplete = false;
+		c_lastStatus.drawing = false;
+	}
+
+	/**
+	 * Returns the status of the drawing of this block on a context. Unlike the
+	 * properties of the block that refer to the last drawing (like
+	 * {@link #getRealHeight()}), the status can be safely read while the block is
+	 * drawn on other contexts.
+	 * 
+	 * @param context
+	 *          context of the drawing
+	 * @return the drawing status, or null if the block has not been drawn on the
+	 *         context
+	 */
+	public DrawStatus getDrawStatus(DrawContext context) {
+		return (DrawStatus) context.getDrawStatus(this);
 	}
 
 	/**
@@ -583,6 +1332,165 @@ public class TextBlock extends BlockElement {
 	 *         and has not yet finished.
 	 */
 	public boolean isDrawing() {
-		return c_drawing;
+		return c_lastStatus.drawing;
+	}
+
+	/**
+	 * Status of a drawing of the text block on a {@link DrawContext}: it's
+	 * updated by every call to {@link TextBlock#draw(DrawContext)} until the text
+	 * has been completely written. A measure pass uses its own status, so it
+	 * doesn't interfere with a drawing in progress.
+	 */
+	public static final class DrawStatus {
+		ColumnText columnText;
+		/**
+		 * The number of the text lines written so far.
+		 */
+		int linesWritten;
+		/**
+		 * the height of the last block written. If the text block spawns across
+		 * multiple pages, lastHeight is the height of the last piece written.
+		 */
+		float lastHeight;
+		/**
+		 * total height (padding and border included) in points of the text written
+		 * so far. If the text spawns across multiple pages, this height is the sum
+		 * of all pieces of text.
+		 */
+		float realHeight;
+		/**
+		 * The real width of the text block, comprising padding and borders. The
+		 * property is calculated at the beginning of the drawing, taking into
+		 * account the {@link TextBlock#isCanGrowX()} and
+		 * {@link TextBlock#getMaxWidth()} properties and the container's width to
+		 * calculate the correct total width.
+		 */
+		float realWidth;
+		/**
+		 * contiene la posizione y del limite inferiore dell'ultimo blocco di testo
+		 * scritto. Tale posizione comprende bordi e padding. Se il blocco di testo 
+		 * su pi pagine,  la coordinata superiore dell'ultimo pezzo scritto.
+		 */
+		float realLower;
+		/**
+		 * contiene la posizione y del limite superiore dell'ultimo blocco di testo
+		 * scritto. Tale posizione comprende bordi e padding. Se il blocco di testo 
+		 * su pi pagine,  la coordinata superiore dell'ultimo pezzo scritto.
+		 */
+		float realUpper;
+		boolean drawComplete;
+		boolean drawing;
+		/**
+		 * Index of the next page to draw, when drawing from a {@link BlockLayout}.
+		 */
+		int page;
+		/**
+		 * Not null during a measure pass: collects the layout data.
+		 */
+		BlockLayout.Builder layout;
+		/**
+		 * Listener of the metrics of the context, null if disabled.
+		 */
+		DrawMetrics metrics;
+		/**
+		 * Tracer of the context, null if disabled.
+		 */
+		DrawTracer tracer;
+		/**
+		 * true if the context has a listener: the clock is read only if set.
+		 */
+		boolean timed;
+		/**
+		 * Collector of the borders of the context, null if disabled.
+		 */
+		BorderBatcher borders;
+		/**
+		 * Tracker of the graphics state of the context, null if disabled.
+		 */
+		GraphicsState state;
+		/**
+		 * Canvas to write on, null during a measure pass.
+		 */
+		PdfContentByte canvas;
+		/**
+		 * Registry of the fonts of the context.
+		 */
+		FontRegistry fonts;
+		/**
+		 * True if the text is a single line, written without a ColumnText.
+		 */
+		boolean singleLine;
+		/**
+		 * Ascender (positive) and descender (negative) of the single line.
+		 */
+		float lineAscender;
+		float lineDescender;
+		/**
+		 * Number of the pages spanned so far.
+		 */
+		int pages;
+		/**
+		 * Cache of the line breaks, during a measure pass.
+		 */
+		LineBreakCache breakCache;
+		/**
+		 * Description of the content, until the first piece of text is measured;
+		 * null if the content cannot be cached.
+		 */
+		String breakKey;
+
+		DrawStatus() {
+		}
+
+		/**
+		 * @return number of the lines written so far
+		 */
+		public int getLinesWritten() {
+			return linesWritten;
+		}
+
+		/**
+		 * @return number of the pages spanned so far
+		 */
+		public int getPages() {
+			return pages;
+		}
+
+		/**
+		 * @return the height of the block rendered on the last written page
+		 */
+		public float getLastHeight() {
+			return lastHeight;
+		}
+
+		/**
+		 * @return the height of the whole text block rendered so far
+		 */
+		public float getRealHeight() {
+			return realHeight;
+		}
+
+		/**
+		 * @return the real width of the text block
+		 */
+		public float getRealWidth() {
+			return realWidth;
+		}
+
+		public float getRealLower() {
+			return realLower;
+		}
+
+		public float getRealUpper() {
+			return realUpper;
+		}
+
+		public boolean isDrawComplete() {
+			return drawComplete;
+		}
+
+		public boolean isDrawing() {
+			return drawing;
+		}
 	}
 }
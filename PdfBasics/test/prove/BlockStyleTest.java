@@ -0,0 +1,91 @@
+package prove;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+
+import elements.BlockStyle;
+import elements.Border;
+import elements.TextBlock;
+
+public class BlockStyleTest {
+
+	@Test
+	public void testSharedStyles() {
+		try {
+			Font font = new Font(FontFamily.HELVETICA, 10);
+			Border border = new Border(0.8f, new BaseColor(200, 200, 200));
+			TextBlock[] blocks = new TextBlock[1000];
+			for (int i = 0; i < blocks.length; i++) {
+				blocks[i] = new TextBlock(36, 800, 200, 20);
+				blocks[i].setFont(font);
+				blocks[i].setBorder(border);
+				blocks[i].setPadding(2);
+			}
+			// same border, font and paddings: a single style
+			for (TextBlock b : blocks) {
+				Assert.assertSame(blocks[0].getStyle(), b.getStyle());
+				Assert.assertSame(border, b.getBorder());
+			}
+			Assert.assertTrue(blocks[0].getStyle().isInterned());
+			Assert.assertSame(blocks[0].getStyle(), BlockStyle.create(border, 2,
+					font));
+			// another instance of the border is another style
+			Assert.assertNotSame(blocks[0].getStyle(), BlockStyle.create(new Border(
+					0.8f, new BaseColor(200, 200, 200)), 2, font));
+
+			// a setter changes only its block
+			blocks[1].setPaddingLeft(5);
+			Assert.assertEquals(5, blocks[1].getPaddingLeft(), 0);
+			Assert.assertEquals(2, blocks[1].getPaddingRight(), 0);
+			Assert.assertEquals(2, blocks[0].getPaddingLeft(), 0);
+			Assert.assertNotSame(blocks[0].getStyle(), blocks[1].getStyle());
+			blocks[1].setPaddingLeft(2);
+			Assert.assertSame(blocks[0].getStyle(), blocks[1].getStyle());
+
+			// another instance of the font is another style
+			blocks[2].setFont(new Font(FontFamily.HELVETICA, 10));
+			Assert.assertNotSame(blocks[0].getStyle(), blocks[2].getStyle());
+			Assert.assertSame(font, blocks[0].getFont());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testSharedBorders() {
+		try {
+			Border border = new Border(1, BaseColor.BLACK);
+			TextBlock block = new TextBlock(36, 800, 200, 20);
+			TextBlock other = new TextBlock(36, 700, 200, 20);
+			block.setBorder(border);
+			other.setBorder(border);
+			Assert.assertSame(block.getStyle(), other.getStyle());
+			// the block keeps the border assigned: its changes are seen by all
+			// the blocks using it
+			border.setSize(3);
+			Assert.assertSame(border, block.getBorder());
+			Assert.assertEquals(3, block.getBorderSize(), 0);
+			Assert.assertEquals(3, other.getBorderSize(), 0);
+			block.getBorder().setSize(2);
+			Assert.assertEquals(2, block.getBorderLeftSize(), 0);
+			Assert.assertEquals(2, other.getBorderLeftSize(), 0);
+
+			// a setter changes only its block
+			block.setBorderLeft(new Border(4, BaseColor.RED));
+			Assert.assertEquals(4, block.getBorderLeftSize(), 0);
+			Assert.assertEquals(2, block.getBorderRightSize(), 0);
+			Assert.assertEquals(2, other.getBorderLeftSize(), 0);
+			block.setBorder(null);
+			Assert.assertEquals(0, block.getBorderSize(), 0);
+			Assert.assertEquals(2, other.getBorderSize(), 0);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+}
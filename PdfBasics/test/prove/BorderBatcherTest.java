@@ -0,0 +1,178 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfReader;
+
+import elements.BorderBatcher;
+import elements.Border;
+import elements.BufferOutputStream;
+import elements.DrawContext;
+import elements.TextBlock;
+
+public class BorderBatcherTest {
+
+	private static final int	ROWS		= 5;
+	private static final int	COLUMNS	= 5;
+
+	@Test
+	public void testGrid() {
+		try {
+			String plain = writeGrid(false, null);
+			String batched = writeGrid(true, null);
+			// one path with the lines of the whole grid, shared edges merged
+			Assert.assertEquals(1, count(batched, "S\n"));
+			Assert.assertTrue(batched.length() < plain.length());
+			Assert.assertFalse(batched.contains(" d\n"));
+			Assert.assertEquals(1, count(batched, " w\n"));
+			Assert.assertTrue(plain.contains("0.50196 0.50196 0.50196 RG"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testStyles() {
+		try {
+			Border dashed = new Border(1, BaseColor.RED);
+			dashed.setStyle(Border.Style.dashed);
+			String batched = writeGrid(true, dashed);
+			// a path for every style; the dash is set and then reset for the solid
+			// border
+			Assert.assertEquals(2, count(batched, "S\n"));
+			Assert.assertEquals(2, count(batched, " d\n"));
+			Assert.assertTrue(batched.contains("1 0 0 RG"));
+			String plain = writeGrid(false, dashed);
+			Assert.assertEquals(1, count(plain, " d\n"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testToggle() {
+		try {
+			BufferOutputStream out = new BufferOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			dc.setBatchBorders(true);
+			BorderBatcher batcher = dc.getBorderBatcher();
+			Border b = new Border(1, BaseColor.BLACK);
+			batcher.add(b, 10, 10, 50, 10);
+			// disabling writes the borders collected
+			dc.setBatchBorders(false);
+			Assert.assertNull(dc.getBorderBatcher());
+			Assert.assertEquals(1, batcher.getPaths());
+			// the same batcher, registered once, is enabled again
+			for (int i = 0; i < 1000; i++) {
+				dc.setBatchBorders(true);
+				Assert.assertSame(batcher, dc.getBorderBatcher());
+				dc.setBatchBorders(false);
+			}
+			dc.setBatchBorders(true);
+			batcher.add(b, 10, 20, 50, 20);
+			dc.newPage();
+			// written once at the end of the page
+			Assert.assertEquals(2, batcher.getPaths());
+			doc.close();
+			out.release();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		try {
+			BufferOutputStream out = new BufferOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			dc.setBatchBorders(true);
+			BorderBatcher batcher = dc.getBorderBatcher();
+			Border b = new Border(1, BaseColor.BLACK);
+			batcher.add(b, 10, 10, 50, 10);
+			batcher.add(b, 50, 10, 90, 10);
+			batcher.add(b, 30, 10, 40, 10);
+			batcher.add(b, 100, 10, 120, 10);
+			batcher.add(b, 10, 10, 10, 50);
+			batcher.add(b, 10, 60, 10, 50);
+			batcher.flush();
+			Assert.assertEquals(6, batcher.getSegmentsAdded());
+			Assert.assertEquals(3, batcher.getSegmentsWritten());
+			Assert.assertEquals(1, batcher.getPaths());
+			// nothing left for the end of the page
+			batcher.flush();
+			Assert.assertEquals(1, batcher.getPaths());
+			dc.getWriter().setPageEmpty(false);
+			doc.close();
+			out.release();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	/**
+	 * Write a grid of bordered cells, the adjacent ones sharing the borders,
+	 * and return the content of the page.
+	 * 
+	 * @param special
+	 *          border of the first cell, or null
+	 */
+	private String writeGrid(boolean batch, Border special) throws Exception {
+		BufferOutputStream out = new BufferOutputStream();
+		Document doc = new Document();
+		DrawContext dc = DrawContext.open(doc, out);
+		dc.setBatchBorders(batch);
+		Border border = new Border(0.5f, BaseColor.GRAY);
+		float y = doc.top();
+		for (int r = 0; r < ROWS; r++) {
+			float lower = 0;
+			for (int c = 0; c < COLUMNS; c++) {
+				TextBlock cell = new TextBlock(doc.left() + c * 99.5f, y, 100, 22);
+				cell.setFont(new Font(FontFamily.HELVETICA, 10));
+				cell.setBorder(r == 0 && c == 0 && special != null ? special : border);
+				cell.setPadding(2);
+				cell.addElement(new Phrase(r + "," + c));
+				Assert.assertTrue(cell.draw(dc));
+				lower = cell.getRealLower();
+			}
+			// the next row overlaps the bottom border
+			y = lower + 0.5f;
+		}
+		if (batch) {
+			BorderBatcher batcher = dc.getBorderBatcher();
+			batcher.flush();
+			if (special == null) {
+				Assert.assertEquals(ROWS * COLUMNS * 4, batcher.getSegmentsAdded());
+				Assert.assertEquals(ROWS + 1 + COLUMNS + 1, batcher
+						.getSegmentsWritten());
+			}
+		}
+		doc.close();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out.writeTo(Channels.newChannel(bytes));
+		out.release();
+		return new String(new PdfReader(bytes.toByteArray()).getPageContent(1),
+				"ISO-8859-1");
+	}
+
+	private static int count(String s, String sub) {
+		int n = 0;
+		for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1))
+			n++;
+		return n;
+	}
+}
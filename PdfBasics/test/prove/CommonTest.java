@@ -1,7 +1,5 @@
 package prove;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.NumberFormat;
 
@@ -13,18 +11,26 @@ import com.itextpdf.text.pdf.BaseFont;
 import com.itextpdf.text.pdf.PdfContentByte;
 import com.itextpdf.text.pdf.PdfWriter;
 
+import elements.ChannelOutputStream;
+import elements.DrawContext;
+import elements.FontRegistry;
 import elements.TextBlock;
 
 public class CommonTest {
+	/**
+	 * Directory of the documents written by the tests, can be changed with the
+	 * system property "pdf.dir".
+	 */
+	protected static final String	PDF_DIR	= System.getProperty("pdf.dir",
+																						"c:/temp/pdf/");
+
 	protected PdfData createPdfDocument(String baseName)
-			throws DocumentException, FileNotFoundException {
+			throws DocumentException, IOException {
 		Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
-		FileOutputStream fos = new FileOutputStream("c:/temp/pdf/" + baseName
-				+ ".pdf");
-		PdfWriter w = PdfWriter.getInstance(doc, fos);
-		doc.open();
+		DrawContext dc = DrawContext.open(doc,
+				ChannelOutputStream.toFile(PDF_DIR + baseName + ".pdf"));
 
-		return new PdfData(doc, w);
+		return new PdfData(doc, dc.getWriter());
 	}
 
 	public class PdfData {
@@ -55,8 +61,8 @@ public class CommonTest {
 			cb.moveTo(posX, posY); // bottom
 			cb.lineTo(posX, posY + height); // top
 			cb.stroke();
-			BaseFont f = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252,
-					true);
+			BaseFont f = FontRegistry.getShared().getBaseFont(BaseFont.HELVETICA,
+					BaseFont.CP1252, true);
 			NumberFormat nf = NumberFormat.getNumberInstance();
 			nf.setMaximumFractionDigits(1);
 			cb.beginText();
@@ -90,8 +96,8 @@ public class CommonTest {
 			cb.moveTo(posX, posY); // left
 			cb.lineTo(posX + width, posY); // right
 			cb.stroke();
-			BaseFont f = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252,
-					true);
+			BaseFont f = FontRegistry.getShared().getBaseFont(BaseFont.HELVETICA,
+					BaseFont.CP1252, true);
 			NumberFormat nf = NumberFormat.getNumberInstance();
 			nf.setMaximumFractionDigits(1);
 			cb.beginText();
@@ -0,0 +1,135 @@
+package prove;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.BlockLayout;
+import elements.Border;
+import elements.ContainerBlock;
+import elements.ContainerBlock.Stacking;
+import elements.DrawContext;
+import elements.TextBlock;
+
+public class ContainerBlockTest extends CommonTest {
+
+	@Test
+	public void testIncrementalLayout() {
+		try {
+			PdfData pdf = createPdfDocument("provaContainer");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			ContainerBlock form = new ContainerBlock(doc.left(), doc.top(), Stacking.VERT);
+			form.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+			form.setPadding(4);
+			form.setSpacing(6);
+			TextBlock title = createBlock(300, "Modulo di richiesta");
+			form.add(title);
+			ContainerBlock row = new ContainerBlock(0, 0, Stacking.HORIZ);
+			row.setSpacing(10);
+			TextBlock name = createBlock(150, "Nome: Mario");
+			TextBlock surname = createBlock(150, "Cognome: Rossi");
+			row.add(name);
+			row.add(surname);
+			form.add(row);
+			TextBlock notes = createBlock(300, "Note:\nnessuna");
+			form.add(notes);
+
+			BlockLayout layout = form.measure(dc);
+			Assert.assertEquals(1, layout.getPageCount());
+			Assert.assertEquals(3, form.getChildMeasureCount());
+			Assert.assertEquals(2, row.getChildMeasureCount());
+			// the row is below the title, the cells side by side
+			Assert.assertTrue(row.getStartY() < title.getStartY());
+			Assert.assertEquals(name.getStartX() + 150 + 10, surname.getStartX(), 0.01f);
+
+			// nothing changed: no new measure, same layout
+			Assert.assertSame(layout, form.measure(dc));
+			Assert.assertEquals(3, form.getChildMeasureCount());
+
+			// a cell changes with the same height: only the cell and its row are
+			// measured again
+			surname.clearContent();
+			surname.addElement(new Phrase("Cognome: Bianchi"));
+			BlockLayout layout2 = form.measure(dc);
+			Assert.assertNotSame(layout, layout2);
+			Assert.assertEquals(4, form.getChildMeasureCount());
+			Assert.assertEquals(3, row.getChildMeasureCount());
+			Assert.assertEquals(layout.getRealHeight(), layout2.getRealHeight(), 0.01f);
+
+			// the title grows: all the following blocks move down
+			title.addElement(new Phrase("seconda riga"));
+			BlockLayout layout3 = form.measure(dc);
+			Assert.assertEquals(7, form.getChildMeasureCount());
+			Assert.assertEquals(5, row.getChildMeasureCount());
+			Assert.assertTrue(layout3.getRealHeight() > layout2.getRealHeight());
+
+			Assert.assertTrue(form.draw(dc, layout3));
+			Assert.assertEquals(6, layout3.getLineCount());
+
+			// a change of the border of a block is a change of the block
+			Border border = new Border(1, BaseColor.BLACK);
+			notes.setBorder(border);
+			form.measure(dc);
+			int measures = form.getChildMeasureCount();
+			border.setSize(3);
+			form.measure(dc);
+			Assert.assertEquals(measures + 1, form.getChildMeasureCount());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testMultiPage() {
+		try {
+			PdfData pdf = createPdfDocument("provaContainerPages");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			ContainerBlock box = new ContainerBlock(doc.left(), doc.top() - 100, Stacking.VERT);
+			box.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+			box.setPadding(2);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 100; i++)
+				sb.append("riga ").append(i).append('\n');
+			TextBlock first = createBlock(300, sb.toString());
+			box.add(first);
+			TextBlock second = createBlock(300, "dopo il testo lungo");
+			box.add(second);
+
+			BlockLayout layout = box.measure(dc);
+			Assert.assertEquals(3, layout.getPageCount());
+			int pages = 1;
+			while (!box.draw(dc)) {
+				doc.newPage();
+				pages++;
+			}
+			Assert.assertEquals(layout.getPageCount(), pages);
+			Assert.assertEquals(101, first.getLinesWritten() + second.getLinesWritten());
+			// the second block starts on the page where the first one ends
+			Assert.assertTrue(second.getStartY() < doc.top());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private TextBlock createBlock(float width, String text) {
+		TextBlock block = new TextBlock(0, 0, width, 15);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		block.addElement(new Phrase(text));
+		return block;
+	}
+}
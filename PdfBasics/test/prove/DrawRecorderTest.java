@@ -0,0 +1,146 @@
+package prove;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.DrawContext;
+import elements.DrawCounters;
+import elements.DrawEvent;
+import elements.DrawRecorder;
+import elements.TextBlock;
+
+public class DrawRecorderTest extends CommonTest {
+
+	@Test
+	public void testEvents() {
+		try {
+			PdfData pdf = createPdfDocument("provaDrawRecorder");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			DrawRecorder recorder = new DrawRecorder(1000, 0);
+			dc.setTracer(recorder);
+
+			TextBlock block = new TextBlock(doc.left(), doc.top(), 200, 15);
+			block.setFont(new Font(FontFamily.HELVETICA, 10));
+			block.setGrowType(GrowDirection.VERT);
+			for (int i = 0; i < 150; i++)
+				block.addElement(new Phrase("riga di prova numero " + i + "\n"));
+			int pages = 1;
+			while (!block.draw(dc)) {
+				doc.newPage();
+				pages++;
+			}
+			doc.close();
+			Assert.assertTrue(pages > 1);
+
+			int draws = 0, redraws = 0, borders = 0, lines = 0;
+			for (DrawEvent e : recorder.getEvents()) {
+				Assert.assertFalse(e.isMeasure());
+				Assert.assertEquals(200, e.getWidth(), 0.01f);
+				Assert.assertEquals(GrowDirection.VERT, e.getGrowType());
+				switch (e.getType()) {
+				case DRAW:
+					draws++;
+					Assert.assertEquals(draws, e.getPages());
+					break;
+				case REDRAW:
+					redraws++;
+					break;
+				case TEXT:
+					lines += e.getLines();
+					break;
+				case BORDER:
+					borders++;
+					break;
+				}
+			}
+			Assert.assertEquals(pages, draws);
+			Assert.assertEquals(pages - 1, redraws);
+			Assert.assertEquals(pages, borders);
+			Assert.assertEquals(block.getLinesWritten(), lines);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testWithMetrics() {
+		try {
+			PdfData pdf = createPdfDocument("provaDrawRecorderMetrics");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			DrawRecorder recorder = new DrawRecorder(1000, 0);
+			DrawCounters counters = new DrawCounters();
+			dc.setTracer(recorder);
+			dc.setMetrics(counters);
+
+			TextBlock block = new TextBlock(doc.left(), doc.top(), 200, 15);
+			block.setFont(new Font(FontFamily.HELVETICA, 10));
+			block.setGrowType(GrowDirection.VERT);
+			for (int i = 0; i < 150; i++)
+				block.addElement(new Phrase("riga di prova numero " + i + "\n"));
+			while (!block.draw(dc)) {
+				doc.newPage();
+			}
+			doc.close();
+
+			// both the listeners receive the same pieces, with the same times
+			int draws = 0, lines = 0;
+			long nanos = 0;
+			for (DrawEvent e : recorder.getEvents()) {
+				if (e.getType() == DrawEvent.Type.DRAW) {
+					draws++;
+					lines += e.getLines();
+					nanos += e.getNanos();
+				}
+			}
+			Assert.assertEquals(counters.getPagesSpanned(), draws);
+			Assert.assertEquals(counters.getLinesWritten(), lines);
+			Assert.assertEquals(counters.getRenderNanos(), nanos);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCapacity() {
+		try {
+			PdfData pdf = createPdfDocument("provaDrawRecorderCapacity");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			DrawRecorder recorder = new DrawRecorder(3, 0);
+			dc.setTracer(recorder);
+			TextBlock block = new TextBlock(doc.left(), doc.top(), 200, 15);
+			block.setFont(new Font(FontFamily.HELVETICA, 10));
+			block.addElement(new Phrase("testo"));
+			// the measure is traced too
+			block.measure(dc);
+			Assert.assertTrue(block.draw(dc));
+			doc.close();
+			// measure and drawing: text and border each, and the drawing
+			Assert.assertEquals(5, recorder.getCount());
+			List<DrawEvent> events = recorder.getEvents();
+			Assert.assertEquals(3, events.size());
+			Assert.assertEquals(DrawEvent.Type.DRAW, events.get(2).getType());
+			Assert.assertFalse(events.get(0).isMeasure());
+
+			// the short events are ignored
+			DrawRecorder slow = new DrawRecorder(3, Long.MAX_VALUE);
+			slow.event(events.get(0));
+			Assert.assertEquals(0, slow.getCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package prove;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.pdf.BaseFont;
+
+import elements.FontMetricsCache;
+
+public class FontMetricsCacheTest {
+
+	@Test
+	public void testWidths() {
+		try {
+			FontMetricsCache cache = new FontMetricsCache();
+			BaseFont helv = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252,
+					false);
+			BaseFont times = BaseFont.createFont(BaseFont.TIMES_ROMAN,
+					BaseFont.CP1252, false);
+
+			String s = "Tanto va la gatta al lardo";
+			Assert.assertEquals(helv.getWidthPoint(s, 18), cache.getStringWidth(s, helv, 18), 0.001f);
+			Assert.assertEquals(times.getWidthPoint(s, 11), cache.getStringWidth(s, times, 11), 0.001f);
+			Assert.assertEquals(2, cache.getMisses());
+			Assert.assertEquals(0, cache.getHits());
+
+			// multiple lines: the largest one is returned
+			String multi = "breve\nuna riga molto lunga\n";
+			Assert.assertEquals(helv.getWidthPoint("una riga molto lunga", 10),
+					cache.getStringWidth(multi, helv, 10), 0.001f);
+			Assert.assertEquals(2, cache.getMisses());
+			Assert.assertEquals(3, cache.getHits());
+			Assert.assertEquals(2, cache.getSize());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCollected() {
+		try {
+			FontMetricsCache cache = new FontMetricsCache();
+			BaseFont kept = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252,
+					false);
+			// a font not cached by iText, used only here
+			BaseFont font = BaseFont.createFont(BaseFont.COURIER, BaseFont.CP1252,
+					false, false, null, null);
+			cache.getStringWidth("usato una volta", font, 10);
+			cache.getStringWidth("sempre usato", kept, 10);
+			Assert.assertEquals(2, cache.getSize());
+
+			font = null;
+			for (int i = 0; i < 50 && cache.getSize() > 1; i++) {
+				System.gc();
+				Thread.sleep(20);
+			}
+			Assert.assertEquals(1, cache.getSize());
+			Assert.assertEquals(kept.getWidthPoint("ancora", 12), cache
+					.getStringWidth("ancora", kept, 12), 0.001f);
+
+			cache.evict(kept);
+			Assert.assertEquals(0, cache.getSize());
+			Assert.assertEquals(kept.getWidthPoint("ancora", 12), cache
+					.getStringWidth("ancora", kept, 12), 0.001f);
+			Assert.assertEquals(3, cache.getMisses());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package prove;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.pdf.BaseFont;
+
+import elements.FontRegistry;
+
+public class FontRegistryTest {
+
+	@Test
+	public void testResolve() {
+		try {
+			FontRegistry fonts = new FontRegistry(10);
+			Font timesBold = new Font(FontFamily.TIMES_ROMAN, 12, Font.BOLD);
+			BaseFont bf = fonts.getBaseFont(timesBold);
+			// same font resolved by iText
+			Assert.assertSame(timesBold.getCalculatedBaseFont(false), bf);
+			Assert.assertSame(bf, fonts.getBaseFont(new Font(FontFamily.TIMES_ROMAN, 8, Font.BOLD)));
+			Assert.assertEquals(1, fonts.getMisses());
+			Assert.assertEquals(1, fonts.getHits());
+
+			// the resolved font must not simulate the bold style
+			Font resolved = fonts.getResolvedFont(new Font(FontFamily.HELVETICA, 10, Font.BOLD | Font.UNDERLINE));
+			Assert.assertEquals(BaseFont.HELVETICA_BOLD, resolved.getBaseFont().getPostscriptFontName());
+			Assert.assertEquals(Font.UNDERLINE, resolved.getStyle());
+			Assert.assertEquals(10, resolved.getSize(), 0.001f);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		try {
+			FontRegistry fonts = new FontRegistry(2);
+			BaseFont helv = fonts.getBaseFont(BaseFont.HELVETICA, BaseFont.CP1252, false);
+			fonts.getMetrics().getStringWidth("abc", helv, 10);
+			fonts.getBaseFont(BaseFont.COURIER, BaseFont.CP1252, false);
+			// Helvetica is used again: Courier becomes the eldest
+			fonts.getBaseFont(BaseFont.HELVETICA, BaseFont.CP1252, false);
+			fonts.getBaseFont(BaseFont.TIMES_ROMAN, BaseFont.CP1252, false);
+			Assert.assertEquals(2, fonts.getSize());
+			Assert.assertEquals(1, fonts.getEvictions());
+			Assert.assertEquals(3, fonts.getMisses());
+
+			fonts.getBaseFont(BaseFont.HELVETICA, BaseFont.CP1252, false);
+			Assert.assertEquals(3, fonts.getMisses());
+			fonts.getBaseFont(BaseFont.COURIER, BaseFont.CP1252, false);
+			Assert.assertEquals(4, fonts.getMisses());
+			Assert.assertEquals(2, fonts.getEvictions());
+
+			// Times is evicted, Helvetica's metrics are still cached
+			Assert.assertEquals(1, fonts.getMetrics().getSize());
+			fonts.clear();
+			Assert.assertEquals(0, fonts.getSize());
+			Assert.assertEquals(0, fonts.getMetrics().getSize());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PRStream;
+import com.itextpdf.text.pdf.PdfObject;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import elements.BlockElement.GrowDirection;
+import elements.Border;
+import elements.BufferOutputStream;
+import elements.DrawContext;
+import elements.FragmentCache;
+import elements.TextBlock;
+
+public class FragmentCacheTest {
+
+	private static final String	TEXT			= "Ditta Rossi S.r.l. - Via Roma 1, 20100 Milano - P.IVA 01234567890";
+
+	/**
+	 * a font of the system, to embed
+	 */
+	private static final String	TTF_FONT	= "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf";
+
+	@Test
+	public void testSharedFragments() {
+		try {
+			FragmentCache cache = new FragmentCache(1024 * 1024);
+			TextBlock plain = createBlock(300);
+			byte[] first = writeDocument(null, plain);
+			TextBlock cached = createBlock(300);
+			byte[] second = writeDocument(cache, cached);
+			Assert.assertEquals(1, cache.getMisses());
+			Assert.assertEquals(9, cache.getHits());
+			Assert.assertEquals(plain.getLinesWritten(), cached.getLinesWritten());
+			Assert.assertEquals(plain.getRealHeight(), cached.getRealHeight(), 0.01f);
+			Assert.assertEquals(plain.getRealWidth(), cached.getRealWidth(), 0.01f);
+
+			// another document uses the same fragment
+			writeDocument(cache, createBlock(300));
+			Assert.assertEquals(1, cache.getMisses());
+			Assert.assertEquals(19, cache.getHits());
+			Assert.assertEquals(1, cache.getSize());
+
+			// the text is in the document, written once as a form
+			String text = PdfTextExtractor.getTextFromPage(new PdfReader(second), 1);
+			Assert.assertTrue(text.contains("Ditta Rossi"));
+			Assert.assertTrue(second.length < first.length);
+
+			// another width is another block
+			writeDocument(cache, createBlock(200));
+			Assert.assertEquals(2, cache.getMisses());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testEmbeddedFont() {
+		try {
+			Assume.assumeTrue(new File(TTF_FONT).exists());
+			Font font = new Font(BaseFont.createFont(TTF_FONT, BaseFont.IDENTITY_H,
+					BaseFont.EMBEDDED), 8);
+			FragmentCache cache = new FragmentCache(1024 * 1024);
+			byte[] plain = writeDocument(null, 40, createLongBlock(font, "Sede"),
+					createLongBlock(font, "Filiale"));
+			byte[] first = writeDocument(cache, 40, createLongBlock(font, "Sede"),
+					createLongBlock(font, "Filiale"));
+			// another document takes the blocks from the cache
+			byte[] second = writeDocument(cache, 40, createLongBlock(font, "Sede"),
+					createLongBlock(font, "Filiale"));
+			Assert.assertEquals(2, cache.getMisses());
+			Assert.assertEquals(78, cache.getHits());
+
+			// the blocks use the font of the document, embedded once
+			Assert.assertTrue(first.length < plain.length);
+			Assert.assertTrue(second.length < plain.length);
+			String text = PdfTextExtractor.getTextFromPage(new PdfReader(second), 1);
+			Assert.assertTrue(text.contains("Ditta Rossi"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		try {
+			FragmentCache cache = new FragmentCache(1);
+			writeDocument(cache, createBlock(300));
+			writeDocument(cache, createBlock(250));
+			// every fragment exceeds the maximum size: only the last one is kept
+			Assert.assertEquals(1, cache.getSize());
+			Assert.assertEquals(1, cache.getEvictions());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testBorders() {
+		try {
+			FragmentCache cache = new FragmentCache(1024 * 1024);
+			TextBlock red = createBlock(300);
+			red.setBorder(new Border(2, BaseColor.RED));
+			writeDocument(cache, red);
+			Assert.assertEquals(1, cache.getMisses());
+
+			// the same sizes with another color are another fragment
+			TextBlock blue = createBlock(300);
+			blue.setBorder(new Border(2, BaseColor.BLUE));
+			byte[] doc = writeDocument(cache, blue);
+			Assert.assertEquals(2, cache.getMisses());
+			String streams = getStreams(new PdfReader(doc));
+			Assert.assertTrue(streams.contains("0 0 1 RG"));
+			Assert.assertFalse(streams.contains("1 0 0 RG"));
+
+			// and another style
+			Border dotted = new Border(2, BaseColor.BLUE);
+			dotted.setStyle(Border.Style.dotted);
+			TextBlock other = createBlock(300);
+			other.setBorderLeft(dotted);
+			writeDocument(cache, other);
+			Assert.assertEquals(3, cache.getMisses());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	/**
+	 * @return the content of all the streams of a document
+	 */
+	private static String getStreams(PdfReader reader) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i < reader.getXrefSize(); i++) {
+			PdfObject obj = reader.getPdfObject(i);
+			if (obj != null && obj.isStream())
+				sb.append(new String(PdfReader.getStreamBytes((PRStream) obj),
+						"ISO-8859-1"));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Write a document with 10 copies of the block, one below the other.
+	 */
+	private byte[] writeDocument(FragmentCache cache, TextBlock block)
+			throws Exception {
+		return writeDocument(cache, 10, block);
+	}
+
+	/**
+	 * Write a document with copies of the blocks, one below the other, on as
+	 * many pages as needed: the blocks are written in turn.
+	 */
+	private byte[] writeDocument(FragmentCache cache, int copies,
+			TextBlock... blocks) throws Exception {
+		BufferOutputStream out = new BufferOutputStream();
+		Document doc = new Document();
+		DrawContext dc = DrawContext.open(doc, out);
+		dc.setFragmentCache(cache);
+		float y = doc.top();
+		for (int i = 0; i < copies; i++) {
+			TextBlock block = blocks[i % blocks.length];
+			if (y < doc.bottom() + 100) {
+				dc.newPage();
+				y = doc.top();
+			}
+			block.setStartY(y);
+			block.resetDrawStatus(dc);
+			Assert.assertTrue(block.draw(dc));
+			y = block.getRealLower() - 10;
+		}
+		doc.close();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out.writeTo(Channels.newChannel(bytes));
+		out.release();
+		return bytes.toByteArray();
+	}
+
+	private TextBlock createBlock(float width) {
+		return createBlock(width, new Font(FontFamily.HELVETICA, 10));
+	}
+
+	/**
+	 * A block of a few lines: the form of a single line costs more than the
+	 * line.
+	 */
+	private TextBlock createLongBlock(Font font, String title) {
+		TextBlock block = createBlock(300, font);
+		block.addElement(new Phrase(" " + title + ": " + TEXT + " " + TEXT));
+		return block;
+	}
+
+	private TextBlock createBlock(float width, Font font) {
+		TextBlock block = new TextBlock(36, 0, width, 40);
+		block.setFont(font);
+		block.setGrowType(GrowDirection.VERT);
+		block.setBorder(new Border(0.5f, BaseColor.GRAY));
+		block.setPadding(2);
+		block.addElement(new Phrase(TEXT));
+		return block;
+	}
+}
@@ -0,0 +1,190 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import elements.BlockElement.GrowDirection;
+import elements.Border;
+import elements.BufferOutputStream;
+import elements.DrawContext;
+import elements.GraphicsState;
+import elements.TextBlock;
+
+public class GraphicsStateTest {
+
+	@Test
+	public void testLabels() {
+		try {
+			byte[] plain = writeLabels(false, null);
+			GraphicsState[] state = new GraphicsState[1];
+			byte[] tracked = writeLabels(true, state);
+			PdfReader p = new PdfReader(plain);
+			PdfReader t = new PdfReader(tracked);
+			Assert.assertEquals(p.getNumberOfPages(), t.getNumberOfPages());
+			Assert.assertEquals(2, t.getNumberOfPages());
+			for (int i = 1; i <= 2; i++) {
+				Assert.assertEquals(PdfTextExtractor.getTextFromPage(p, i),
+						PdfTextExtractor.getTextFromPage(t, i));
+				String content = new String(t.getPageContent(i), "ISO-8859-1");
+				// font, line width and color are set once per page
+				Assert.assertEquals(1, count(content, " Tf"));
+				Assert.assertEquals(1, count(content, " w"));
+				Assert.assertEquals(1, count(content, " RG"));
+				// no state saved but the one of the writer, at the start
+				Assert.assertEquals(0, count(content, "\nq\n"));
+			}
+			Assert.assertEquals(2, state[0].getBytesSavedPerPage().size());
+			long saved = 0;
+			for (Long pageSaved : state[0].getBytesSavedPerPage()) {
+				Assert.assertTrue(pageSaved > 0);
+				saved += pageSaved;
+			}
+			Assert.assertEquals(saved, state[0].getBytesSaved());
+			int difference = p.getPageContent(1).length
+					- t.getPageContent(1).length;
+			// besides the operators omitted, there are no q and Q
+			Assert.assertTrue(difference > state[0].getBytesSavedPerPage().get(0));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testToggle() {
+		try {
+			BufferOutputStream out = new BufferOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			dc.setTrackGraphicsState(true);
+			GraphicsState state = dc.getGraphicsState();
+			// the same tracker, registered once, is enabled and disabled
+			for (int i = 0; i < 1000; i++) {
+				dc.setTrackGraphicsState(false);
+				Assert.assertNull(dc.getGraphicsState());
+				dc.setTrackGraphicsState(true);
+				Assert.assertSame(state, dc.getGraphicsState());
+			}
+			TextBlock block = new TextBlock(doc.left(), doc.top(), 200, 20);
+			block.setFont(new Font(FontFamily.HELVETICA, 10));
+			block.setBorder(new Border(1, BaseColor.RED));
+			block.addElement(new Phrase("testo"));
+			Assert.assertTrue(block.draw(dc));
+			dc.setTrackGraphicsState(false);
+			doc.close();
+			out.release();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testOtherWrites() {
+		try {
+			BufferOutputStream out = new BufferOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			dc.setTrackGraphicsState(true);
+			GraphicsState gs = dc.getGraphicsState();
+			PdfContentByte cb = dc.getWriter().getDirectContent();
+			gs.setLineWidth(2);
+			gs.setLineWidth(2);
+			Assert.assertEquals(1, gs.getOmittedCount());
+			// written by other code: the state is unknown
+			cb.setLineWidth(3);
+			gs.setLineWidth(2);
+			Assert.assertEquals(1, gs.getOmittedCount());
+			Assert.assertEquals(2, count(content(cb), "2 w"));
+
+			// the state saved is restored
+			gs.setColorStroke(BaseColor.RED);
+			gs.saveState();
+			gs.setColorStroke(BaseColor.BLUE);
+			gs.setLineDash(3, 2);
+			gs.restoreState();
+			gs.setColorStroke(BaseColor.RED);
+			gs.setLineWidth(2);
+			Assert.assertEquals(3, gs.getOmittedCount());
+			gs.setLineDash(0, 0);
+			Assert.assertEquals(1, count(content(cb), "[] 0 d"));
+
+			// a path written directly, declared to the tracker
+			gs.sync();
+			cb.moveTo(0, 0);
+			cb.lineTo(100, 0);
+			cb.stroke();
+			gs.mark();
+			gs.setColorStroke(BaseColor.RED);
+			Assert.assertEquals(4, gs.getOmittedCount());
+
+			// every page starts with the default state
+			dc.newPage();
+			gs.setColorStroke(BaseColor.RED);
+			Assert.assertEquals(4, gs.getOmittedCount());
+			Assert.assertEquals(1, gs.getBytesSavedPerPage().size());
+			Assert.assertEquals(gs.getBytesSaved(), gs.getBytesSavedPerPage().get(0)
+					.longValue());
+			doc.close();
+			out.release();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	/**
+	 * Write two pages of labels, one below the other.
+	 */
+	private byte[] writeLabels(boolean track, GraphicsState[] state)
+			throws Exception {
+		BufferOutputStream out = new BufferOutputStream();
+		Document doc = new Document();
+		DrawContext dc = DrawContext.open(doc, out);
+		dc.setTrackGraphicsState(track);
+		if (state != null)
+			state[0] = dc.getGraphicsState();
+		for (int page = 0; page < 2; page++) {
+			float y = doc.top();
+			for (int i = 0; i < 25; i++) {
+				TextBlock label = new TextBlock(36, y, 150, 22);
+				label.setFont(new Font(FontFamily.HELVETICA, 10));
+				label.setGrowType(GrowDirection.NONE);
+				label.setBorder(new Border(0.5f, BaseColor.GRAY));
+				label.setPadding(2);
+				label.addElement(new Phrase("Etichetta " + (page * 25 + i)));
+				Assert.assertTrue(label.draw(dc));
+				y -= 28;
+			}
+			dc.newPage();
+		}
+		doc.close();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out.writeTo(Channels.newChannel(bytes));
+		out.release();
+		return bytes.toByteArray();
+	}
+
+	private static String content(PdfContentByte cb) throws Exception {
+		return new String(cb.toPdf(null), "ISO-8859-1");
+	}
+
+	private static int count(String s, String op) {
+		int n = 0;
+		for (int i = s.indexOf(op); i >= 0; i = s.indexOf(op, i + 1))
+			n++;
+		return n;
+	}
+}
@@ -0,0 +1,102 @@
+package prove;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.BlockLayout;
+import elements.DrawContext;
+import elements.LineBreakCache;
+import elements.TextBlock;
+
+public class LineBreakCacheTest extends CommonTest {
+
+	@Test
+	public void testSameLayout() {
+		try {
+			PdfData pdf = createPdfDocument("provaLineBreaks");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			LineBreakCache cache = new LineBreakCache(16);
+			String text = "Via Giuseppe Garibaldi 24, 10122 Torino (TO) - consegna al piano";
+
+			BlockLayout plain = createBlock(100, text, doc).measure(dc);
+			dc.setLineBreakCache(cache);
+			BlockLayout first = createBlock(100, text, doc).measure(dc);
+			BlockLayout second = createBlock(100, text, doc).measure(dc);
+			Assert.assertEquals(1, cache.getMisses());
+			Assert.assertEquals(1, cache.getHits());
+			Assert.assertEquals(0.5, cache.getHitRate(), 0.001);
+			Assert.assertTrue(plain.getLineCount() > 1);
+			for (BlockLayout l : new BlockLayout[] { first, second }) {
+				Assert.assertEquals(plain.getLineCount(), l.getLineCount());
+				Assert.assertEquals(plain.getRealHeight(), l.getRealHeight(), 0.001f);
+			}
+
+			// another width breaks the lines elsewhere
+			createBlock(150, text, doc).measure(dc);
+			Assert.assertEquals(2, cache.getMisses());
+
+			// near the bottom of the page the text continues on the next one
+			TextBlock low = createBlock(100, text, doc);
+			low.setStartY(doc.bottom() + 20);
+			Assert.assertEquals(2, low.measure(dc).getPageCount());
+			Assert.assertEquals(3, cache.getMisses());
+
+			// the drawing from a cached layout writes all the text
+			TextBlock block = createBlock(100, text, doc);
+			Assert.assertTrue(block.draw(dc, block.measure(dc)));
+			Assert.assertEquals(plain.getLineCount(), block.getLinesWritten());
+			Assert.assertEquals(2, cache.getHits());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testNotCached() {
+		try {
+			PdfData pdf = createPdfDocument("provaLineBreaksNoCache");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			LineBreakCache cache = new LineBreakCache(1);
+			dc.setLineBreakCache(cache);
+
+			// paragraphs can have indentation and alignment: never cached
+			TextBlock block = createBlock(100, "testo", doc);
+			block.addElement(new Paragraph("paragrafo"));
+			block.measure(dc);
+			block.measure(dc);
+			Assert.assertEquals(0, cache.getHits() + cache.getMisses());
+
+			// the least recently used text is evicted
+			createBlock(100, "uno", doc).measure(dc);
+			createBlock(100, "due", doc).measure(dc);
+			createBlock(100, "uno", doc).measure(dc);
+			Assert.assertEquals(0, cache.getHits());
+			Assert.assertEquals(2, cache.getEvictions());
+			Assert.assertEquals(1, cache.getSize());
+			Assert.assertTrue(block.draw(dc));
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private TextBlock createBlock(float width, String text, Document doc) {
+		TextBlock block = new TextBlock(doc.left(), doc.top() - 50, width, 15);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		block.addElement(new Phrase(text));
+		return block;
+	}
+}
@@ -0,0 +1,232 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.BufferOutputStream;
+import elements.BufferPool;
+import elements.ChannelOutputStream;
+import elements.DrawContext;
+import elements.PipelinedOutputStream;
+import elements.TextBlock;
+
+public class OutputTest {
+
+	@Test
+	public void testChannel() {
+		try {
+			BufferPool pool = new BufferPool(1024, 4);
+			ByteArrayOutputStream dest = new ByteArrayOutputStream();
+			ChannelOutputStream out = new ChannelOutputStream(Channels.newChannel(dest), pool, false);
+			write(out);
+			Assert.assertEquals(dest.size(), out.getCount());
+			Assert.assertTrue(new String(dest.toByteArray(), 0, 5, "ISO-8859-1").equals("%PDF-"));
+			// the buffer is back in the pool
+			Assert.assertEquals(1, pool.getFreeCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testNonBlocking() {
+		try {
+			BufferPool pool = new BufferPool(1024, 4);
+			Pipe pipe = Pipe.open();
+			try {
+				pipe.sink().configureBlocking(false);
+				try {
+					new ChannelOutputStream(pipe.sink(), pool, false);
+					Assert.fail("the channel is non-blocking");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+				BufferOutputStream buffers = new BufferOutputStream(pool);
+				buffers.write(new byte[10]);
+				try {
+					buffers.writeTo(pipe.sink());
+					Assert.fail("the channel is non-blocking");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+				buffers.release();
+
+				// switched to non-blocking after the creation: the stream fails
+				// when the channel is full, instead of spinning
+				pipe.sink().configureBlocking(true);
+				ChannelOutputStream out = new ChannelOutputStream(pipe.sink(), pool,
+						false);
+				pipe.sink().configureBlocking(false);
+				try {
+					for (int i = 0; i < 10000; i++)
+						out.write(new byte[1024]);
+					Assert.fail("nobody reads the pipe");
+				} catch (IOException e) {
+					// expected
+				}
+				try {
+					out.close();
+				} catch (IOException e) {
+					// the bytes left can't be written either
+				}
+				// the buffer is back in the pool anyway
+				Assert.assertEquals(1, pool.getFreeCount());
+			} finally {
+				pipe.sink().close();
+				pipe.source().close();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testBuffers() {
+		try {
+			BufferPool pool = new BufferPool(1024, 100);
+			BufferOutputStream out = new BufferOutputStream(pool);
+			write(out);
+			Assert.assertTrue(out.getSize() > 1024);
+
+			ByteArrayOutputStream dest = new ByteArrayOutputStream();
+			out.writeTo(Channels.newChannel(dest));
+			Assert.assertEquals(out.getSize(), dest.size());
+			Assert.assertTrue(new String(dest.toByteArray(), 0, 5, "ISO-8859-1").equals("%PDF-"));
+
+			// can be sent again
+			ByteArrayOutputStream dest2 = new ByteArrayOutputStream();
+			out.writeTo(Channels.newChannel(dest2));
+			Assert.assertArrayEquals(dest.toByteArray(), dest2.toByteArray());
+
+			int buffers = (int) ((out.getSize() + 1023) / 1024);
+			out.release();
+			Assert.assertEquals(buffers, pool.getFreeCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testPipelined() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			BufferPool pool = new BufferPool(1024, 100);
+			ByteArrayOutputStream dest = new ByteArrayOutputStream();
+			final WritableByteChannel channel = Channels.newChannel(dest);
+			final Set<Thread> threads = Collections
+					.synchronizedSet(new HashSet<Thread>());
+			WritableByteChannel recorder = new WritableByteChannel() {
+				public int write(ByteBuffer src) throws IOException {
+					threads.add(Thread.currentThread());
+					return channel.write(src);
+				}
+
+				public boolean isOpen() {
+					return channel.isOpen();
+				}
+
+				public void close() throws IOException {
+					channel.close();
+				}
+			};
+			PipelinedOutputStream out = new PipelinedOutputStream(recorder, pool, 2,
+					executor, false);
+			write(out);
+			Assert.assertEquals(dest.size(), out.getCount());
+			Assert.assertTrue(dest.size() > 1024);
+			Assert.assertTrue(new String(dest.toByteArray(), 0, 5, "ISO-8859-1").equals("%PDF-"));
+			// written by the writer task only
+			Assert.assertEquals(1, threads.size());
+			Assert.assertFalse(threads.contains(Thread.currentThread()));
+			// all the buffers are back in the pool: at most the ones in the queue,
+			// the one being written and the one being filled
+			Assert.assertTrue(pool.getFreeCount() >= 1);
+			Assert.assertTrue(pool.getFreeCount() <= 2 + 2);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPipelinedFailure() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			BufferPool pool = new BufferPool(1024, 100);
+			WritableByteChannel broken = new WritableByteChannel() {
+				public int write(ByteBuffer src) throws IOException {
+					throw new IOException("broken");
+				}
+
+				public boolean isOpen() {
+					return true;
+				}
+
+				public void close() {
+				}
+			};
+			PipelinedOutputStream out = new PipelinedOutputStream(broken, pool, 2,
+					executor, false);
+			try {
+				write(out);
+				out.close();
+				Assert.fail("the channel fails");
+			} catch (Exception e) {
+				// expected: the error of the writer reaches the document thread
+			}
+			try {
+				out.write(0);
+				Assert.fail("the stream is closed");
+			} catch (IOException e) {
+				// expected
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void write(OutputStream out) throws DocumentException {
+		Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
+		DrawContext dc = DrawContext.open(doc, out);
+		TextBlock block = new TextBlock(doc.left(), doc.top(), 300, 40);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			sb.append("riga ").append(i).append('\n');
+		block.addElement(new Phrase(sb.toString()));
+		while (!block.draw(dc)) {
+			doc.newPage();
+		}
+		doc.close();
+	}
+}
@@ -0,0 +1,153 @@
+package prove;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.DrawContext;
+import elements.PageComposer;
+import elements.TableBlock;
+import elements.TextBlock;
+
+public class PageComposerTest extends CommonTest {
+
+	@Test
+	public void testFlow() {
+		try {
+			PdfData pdf = createPdfDocument("provaComposer");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			PageComposer pc = new PageComposer(dc);
+			pc.setSpacing(10);
+
+			TextBlock first = createBlock(doc, "primo blocco\nsu due righe");
+			pc.add(first);
+			Assert.assertEquals(doc.top(), first.getStartY(), 0.01f);
+			TextBlock second = createBlock(doc, "secondo blocco");
+			pc.add(second);
+			Assert.assertEquals(first.getRealLower() - 10, second.getStartY(), 0.01f);
+			TextBlock third = createBlock(doc, "terzo blocco");
+			pc.add(third, 30);
+			Assert.assertEquals(second.getRealLower() - 30, third.getStartY(), 0.01f);
+
+			// a block longer than a page continues on the next ones
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 120; i++)
+				sb.append("riga ").append(i).append('\n');
+			TextBlock longBlock = createBlock(doc, sb.toString());
+			pc.add(longBlock);
+			Assert.assertEquals(3, pc.getPageCount());
+			Assert.assertEquals(120, longBlock.getLinesWritten());
+			TextBlock after = createBlock(doc, "dopo il testo lungo");
+			pc.add(after);
+			Assert.assertEquals(longBlock.getRealLower() - 10, after.getStartY(), 0.01f);
+			Assert.assertEquals(pc.getY(), after.getRealLower(), 0.01f);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testKeepTogether() {
+		try {
+			PdfData pdf = createPdfDocument("provaComposerKeep");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			PageComposer pc = new PageComposer(dc);
+			pc.setKeepTogether(true);
+
+			int blocks = 0;
+			while (pc.getPageCount() == 1) {
+				pc.add(createBlock(doc, "blocco " + blocks + "\nriga 2\nriga 3\nriga 4"));
+				blocks++;
+			}
+			// the block that doesn't fit is written on the top of the next page
+			// without splitting it
+			Assert.assertTrue(blocks > 5);
+			TextBlock next = createBlock(doc, "a capo");
+			pc.add(next);
+			Assert.assertTrue(next.getStartY() < doc.top());
+			Assert.assertTrue(pc.getRemainingHeight() > 0);
+			Assert.assertEquals(2, pc.getPageCount());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testStatusReleased() {
+		try {
+			PdfData pdf = createPdfDocument("provaComposerStatus");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			dc.setMemoryBounded(true);
+			PageComposer pc = new PageComposer(dc);
+			int max = 0;
+			for (int i = 0; i < 5000; i++) {
+				pc.add(createBlock(doc, "blocco " + i + (i % 3 == 0 ? "\nriga" : "")));
+				max = Math.max(max, dc.getDrawStatusCount());
+			}
+			TableBlock table = new TableBlock(doc.left(), 0, 2);
+			for (int i = 0; i < 200; i++)
+				table.addRow(new Phrase("riga " + i), new Phrase(String.valueOf(i)));
+			pc.add(table);
+			max = Math.max(max, dc.getDrawStatusCount());
+			Assert.assertTrue(pc.getPageCount() > 50);
+			// the blocks written are not kept by the context
+			Assert.assertEquals(0, max);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testRightMargin() {
+		try {
+			PdfData pdf = createPdfDocument("provaComposerMargine");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			PageComposer pc = new PageComposer(dc);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 30; i++)
+				sb.append("parola ");
+			TextBlock block = createBlock(doc, sb.toString());
+			block.setStartX(doc.left() + 300);
+			block.setGrowType(GrowDirection.BOTH);
+			pc.add(block);
+			// limited by the right margin, without changing the block
+			Assert.assertEquals(doc.right() - block.getStartX(), block
+					.getRealWidth(), 0.01f);
+			Assert.assertEquals(0, block.getMaxWidth(), 0.01f);
+			Assert.assertEquals(dc.getDocumentAvailWidth(), dc.getAvailWidth(),
+					0.01f);
+
+			// the same block measured out of the composer takes the width of the
+			// document
+			Assert.assertTrue(block.measure(dc).getRealWidth() > doc.right()
+					- block.getStartX());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private TextBlock createBlock(Document doc, String text) {
+		TextBlock block = new TextBlock(doc.left(), 0, 200, 15);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		block.addElement(new Phrase(text));
+		return block;
+	}
+}
@@ -0,0 +1,189 @@
+package prove;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfReader;
+
+import elements.BlockElement.GrowDirection;
+import elements.BlockLayout;
+import elements.DrawContext;
+import elements.DrawCounters;
+import elements.LineBreakCache;
+import elements.PaginationIndex;
+import elements.TextBlock;
+
+public class PaginationIndexTest {
+
+	@Test
+	public void testSamePages() {
+		try {
+			List<String> pages = writeAll(createBlock());
+			Assert.assertTrue(pages.size() > 5);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			PaginationIndex index = createBlock().index(dc);
+			// only measured: nothing has been written
+			dc.getWriter().setPageEmpty(false);
+			doc.close();
+			Assert.assertEquals(pages.size(), index.getPageCount());
+			Assert.assertEquals(0, index.getElementIndex(0));
+			Assert.assertEquals(0, index.getCharOffset(0));
+
+			// the index is saved and read back
+			ByteArrayOutputStream saved = new ByteArrayOutputStream();
+			index.writeTo(saved);
+			PaginationIndex read = PaginationIndex.readFrom(new ByteArrayInputStream(
+					saved.toByteArray()));
+			Assert.assertEquals(index.getPageCount(), read.getPageCount());
+
+			for (int page = 0; page < pages.size(); page++) {
+				DrawCounters counters = new DrawCounters();
+				Assert.assertEquals("page " + page, pages.get(page), writePage(
+						createBlock(), index, page, counters));
+				Assert.assertEquals("page " + page, pages.get(page), writePage(
+						createBlock(), read, page, null));
+				// only the lines of the page are written
+				Assert.assertEquals(index.getLayout().getLinesOnPage(page), counters
+						.getLinesWritten());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testLineBreakCache() {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			PaginationIndex plain = createBlock().index(dc);
+			dc.setLineBreakCache(new LineBreakCache(100));
+			// the breaks are not taken from the cache, and not stored
+			PaginationIndex index = createBlock().index(dc);
+			Assert.assertNotNull(index);
+			Assert.assertEquals(0, dc.getLineBreakCache().getSize());
+			Assert.assertEquals(plain.getPageCount(), index.getPageCount());
+			for (int page = 0; page < index.getPageCount(); page++) {
+				Assert.assertEquals(plain.getElementIndex(page), index
+						.getElementIndex(page));
+				Assert.assertEquals(plain.getCharOffset(page), index
+						.getCharOffset(page));
+			}
+			dc.getWriter().setPageEmpty(false);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testOtherBlock() {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			PaginationIndex index = createBlock().index(dc);
+			TextBlock moved = createBlock();
+			moved.setStartY(doc.top() - 100);
+			try {
+				moved.seek(dc, index, 1);
+				Assert.fail("the block has been moved");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+
+			// content that cannot be indexed
+			TextBlock other = createBlock();
+			Phrase p = new Phrase();
+			p.add(new Chunk("link").setAnchor("http://www.example.com"));
+			other.addElement(p);
+			Assert.assertNull(other.index(dc));
+			dc.getWriter().setPageEmpty(false);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	/**
+	 * Write the whole block and return the content of every page.
+	 */
+	private List<String> writeAll(TextBlock block) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Document doc = new Document();
+		DrawContext dc = DrawContext.open(doc, out);
+		BlockLayout layout = block.measure(dc);
+		while (!block.draw(dc, layout)) {
+			dc.newPage();
+		}
+		doc.close();
+		PdfReader reader = new PdfReader(out.toByteArray());
+		List<String> pages = new ArrayList<String>();
+		for (int i = 1; i <= reader.getNumberOfPages(); i++)
+			pages.add(content(reader, i));
+		return pages;
+	}
+
+	/**
+	 * Write a single page of the block, seeking it with the index.
+	 */
+	private String writePage(TextBlock block, PaginationIndex index, int page,
+			DrawCounters counters) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Document doc = new Document();
+		DrawContext dc = DrawContext.open(doc, out);
+		dc.setMetrics(counters);
+		block.seek(dc, index, page);
+		boolean complete = block.draw(dc, index.getLayout());
+		Assert.assertEquals(page == index.getPageCount() - 1, complete);
+		doc.close();
+		return content(new PdfReader(out.toByteArray()), 1);
+	}
+
+	/**
+	 * @return content of a page, without the names of the fonts (they depend
+	 *         on the order the fonts are used in the document)
+	 */
+	private static String content(PdfReader reader, int page) throws Exception {
+		return new String(reader.getPageContent(page), "ISO-8859-1").replaceAll(
+				"/F\\d+ ", "/F ");
+	}
+
+	/**
+	 * A block of many paragraphs, with different fonts.
+	 */
+	private TextBlock createBlock() {
+		TextBlock block = new TextBlock(36, 0, 300, 30);
+		block.setStartY(new Document().top());
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		block.setPadding(2);
+		Font bold = new Font(FontFamily.TIMES_ROMAN, 11, Font.BOLD);
+		for (int i = 0; i < 60; i++) {
+			Phrase p = new Phrase();
+			p.add(new Chunk("Articolo " + i + ". ", bold));
+			for (int j = 0; j < 8 + i % 5; j++)
+				p.add(new Chunk("Il testo del paragrafo continua su righe diverse, "));
+			p.add(new Chunk("fine.\n"));
+			block.addElement(p);
+		}
+		return block;
+	}
+}
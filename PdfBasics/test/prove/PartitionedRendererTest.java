@@ -0,0 +1,244 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfObject;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+
+import elements.BlockElement;
+import elements.BlockElement.GrowDirection;
+import elements.DrawContext;
+import elements.Drawable;
+import elements.PageComposer;
+import elements.PartitionedRenderer;
+import elements.RenderJob;
+import elements.TableBlock;
+import elements.TemplateBlock;
+import elements.TextBlock;
+
+public class PartitionedRendererTest {
+
+	/**
+	 * a font of the system, to embed
+	 */
+	private static final String	TTF_FONT	= "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf";
+
+	@Test
+	public void testSamePages() {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Drawable> elements = createElements();
+			ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+			Document doc = new Document();
+			PageComposer composer = new PageComposer(DrawContext.open(doc,
+					sequential));
+			composer.setSpacing(6);
+			for (Drawable e : elements)
+				composer.add((BlockElement) e);
+			doc.close();
+
+			ByteArrayOutputStream merged = new ByteArrayOutputStream();
+			PartitionedRenderer renderer = new PartitionedRenderer(executor);
+			renderer.setPagesPerPart(2);
+			RenderJob parallel = renderer.render(createJob(merged, elements));
+			Assert.assertTrue(parallel.getPartCount() > 1);
+
+			PdfReader s = new PdfReader(sequential.toByteArray());
+			PdfReader m = new PdfReader(merged.toByteArray());
+			Assert.assertTrue(s.getNumberOfPages() > 5);
+			Assert.assertEquals(s.getNumberOfPages(), m.getNumberOfPages());
+			Assert.assertEquals(s.getNumberOfPages(), parallel.getPageCount());
+			for (int i = 1; i <= s.getNumberOfPages(); i++) {
+				Assert.assertEquals("page " + i, PdfTextExtractor.getTextFromPage(s, i),
+						PdfTextExtractor.getTextFromPage(m, i));
+			}
+			// the font of all the parts is written once
+			Assert.assertEquals(1, countFonts(m));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSequential() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Drawable> elements = new ArrayList<Drawable>();
+			elements.add(createBlock("Intestazione", 1));
+			TextBlock label = new TextBlock(36, 700, 100, 20);
+			label.setFont(new Font(FontFamily.HELVETICA, 10));
+			label.addElement(new Phrase("Etichetta"));
+			elements.add(new TemplateBlock(label));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			PartitionedRenderer renderer = new PartitionedRenderer(executor);
+			renderer.setPagesPerPart(1);
+			RenderJob job = renderer.render(createJob(out, elements));
+			// an element that is not a block: written in a single part
+			Assert.assertEquals(1, job.getPartCount());
+			Assert.assertEquals(1, new PdfReader(out.toByteArray())
+					.getNumberOfPages());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testConsumeContent() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+			Document doc = new Document();
+			PageComposer composer = new PageComposer(DrawContext.open(doc,
+					sequential));
+			for (Drawable e : createConsumed())
+				composer.add((BlockElement) e);
+			doc.close();
+
+			ByteArrayOutputStream merged = new ByteArrayOutputStream();
+			PartitionedRenderer renderer = new PartitionedRenderer(executor);
+			renderer.setPagesPerPart(3);
+			renderer.render(createJob(merged, createConsumed()));
+
+			PdfReader s = new PdfReader(sequential.toByteArray());
+			PdfReader m = new PdfReader(merged.toByteArray());
+			Assert.assertTrue(s.getNumberOfPages() > 3);
+			Assert.assertEquals(s.getNumberOfPages(), m.getNumberOfPages());
+			for (int i = 1; i <= s.getNumberOfPages(); i++) {
+				Assert.assertEquals("page " + i, PdfTextExtractor.getTextFromPage(s, i),
+						PdfTextExtractor.getTextFromPage(m, i));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testEmbeddedFont() {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			Assume.assumeTrue(new File(TTF_FONT).exists());
+			Font font = new Font(BaseFont.createFont(TTF_FONT, BaseFont.IDENTITY_H,
+					BaseFont.EMBEDDED), 10);
+			List<Drawable> elements = new ArrayList<Drawable>();
+			for (int i = 0; i < 120; i++) {
+				// every part writes other characters
+				TextBlock block = createBlock("Paragrafo " + i + " "
+						+ (char) ('A' + i % 26), 1 + i % 7);
+				block.setFont(font);
+				elements.add(block);
+			}
+			ByteArrayOutputStream merged = new ByteArrayOutputStream();
+			PartitionedRenderer renderer = new PartitionedRenderer(executor);
+			renderer.setPagesPerPart(5);
+			RenderJob job = renderer.render(createJob(merged, elements));
+			Assert.assertTrue(job.getPartCount() > 3);
+
+			// a single subset of the font, with all the characters
+			PdfReader m = new PdfReader(merged.toByteArray());
+			Assert.assertEquals(1, countObjects(m, PdfName.FONTDESCRIPTOR));
+			for (int i = 1; i <= m.getNumberOfPages(); i++) {
+				Assert.assertTrue("page " + i, PdfTextExtractor.getTextFromPage(m, i)
+						.contains("una riga di testo"));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static int countFonts(PdfReader reader) {
+		return countObjects(reader, PdfName.FONT);
+	}
+
+	/**
+	 * @return number of dictionaries of a type
+	 */
+	private static int countObjects(PdfReader reader, PdfName type) {
+		int count = 0;
+		for (int i = 1; i < reader.getXrefSize(); i++) {
+			PdfObject obj = reader.getPdfObject(i);
+			if (obj != null && obj.isDictionary()
+					&& type.equals(((PdfDictionary) obj).get(PdfName.TYPE)))
+				count++;
+		}
+		return count;
+	}
+
+	private RenderJob createJob(ByteArrayOutputStream out,
+			List<Drawable> elements) {
+		RenderJob job = new RenderJob(out);
+		job.setSpacing(6);
+		for (Drawable e : elements)
+			job.add(e);
+		return job;
+	}
+
+	/**
+	 * Blocks of different heights, and a table on more pages.
+	 */
+	private List<Drawable> createElements() {
+		List<Drawable> elements = new ArrayList<Drawable>();
+		for (int i = 0; i < 80; i++)
+			elements.add(createBlock("Paragrafo " + i, 1 + i % 7));
+		TableBlock table = new TableBlock(36, 0, 2);
+		table.addHeaderRow(new Phrase("N."), new Phrase("Descrizione"));
+		for (int i = 0; i < 120; i++)
+			table.addRow(new Phrase(String.valueOf(i)), new Phrase("riga " + i));
+		elements.add(table);
+		for (int i = 80; i < 120; i++)
+			elements.add(createBlock("Paragrafo " + i, 1 + i % 5));
+		return elements;
+	}
+
+	/**
+	 * Two blocks on more pages: the second one, that consumes its content,
+	 * crosses the end of the first part.
+	 */
+	private List<Drawable> createConsumed() {
+		List<Drawable> elements = new ArrayList<Drawable>();
+		elements.add(createBlock("Primo", 120));
+		TextBlock consumed = createBlock("Secondo", 200);
+		consumed.setConsumeContent(true);
+		elements.add(consumed);
+		return elements;
+	}
+
+	private TextBlock createBlock(String title, int lines) {
+		StringBuilder sb = new StringBuilder(title);
+		for (int i = 0; i < lines; i++)
+			sb.append(" - una riga di testo che riempie la larghezza del blocco");
+		TextBlock block = new TextBlock(36, 0, 200, 15);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		block.addElement(new Phrase(sb.toString()));
+		return block;
+	}
+}
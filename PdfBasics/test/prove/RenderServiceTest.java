@@ -0,0 +1,139 @@
+package prove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.BufferOutputStream;
+import elements.DrawContext;
+import elements.RenderJob;
+import elements.RenderService;
+import elements.TableBlock;
+import elements.TextBlock;
+
+public class RenderServiceTest {
+
+	@Test
+	public void testConcurrentJobs() {
+		RenderService service = new RenderService(3, 20);
+		try {
+			List<Future<RenderJob>> futures = new ArrayList<Future<RenderJob>>();
+			List<BufferOutputStream> sinks = new ArrayList<BufferOutputStream>();
+			for (int i = 0; i < 12; i++) {
+				BufferOutputStream out = new BufferOutputStream();
+				sinks.add(out);
+				futures.add(service.submit(createJob(out, 50 + i * 20)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				RenderJob job = futures.get(i).get(30, TimeUnit.SECONDS);
+				Assert.assertTrue(job.getPageCount() >= 1);
+				Assert.assertTrue(sinks.get(i).getSize() > 1000);
+				sinks.get(i).release();
+			}
+			Assert.assertEquals(12, service.getCompletedCount());
+			Assert.assertEquals(0, service.getFailedCount());
+			Assert.assertEquals(12, service.getRenderLatency().getCount());
+			Assert.assertEquals(12, service.getWaitLatency().getCount());
+			Assert.assertTrue(service.getRenderLatency().getPercentileMillis(99) >= service
+					.getRenderLatency().getPercentileMillis(50));
+			Assert.assertTrue(service.getMaxQueueDepth() <= 20);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testBoundedQueue() {
+		RenderService service = new RenderService(1, 1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			RenderJob blocking = new RenderJob(new BufferOutputStream()) {
+				@Override
+				protected void render(DrawContext context) throws DocumentException {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new DocumentException(e);
+					}
+					super.render(context);
+				}
+			};
+			blocking.add(createBlock("in attesa"));
+			Future<RenderJob> first = service.submit(blocking);
+			started.await();
+			Future<RenderJob> second = service.submit(createJob(
+					new BufferOutputStream(), 10));
+			Assert.assertEquals(1, service.getQueueDepth());
+			try {
+				service.submit(createJob(new BufferOutputStream(), 10));
+				Assert.fail("the queue is full");
+			} catch (RejectedExecutionException e) {
+				Assert.assertEquals(1, service.getRejectedCount());
+			}
+			release.countDown();
+			first.get(30, TimeUnit.SECONDS);
+			second.get(30, TimeUnit.SECONDS);
+
+			// a job that fails is counted and its error returned by the future
+			RenderJob failing = new RenderJob(new BufferOutputStream()) {
+				@Override
+				protected void render(DrawContext context) throws DocumentException {
+					throw new DocumentException("errore di prova");
+				}
+			};
+			try {
+				service.submit(failing).get(30, TimeUnit.SECONDS);
+				Assert.fail("the job must fail");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof DocumentException);
+			}
+			Assert.assertEquals(2, service.getCompletedCount());
+			Assert.assertEquals(1, service.getFailedCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			release.countDown();
+			service.shutdown();
+		}
+	}
+
+	private RenderJob createJob(BufferOutputStream out, int rows) {
+		RenderJob job = new RenderJob(out);
+		job.setSpacing(10);
+		job.add(createBlock("Rapporto di prova"));
+		TableBlock table = new TableBlock(36, 0, 2);
+		table.addHeaderRow(new Phrase("N."), new Phrase("Descrizione"));
+		for (int i = 0; i < rows; i++)
+			table.addRow(new Phrase(String.valueOf(i)), new Phrase("riga " + i));
+		job.add(table);
+		job.add(createBlock("Fine del rapporto"));
+		return job;
+	}
+
+	private TextBlock createBlock(String text) {
+		TextBlock block = new TextBlock(36, 0, 300, 15);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(GrowDirection.VERT);
+		block.addElement(new Phrase(text));
+		return block;
+	}
+}
@@ -0,0 +1,150 @@
+package prove;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+import elements.ChannelOutputStream;
+import elements.DrawContext;
+import elements.RowReport;
+import elements.TextBlock;
+
+public class RowReportTest extends CommonTest {
+
+	@Test
+	public void testRows() {
+		try {
+			PdfData pdf = createPdfDocument("provaRowReport");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			Font helv10 = new Font(FontFamily.HELVETICA, 10);
+
+			TextBlock code = new TextBlock(doc.left(), 0, 80, 15);
+			code.setFont(helv10);
+			code.setGrowType(GrowDirection.NONE);
+			TextBlock descr = new TextBlock(doc.left() + 90, 0, 300, 15);
+			descr.setFont(helv10);
+			descr.setGrowType(GrowDirection.VERT);
+
+			RowReport<Integer> report = new RowReport<Integer>(new TextBlock[] {
+					code, descr }, new RowReport.RowFiller<Integer>() {
+				@Override
+				public void fill(Integer record, TextBlock[] cells) {
+					cells[0].clearContent();
+					cells[0].addElement(new Phrase("COD" + record));
+					cells[1].clearContent();
+					StringBuilder sb = new StringBuilder("Articolo " + record);
+					for (int i = 0; i < record % 4; i++)
+						sb.append("\nriga di descrizione ").append(i);
+					cells[1].addElement(new Phrase(sb.toString()));
+				}
+			});
+			report.setRowSpacing(2);
+
+			int written = report.write(dc, new Counter(5000));
+			doc.close();
+			Assert.assertEquals(5000, written);
+			Assert.assertTrue(report.getPageCount() > 100);
+			System.out.println("#rows: " + written + ", #pages: " + report.getPageCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testMemoryBounded() {
+		try {
+			Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
+			final DrawContext dc = DrawContext.open(doc, new ChannelOutputStream(
+					Channels.newChannel(new NullOutputStream())));
+			dc.setMemoryBounded(true);
+
+			final TextBlock cell = new TextBlock(doc.left(), 0, 300, 15);
+			cell.setFont(new Font(FontFamily.HELVETICA, 10));
+			cell.setGrowType(GrowDirection.VERT);
+			// heap used and pages written at two points of the report
+			final long[] heap = new long[2];
+			final int[] pages = new int[2];
+			RowReport<Integer> report = new RowReport<Integer>(new TextBlock[] { cell },
+					new RowReport.RowFiller<Integer>() {
+						@Override
+						public void fill(Integer record, TextBlock[] cells) {
+							if (record == 5000 || record == 35000) {
+								int i = record == 5000 ? 0 : 1;
+								heap[i] = usedHeap();
+								pages[i] = dc.getPageCount();
+							}
+							cells[0].clearContent();
+							cells[0].addElement(new Phrase("Articolo " + record + "\nriga di descrizione"));
+						}
+					});
+			report.write(dc, new Counter(40000));
+			doc.close();
+
+			long perPage = (heap[1] - heap[0]) / (pages[1] - pages[0]);
+			System.out.println("#pages: " + report.getPageCount() + ", retained heap per page: " + perPage + " bytes");
+			Assert.assertTrue(dc.getWriter().isFullCompression());
+			// the writer keeps only the cross-reference entries of every page
+			Assert.assertTrue(perPage < 1024);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	private static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+	/**
+	 * Rows generated on the fly, never kept in memory.
+	 */
+	private static class Counter implements Iterator<Integer> {
+		private int	c_next;
+		private int	c_count;
+
+		Counter(int count) {
+			c_count = count;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return c_next < c_count;
+		}
+
+		@Override
+		public Integer next() {
+			return c_next++;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
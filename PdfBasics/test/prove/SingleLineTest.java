@@ -0,0 +1,167 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.HyphenationEvent;
+import com.itextpdf.text.pdf.PdfReader;
+
+import elements.BlockElement.GrowDirection;
+import elements.BlockLayout;
+import elements.Border;
+import elements.BufferOutputStream;
+import elements.DrawContext;
+import elements.DrawCounters;
+import elements.TextBlock;
+
+public class SingleLineTest {
+
+	@Test
+	public void testSameOutput() {
+		try {
+			Font courier = new Font(FontFamily.COURIER, 9, Font.BOLD, BaseColor.RED);
+			Phrase mixed = new Phrase("Totale: ", new Font(FontFamily.HELVETICA, 8));
+			mixed.add(new Chunk("1.234,56", courier));
+			Element[] labels = { new Phrase("Codice articolo"),
+					new Phrase("Via Roma 1", new Font(FontFamily.TIMES_ROMAN, 11)),
+					new Chunk("ABC-123", courier), mixed };
+			for (Element label : labels) {
+				for (GrowDirection grow : GrowDirection.values()) {
+					DrawCounters counters = new DrawCounters();
+					String fast = writePage(label, grow, false, counters);
+					if (label != mixed || grow == GrowDirection.NONE
+							|| grow == GrowDirection.VERT) {
+						Assert.assertEquals(0, counters.getColumnTextCalls());
+					} else {
+						// the width calculated from the font of the phrase is too small
+						// for the chunk in courier: the text is broken by ColumnText
+						Assert.assertTrue(counters.getColumnTextCalls() > 0);
+					}
+					String slow = writePage(label, grow, true, counters);
+					Assert.assertTrue(counters.getColumnTextCalls() > 0);
+					Assert.assertEquals(label + " " + grow, slow, fast);
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testSameLayout() {
+		try {
+			BufferOutputStream out = new BufferOutputStream();
+			Document doc = new Document();
+			DrawContext dc = DrawContext.open(doc, out);
+			DrawCounters counters = new DrawCounters();
+			dc.setMetrics(counters);
+			TextBlock block = createBlock(new Phrase("Codice articolo"),
+					GrowDirection.VERT, false);
+			block.setStartY(doc.top());
+			BlockLayout layout = block.measure(dc);
+			long measureCalls = counters.getColumnTextCalls();
+			Assert.assertTrue(block.draw(dc));
+			Assert.assertEquals(measureCalls, counters.getColumnTextCalls());
+			Assert.assertEquals(1, block.getLinesWritten());
+			Assert.assertEquals(layout.getRealHeight(), block.getRealHeight(), 0.001f);
+
+			// the same sizes of the text laid out by ColumnText
+			TextBlock other = createBlock(new Phrase("Codice articolo"),
+					GrowDirection.VERT, true);
+			other.setStartY(doc.top());
+			Assert.assertTrue(other.draw(dc));
+			Assert.assertEquals(other.getLinesWritten(), block.getLinesWritten());
+			Assert.assertEquals(other.getRealLower(), block.getRealLower(), 0.001f);
+			Assert.assertEquals(other.getRealUpper(), block.getRealUpper(), 0.001f);
+			Assert.assertEquals(other.getLastHeight(), block.getLastHeight(), 0.001f);
+			measureCalls = counters.getColumnTextCalls();
+
+			// the drawing from the layout is direct too
+			block.resetDrawStatus(dc);
+			Assert.assertTrue(block.draw(dc, layout));
+			Assert.assertEquals(measureCalls, counters.getColumnTextCalls());
+
+			// a text longer than the block is laid out by ColumnText
+			TextBlock longer = createBlock(new Phrase(
+					"un testo troppo lungo per una sola riga del blocco"),
+					GrowDirection.VERT, false);
+			longer.setStartY(doc.top() - 100);
+			Assert.assertTrue(longer.draw(dc));
+			Assert.assertTrue(counters.getColumnTextCalls() > measureCalls);
+			Assert.assertTrue(longer.getLinesWritten() > 1);
+			doc.close();
+			out.release();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	/**
+	 * Write a page with a block and return its content stream.
+	 */
+	private String writePage(Element label, GrowDirection grow,
+			boolean columnText, DrawCounters counters) throws Exception {
+		BufferOutputStream out = new BufferOutputStream();
+		Document doc = new Document();
+		DrawContext dc = DrawContext.open(doc, out);
+		dc.setMetrics(counters);
+		TextBlock block = createBlock(label, grow, columnText);
+		block.setStartY(doc.top());
+		Assert.assertTrue(block.draw(dc));
+		doc.close();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out.writeTo(Channels.newChannel(bytes));
+		out.release();
+		PdfReader reader = new PdfReader(bytes.toByteArray());
+		return new String(reader.getPageContent(1), "ISO-8859-1");
+	}
+
+	private TextBlock createBlock(Element label, GrowDirection grow,
+			boolean columnText) {
+		if (columnText) {
+			Phrase p = label instanceof Phrase ? new Phrase((Phrase) label)
+					: new Phrase((Chunk) label);
+			p.setHyphenation(new NoHyphenation());
+			label = p;
+		}
+		TextBlock block = new TextBlock(36, 0, 150, 20);
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setGrowType(grow);
+		block.setBorder(new Border(0.5f, BaseColor.GRAY));
+		block.setPadding(2);
+		block.addElement(label);
+		return block;
+	}
+
+	/**
+	 * Hyphenation that never breaks a word: the phrase is written by ColumnText,
+	 * exactly as without hyphenation.
+	 */
+	private static class NoHyphenation implements HyphenationEvent {
+		public String getHyphenSymbol() {
+			return "-";
+		}
+
+		public String getHyphenatedWordPre(String word, BaseFont font,
+				float fontSize, float remainingWidth) {
+			return "";
+		}
+
+		public String getHyphenatedWordPost() {
+			return "";
+		}
+	}
+}
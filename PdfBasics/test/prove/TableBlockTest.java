@@ -0,0 +1,222 @@
+package prove;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockLayout;
+import elements.Border;
+import elements.DrawContext;
+import elements.DrawCounters;
+import elements.TableBlock;
+
+public class TableBlockTest extends CommonTest {
+
+	@Test
+	public void testLongTable() {
+		try {
+			PdfData pdf = createPdfDocument("provaTabella");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			TableBlock table = new TableBlock(doc.left(), doc.top(), 3);
+			table.setBorder(new Border(0.5f, new BaseColor(120, 89, 78)));
+			table.setColumnWidth(0, 50);
+			table.addHeaderRow(new Phrase("N."), new Phrase("Descrizione"),
+					new Phrase("Importo"));
+			for (int i = 0; i < 3000; i++) {
+				table.addRow(new Phrase(String.valueOf(i)), new Phrase("riga " + i
+						+ (i % 100 == 0 ? "\ncon due righe" : "")), i % 7 == 0 ? null
+						: new Phrase(String.valueOf(i * 1.5)));
+			}
+
+			float[] widths = table.calculateColumnWidths(dc);
+			Assert.assertEquals(50, widths[0], 0.01f);
+			Assert.assertTrue(widths[1] > widths[2]);
+			Assert.assertTrue(widths[0] + widths[1] + widths[2] <= dc
+					.getDocumentAvailWidth());
+
+			BlockLayout layout = table.measure(dc);
+			Assert.assertTrue(layout.isComplete());
+			Assert.assertTrue(layout.getPageCount() > 10);
+
+			int pages = 1;
+			while (!table.draw(dc)) {
+				doc.newPage();
+				pages++;
+			}
+			Assert.assertEquals(layout.getPageCount(), pages);
+			Assert.assertEquals(3000, table.getRowsWritten());
+			// header and text of every row on every page, second line of the long
+			// rows
+			Assert.assertEquals(3 * 3000 - 3000 / 7 - 1 + 3 * pages + 30,
+					layout.getLineCount());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testRowSource() {
+		try {
+			PdfData pdf = createPdfDocument("provaTabellaSorgente");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			TableBlock added = createSourceTable(doc);
+			RowSource source = new RowSource(3000);
+			for (Element[] row : source)
+				added.addRow(row);
+			TableBlock streamed = createSourceTable(doc);
+			streamed.setRowSource(source);
+			Assert.assertEquals(0, streamed.getRowCount());
+			try {
+				streamed.addRow(new Phrase("1"), new Phrase("2"));
+				Assert.fail("the rows are read from the source");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+
+			BlockLayout expected = added.measure(dc);
+			BlockLayout layout = streamed.measure(dc);
+			Assert.assertEquals(expected.getPageCount(), layout.getPageCount());
+			Assert.assertEquals(expected.getLineCount(), layout.getLineCount());
+
+			// the drawing reads only the rows of the page, and the next one
+			Assert.assertFalse(streamed.draw(dc));
+			Assert.assertEquals(streamed.getRowsWritten() + 1, source.read);
+			int pages = 1;
+			do {
+				doc.newPage();
+				pages++;
+			} while (!streamed.draw(dc));
+			Assert.assertEquals(layout.getPageCount(), pages);
+			Assert.assertEquals(3000, streamed.getRowsWritten());
+			Assert.assertEquals(3000, source.read);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testDrawLayout() {
+		try {
+			PdfData pdf = createPdfDocument("provaTabellaLayout");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			DrawCounters counters = new DrawCounters();
+			dc.setMetrics(counters);
+
+			RowSource source = new RowSource(3000);
+			TableBlock table = new TableBlock(doc.left(), doc.top(), 2);
+			table.setBorder(new Border(0.5f, BaseColor.GRAY));
+			table.addHeaderRow(new Phrase("N."), new Phrase("Descrizione"));
+			table.setRowSource(source);
+			BlockLayout layout = table.measure(dc);
+			Assert.assertTrue(layout.isComplete());
+			// the widths and the layout
+			Assert.assertEquals(2 * 3000, source.total);
+
+			source.total = 0;
+			counters.reset();
+			int pages = 1;
+			while (!table.draw(dc, layout)) {
+				doc.newPage();
+				pages++;
+			}
+			Assert.assertEquals(layout.getPageCount(), pages);
+			Assert.assertEquals(layout.getRealHeight(), table.getRealHeight(), 0.01f);
+			Assert.assertEquals(3000, table.getRowsWritten());
+			// the rows are read once, the widths are taken from the layout
+			Assert.assertEquals(3000, source.total);
+			// every cell is measured once: the row that doesn't fit a page is not
+			// laid out on that page
+			Assert.assertEquals(2 * (3000 + pages), counters.getMeasures());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private TableBlock createSourceTable(Document doc) {
+		TableBlock table = new TableBlock(doc.left(), doc.top(), 2);
+		table.setBorder(new Border(0.5f, BaseColor.GRAY));
+		table.setColumnWidth(0, 50);
+		table.setColumnWidth(1, 200);
+		table.addHeaderRow(new Phrase("N."), new Phrase("Descrizione"));
+		return table;
+	}
+
+	/**
+	 * Rows created while they are read, counting the rows read by the last
+	 * iterator.
+	 */
+	private static class RowSource implements Iterable<Element[]> {
+		final int	count;
+		int				read;
+		int				total;
+
+		RowSource(int count) {
+			this.count = count;
+		}
+
+		public Iterator<Element[]> iterator() {
+			read = 0;
+			return new Iterator<Element[]>() {
+				public boolean hasNext() {
+					return read < count;
+				}
+
+				public Element[] next() {
+					int i = read++;
+					total++;
+					String text = "riga " + i + (i % 100 == 0 ? "\ncon due righe" : "");
+					return new Element[] { new Phrase(String.valueOf(i)),
+							new Phrase(text) };
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	@Test
+	public void testWidthLimit() {
+		try {
+			PdfData pdf = createPdfDocument("provaTabellaLarga");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			TableBlock table = new TableBlock(doc.left(), doc.top(), 2);
+			table.setMaxWidth(200);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 40; i++)
+				sb.append("parola ");
+			table.addRow(new Phrase(sb.toString()), new Phrase(sb.toString()));
+			float[] widths = table.calculateColumnWidths(dc);
+			Assert.assertEquals(200, widths[0] + widths[1], 0.01f);
+
+			// the text wraps inside the shrunk columns
+			Assert.assertTrue(table.draw(dc));
+			Assert.assertEquals(200, table.getRealWidth(), 0.01f);
+			Assert.assertTrue(table.getRealHeight() > 30);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+}
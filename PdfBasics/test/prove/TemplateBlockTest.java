@@ -0,0 +1,95 @@
+package prove;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import elements.BlockElement.GrowDirection;
+import elements.Border;
+import elements.DrawContext;
+import elements.DrawCounters;
+import elements.Drawable;
+import elements.TemplateBlock;
+import elements.TextBlock;
+
+public class TemplateBlockTest extends CommonTest {
+
+	@Test
+	public void testHeader() {
+		try {
+			PdfData pdf = createPdfDocument("provaTemplate");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			DrawCounters counters = new DrawCounters();
+			dc.setMetrics(counters);
+
+			TemplateBlock header = new TemplateBlock(createHeader(doc));
+			Assert.assertTrue(header.isTemplate(dc));
+			long goCalls = counters.getColumnTextCalls();
+			for (int i = 0; i < 10; i++) {
+				Assert.assertTrue(header.draw(dc));
+				doc.newPage();
+			}
+			doc.close();
+			// the text has been laid out only for the template
+			Assert.assertEquals(goCalls, counters.getColumnTextCalls());
+			// the template written once and placed on 10 pages
+			Assert.assertEquals(11, counters.getPagesSpanned());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testSize() {
+		try {
+			Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
+			TextBlock block = createHeader(doc);
+			int plain = renderInMemory(block, 50);
+			int cached = renderInMemory(new TemplateBlock(block), 50);
+			System.out.println("#plain: " + plain + " bytes, #template: " + cached + " bytes");
+			Assert.assertTrue(cached < plain);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private TextBlock createHeader(Document doc) {
+		TextBlock block = new TextBlock(doc.left(), doc.top(), 300, 40);
+		block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+		block.setFont(new Font(FontFamily.HELVETICA, 10));
+		block.setPadding(2);
+		block.setGrowType(GrowDirection.VERT);
+		block.addElement(new Phrase("Ditta Rossi S.p.A. - Via Roma 1, Milano\n"
+				+ "Documento riservato: ogni riproduzione non autorizzata  vietata."));
+		return block;
+	}
+
+	private int renderInMemory(Drawable block, int pages) throws DocumentException {
+		Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PdfWriter w = PdfWriter.getInstance(doc, out);
+		doc.open();
+		DrawContext dc = new DrawContext(w, doc);
+		for (int i = 0; i < pages; i++) {
+			if (block instanceof TextBlock)
+				((TextBlock) block).resetDrawStatus(dc);
+			block.draw(dc);
+			doc.newPage();
+		}
+		doc.close();
+		return out.size();
+	}
+}
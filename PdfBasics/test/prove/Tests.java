@@ -1,6 +1,13 @@
 package prove;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -11,15 +18,19 @@ import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.Font;
 import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.PageSize;
 import com.itextpdf.text.Paragraph;
 import com.itextpdf.text.Phrase;
 import com.itextpdf.text.pdf.PdfContentByte;
 import com.itextpdf.text.pdf.PdfWriter;
 
 import elements.BlockElement.GrowDirection;
+import elements.BlockLayout;
 import elements.Border;
 import elements.DrawContext;
+import elements.DrawCounters;
 import elements.TextBlock;
+import elements.TextBlock.DrawStatus;
 
 public class Tests extends CommonTest {
 	@Test
@@ -180,6 +191,198 @@ public class Tests extends CommonTest {
 		}
 	}
 	
+	@Test
+	public void testMeasure() {
+		try {
+			Font helv18 = new Font(FontFamily.HELVETICA, 18);
+
+			PdfData pdf = createPdfDocument("provaMeasure");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			TextBlock block = new TextBlock(doc.left(30), doc.bottomMargin() + 50, 200, 100);
+			block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+			block.setFont(helv18);
+			block.setPadding(2);
+			block.setGrowType(GrowDirection.BOTH);
+			setText(block);
+
+			BlockLayout layout = block.measure(dc);
+			Assert.assertTrue(layout.isComplete());
+			Assert.assertEquals(2, layout.getPageCount());
+			Assert.assertFalse(block.isDrawing());
+
+			// draw following the layout
+			block.resetDrawStatus();
+			int pages = 1;
+			while (!block.draw(dc, layout)) {
+				Assert.assertEquals(layout.getPageHeight(pages - 1), block.getLastHeight(), 0.01f);
+				doc.newPage();
+				pages++;
+			}
+			Assert.assertEquals(layout.getPageCount(), pages);
+			Assert.assertEquals(layout.getLineCount(), block.getLinesWritten());
+			Assert.assertEquals(layout.getRealHeight(), block.getRealHeight(), 0.01f);
+			Assert.assertEquals(layout.getRealWidth(), block.getRealWidth(), 0.01f);
+			doc.newPage();
+
+			// the plain drawing must give the same result
+			block.resetDrawStatus();
+			pages = 1;
+			while (!block.draw(dc)) {
+				Assert.assertEquals(layout.getBreakLine(pages), block.getLinesWritten());
+				doc.newPage();
+				pages++;
+			}
+			Assert.assertEquals(layout.getPageCount(), pages);
+			Assert.assertEquals(layout.getLineCount(), block.getLinesWritten());
+			Assert.assertEquals(layout.getRealHeight(), block.getRealHeight(), 0.01f);
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testMetrics() {
+		try {
+			PdfData pdf = createPdfDocument("provaMetrics");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+			DrawCounters counters = new DrawCounters();
+			dc.setMetrics(counters);
+
+			TextBlock block = new TextBlock(doc.left(30), doc.bottomMargin() + 50, 200, 100);
+			block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+			block.setFont(new Font(FontFamily.HELVETICA, 18));
+			block.setPadding(2);
+			block.setGrowType(GrowDirection.BOTH);
+			setText(block);
+
+			BlockLayout layout = block.measure(dc);
+			Assert.assertEquals(1, counters.getMeasures());
+			Assert.assertTrue(counters.getColumnTextCalls() > 0);
+			Assert.assertEquals(0, counters.getPagesSpanned());
+			Assert.assertEquals(0, counters.getContentBytes());
+
+			counters.reset();
+			while (!block.draw(dc, layout)) {
+				doc.newPage();
+			}
+			Assert.assertEquals(layout.getPageCount(), counters.getPagesSpanned());
+			Assert.assertEquals(layout.getLineCount(), counters.getLinesWritten());
+			Assert.assertTrue(counters.getContentBytes() > 0);
+			Assert.assertTrue(counters.getRenderNanos() > 0);
+			System.out.println(counters);
+
+			// disabled metrics: nothing is collected
+			dc.setMetrics(null);
+			counters.reset();
+			doc.newPage();
+			block.resetDrawStatus(dc);
+			while (!block.draw(dc)) {
+				doc.newPage();
+			}
+			Assert.assertEquals(0, counters.getColumnTextCalls());
+			doc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testLongBlock() {
+		try {
+			PdfData pdf = createPdfDocument("provaLongBlock");
+			Document doc = pdf.document;
+			DrawContext dc = new DrawContext(pdf.writer, doc);
+
+			TextBlock block = new TextBlock(doc.left(30), doc.top(30), 400, 100);
+			block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+			block.setFont(new Font(FontFamily.HELVETICA, 12));
+			block.setPadding(2);
+			block.setGrowType(GrowDirection.VERT);
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 2500; i++) {
+				sb.append("Riga ").append(i).append(": tanto va la gatta al lardo che ci lascia lo zampino.\n");
+			}
+			block.clearContent();
+			block.addElement(new Phrase(sb.toString()));
+
+			int pages = 1;
+			block.resetDrawStatus();
+			while (!block.draw(dc)) {
+				Assert.assertTrue(block.getRealUpper() > block.getRealLower());
+				if (pages > 1) {
+					// continuation pages are filled within the page margins
+					Assert.assertEquals(doc.top(), block.getRealUpper(), 0.01f);
+					Assert.assertTrue(block.getRealLower() >= doc.bottom());
+				}
+				doc.newPage();
+				pages++;
+			}
+			doc.close();
+			// the time is measured by RedrawBenchmark
+			Assert.assertTrue(pages >= 50);
+			Assert.assertEquals(2500, block.getLinesWritten());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testSharedBlock() {
+		try {
+			final TextBlock block = new TextBlock(50, 700, 200, 100);
+			block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+			block.setFont(new Font(FontFamily.HELVETICA, 18));
+			block.setPadding(2);
+			block.setGrowType(GrowDirection.BOTH);
+			setText(block);
+
+			// reference drawing
+			final DrawStatus ref = renderInMemory(block);
+
+			// the same block drawn concurrently on many documents
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			List<Future<DrawStatus>> results = new ArrayList<Future<DrawStatus>>();
+			for (int i = 0; i < 40; i++) {
+				results.add(executor.submit(new Callable<DrawStatus>() {
+					@Override
+					public DrawStatus call() throws Exception {
+						return renderInMemory(block);
+					}
+				}));
+			}
+			for (Future<DrawStatus> f : results) {
+				DrawStatus st = f.get();
+				Assert.assertTrue(st.isDrawComplete());
+				Assert.assertEquals(ref.getLinesWritten(), st.getLinesWritten());
+				Assert.assertEquals(ref.getRealHeight(), st.getRealHeight(), 0.001f);
+				Assert.assertEquals(ref.getRealWidth(), st.getRealWidth(), 0.001f);
+			}
+			executor.shutdown();
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private DrawStatus renderInMemory(TextBlock block) throws DocumentException {
+		Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
+		PdfWriter w = PdfWriter.getInstance(doc, new ByteArrayOutputStream());
+		doc.open();
+		DrawContext dc = new DrawContext(w, doc);
+		while (!block.draw(dc)) {
+			doc.newPage();
+		}
+		doc.close();
+		return block.getDrawStatus(dc);
+	}
+
 	private void draw(TextBlock block, PdfWriter w, Document d) throws DocumentException, IOException {
 		DrawContext dc = new DrawContext(w, d);
 		block.resetDrawStatus();
@@ -0,0 +1,48 @@
+package elements;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.Phrase;
+
+/**
+ * Contents used by the benchmarks.
+ */
+final class BenchTexts {
+
+	private BenchTexts() {
+	}
+
+	/**
+	 * Fill the block with some short phrases in different fonts.
+	 */
+	static void fillPhrases(TextBlock block) {
+		block.clearContent();
+		Font helv11 = new Font(FontFamily.HELVETICA, 11);
+		helv11.setColor(BaseColor.BLUE);
+		block.addElement(new Phrase("Tanto va la gatta al lardo\n che ci lascia lo zampino."));
+		block.addElement(new Phrase("L'ultimo che esce chiude la porta"));
+		block.addElement(new Phrase("Meglio un uovo oggi che una gallina domani."));
+		block.addElement(new Phrase("Chi trova un amico trova un tesoro."));
+		Phrase p = new Phrase("Chi va con lo zoppo");
+		p.add(new Chunk(" impara a zoppicare.", helv11));
+		block.addElement(p);
+		block.addElement(new Phrase("A caval donato non si guarda in bocca.",
+				new Font(FontFamily.HELVETICA, 12)));
+		block.addElement(new Phrase("Il mondo e' fatto a scale, c'e' chi scende e c'e' chi sale.",
+				new Font(FontFamily.COURIER, 10, Font.BOLD)));
+	}
+
+	/**
+	 * @return a text of the given number of lines
+	 */
+	static String lines(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append("Riga ").append(i)
+					.append(": tanto va la gatta al lardo che ci lascia lo zampino.\n");
+		}
+		return sb.toString();
+	}
+}
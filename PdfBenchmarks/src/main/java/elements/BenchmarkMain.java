@@ -0,0 +1,52 @@
+package elements;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler and prints, besides the
+ * usual JMH report, a summary with ops/s, allocation rate and PDF bytes per
+ * page. The command line accepts the standard JMH options, e.g. a regular
+ * expression to select the benchmarks.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		Options opts = new OptionsBuilder().parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class).build();
+		Collection<RunResult> results = new Runner(opts).run();
+
+		System.out.println();
+		System.out.println(String.format("%-60s %14s %14s %14s %12s", "Benchmark",
+				"ops/s", "alloc MB/s", "alloc B/op", "PDF B/page"));
+		for (RunResult r : results) {
+			Map<String, Result> sec = r.getSecondaryResults();
+			String name = r.getParams().getBenchmark();
+			for (String p : r.getParams().getParamsKeys()) {
+				name += " " + p + "=" + r.getParams().getParam(p);
+			}
+			double pages = score(sec, "pages");
+			double bytes = score(sec, "pdfBytes");
+			System.out.println(String.format("%-60s %14.1f %14.1f %14.1f %12s",
+					name, r.getPrimaryResult().getScore(),
+					score(sec, "gc.alloc.rate"), score(sec, "gc.alloc.rate.norm"),
+					pages > 0 ? String.format("%.0f", bytes / pages) : "-"));
+		}
+	}
+
+	private static double score(Map<String, Result> results, String label) {
+		Result r = results.get(label);
+		return r == null ? 0 : r.getScore();
+	}
+}
@@ -0,0 +1,64 @@
+package elements;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.pdf.PdfContentByte;
+
+/**
+ * Stroke of the border of a text block on the canvas. The canvas is emptied
+ * after every operation; the bytes of content produced are reported as the
+ * <code>contentBytes</code> counter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BorderBenchmark {
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Content {
+		public long	contentBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			contentBytes = 0;
+		}
+	}
+
+	private TextBlock				c_block;
+	private PdfContentByte	c_canvas;
+
+	@Setup
+	public void setup(DocState doc) {
+		c_block = new TextBlock(60, 780, 200, 150);
+		c_block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+		c_block.setBorderTop(new Border(2f, BaseColor.BLACK));
+		c_canvas = doc.getContext().getWriter().getDirectContent();
+	}
+
+	@Benchmark
+	public int drawBorder(Content content) {
+		c_block.strokeBorder(null, null, c_canvas, 60, 630, 780, 200);
+		int size = c_canvas.getInternalBuffer().size();
+		content.contentBytes += size;
+		c_canvas.reset();
+		return size;
+	}
+}
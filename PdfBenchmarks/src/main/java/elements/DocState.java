@@ -0,0 +1,66 @@
+package elements;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * A document open on a {@link PdfSink} for the whole iteration of a
+ * benchmark. Besides the primary score, it reports the pages written and the
+ * bytes produced, so the bytes per page can be derived (see
+ * {@link BenchmarkMain}).
+ * <p>
+ * The public members of an auxiliary counters state are its counters, so the
+ * accessors used by the benchmarks are package-private.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class DocState {
+	public long					pages;
+	public long					pdfBytes;
+
+	private PdfSink			c_sink;
+	private Document		c_document;
+	private DrawContext	c_context;
+
+	@Setup(Level.Iteration)
+	public void open() throws DocumentException {
+		c_sink = new PdfSink();
+		c_document = new Document(PageSize.A4, 30, 30, 30, 30);
+		PdfWriter w = PdfWriter.getInstance(c_document, c_sink);
+		c_document.open();
+		c_context = new DrawContext(w, c_document);
+		pages = 0;
+		pdfBytes = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void close() {
+		c_document.close();
+	}
+
+	DrawContext getContext() {
+		return c_context;
+	}
+
+	Document getDocument() {
+		return c_document;
+	}
+
+	/**
+	 * Close the current page: iText writes it to the sink.
+	 */
+	void newPage() {
+		c_document.newPage();
+		pages++;
+		pdfBytes = c_sink.getCount();
+	}
+}
@@ -0,0 +1,28 @@
+package elements;
+
+import java.io.OutputStream;
+
+/**
+ * In-memory destination of the benchmark documents: the bytes are counted and
+ * discarded, so the benchmarks don't depend on the disk speed.
+ */
+public class PdfSink extends OutputStream {
+	private long	c_count;
+
+	@Override
+	public void write(int b) {
+		c_count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		c_count += len;
+	}
+
+	/**
+	 * @return number of bytes written so far
+	 */
+	public long getCount() {
+		return c_count;
+	}
+}
@@ -0,0 +1,87 @@
+package elements;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Phrase;
+
+import elements.BlockElement.GrowDirection;
+
+/**
+ * Drawing of a text block that grows vertically across about 60 pages: after
+ * the first page the text is written by the continuation drawing
+ * (<code>redraw</code>), that fills every page within the margins. The
+ * block is drawn laying it out page by page, and following the layout of a
+ * previous measure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 4)
+@Fork(1)
+public class RedrawBenchmark {
+
+	private static final int	MIN_PAGES	= 50;
+
+	private TextBlock					c_block;
+	private BlockLayout				c_layout;
+
+	@Setup
+	public void setup() throws DocumentException {
+		c_block = new TextBlock(60, 780, 400, 100);
+		c_block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+		c_block.setFont(new Font(FontFamily.HELVETICA, 12));
+		c_block.setPadding(2);
+		c_block.setGrowType(GrowDirection.VERT);
+		c_block.addElement(new Phrase(BenchTexts.lines(2500)));
+
+		// measured on a document with the page size and the margins of DocState
+		Document doc = new Document(PageSize.A4, 30, 30, 30, 30);
+		DrawContext ctx = DrawContext.open(doc, new PdfSink());
+		c_layout = c_block.measure(ctx);
+		ctx.getWriter().setPageEmpty(false);
+		doc.close();
+		if (c_layout.getPageCount() < MIN_PAGES)
+			throw new IllegalStateException("The block spans only "
+					+ c_layout.getPageCount() + " pages");
+	}
+
+	@Benchmark
+	public int drawMultiPage(DocState doc) throws DocumentException {
+		DrawContext ctx = doc.getContext();
+		c_block.resetDrawStatus(ctx);
+		while (!c_block.draw(ctx)) {
+			doc.newPage();
+		}
+		doc.newPage();
+		return c_block.getDrawStatus(ctx).getLinesWritten();
+	}
+
+	@Benchmark
+	public int drawMultiPageLayout(DocState doc) throws DocumentException {
+		DrawContext ctx = doc.getContext();
+		c_block.resetDrawStatus(ctx);
+		while (!c_block.draw(ctx, c_layout)) {
+			doc.newPage();
+		}
+		doc.newPage();
+		return c_block.getDrawStatus(ctx).getLinesWritten();
+	}
+}
@@ -0,0 +1,63 @@
+package elements;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+
+import elements.BlockElement.GrowDirection;
+
+/**
+ * Drawing of a text block on a page, for every {@link GrowDirection}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextBlockDrawBenchmark {
+
+	@Param({ "NONE", "HORIZ", "VERT", "BOTH" })
+	public GrowDirection	growType;
+
+	private TextBlock			c_block;
+
+	@Setup
+	public void setup() {
+		c_block = new TextBlock(60, 780, 200, 150);
+		c_block.setBorder(new Border(0.8f, new BaseColor(120, 89, 78)));
+		c_block.setFont(new Font(FontFamily.HELVETICA, 12));
+		c_block.setPadding(2);
+		c_block.setGrowType(growType);
+		BenchTexts.fillPhrases(c_block);
+	}
+
+	/**
+	 * One block on a page.
+	 */
+	@Benchmark
+	public float draw(DocState doc) throws DocumentException {
+		DrawContext ctx = doc.getContext();
+		c_block.resetDrawStatus(ctx);
+		while (!c_block.draw(ctx)) {
+			doc.newPage();
+		}
+		doc.newPage();
+		return c_block.getDrawStatus(ctx).getRealHeight();
+	}
+}
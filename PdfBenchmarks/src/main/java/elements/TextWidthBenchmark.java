@@ -0,0 +1,66 @@
+package elements;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Font.FontFamily;
+import com.itextpdf.text.pdf.BaseFont;
+
+import elements.BlockElement.GrowDirection;
+
+/**
+ * Measure of the text width used by the auto-width blocks: the whole
+ * <code>calculateTextMaxWidth</code> of a block and the single string through
+ * the {@link FontMetricsCache}, compared with
+ * {@link BaseFont#getWidthPoint(String, float)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextWidthBenchmark {
+
+	private static final String	LINE	= "Meglio un uovo oggi che una gallina domani.";
+
+	private TextBlock						c_block;
+	private BaseFont						c_font;
+
+	@Setup
+	public void setup() throws DocumentException, IOException {
+		c_block = new TextBlock(60, 780, 200, 150);
+		c_block.setFont(new Font(FontFamily.HELVETICA, 12));
+		c_block.setGrowType(GrowDirection.HORIZ);
+		BenchTexts.fillPhrases(c_block);
+		c_font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252, false);
+	}
+
+	@Benchmark
+	public float calculateTextMaxWidth() {
+		return c_block.calculateTextMaxWidth();
+	}
+
+	@Benchmark
+	public float stringWidthCached() {
+		return FontMetricsCache.getShared().getStringWidth(LINE, c_font, 12);
+	}
+
+	@Benchmark
+	public float stringWidthBaseFont() {
+		return c_font.getWidthPoint(LINE, 12);
+	}
+}